@@ -0,0 +1,271 @@
+package ecc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * This class solves small discrete logarithms on a curve with the baby-step
+ * giant-step algorithm: given M = mG for m between 0 and some bound, it
+ * finds m.
+ *
+ * The table holds the baby steps jG for 1 <= j <= b. Since -jG has the same
+ * x-coordinate as jG, one entry serves both, and the parity of y tells them
+ * apart, so the giant steps can be 2b + 1 apart: M - i(2b + 1)G is looked up
+ * for i = 0, 1, ... until it is found to be +-jG. Finding m < 2^40 thus takes
+ * a million giant steps with a million baby steps.
+ *
+ * The baby steps are kept in a primitive open-addressing hash table, keyed by
+ * the low 64 bits of the x-coordinate, with linear probing: an array of
+ * long keys and an array of int values 2j + parity(y), 0 marking the empty
+ * slots. A table can be saved to a file and memory-mapped back, so that a
+ * large table is built once and then shared by the processes using it,
+ * paging in only the slots they probe. Every match is checked by recomputing
+ * mG, so colliding keys do no harm.
+ *
+ * Tables are safe to use from many threads once built.
+ */
+public class BabyStepTable {
+
+    // The largest number of baby steps: the file of the table must be less
+    // than 2 GB to be mapped.
+    public static final int MAX_BABY_STEPS = 1 << 26;
+
+    private static final int MAGIC = 0x45434254;
+    private static final int VERSION = 1;
+    // The magic, the version, the digest of the curve, the number of baby
+    // steps and the capacity.
+    private static final int HEADER_SIZE = 4 + 4 + 32 + 4 + 4;
+
+    // The number of baby steps computed before one batch inversion.
+    private static final int CHUNK_SIZE = 1024;
+
+    private final EllipticCurve c;
+    private final int babySteps;
+    private final int capacity;
+    private final int shift;
+    private final LongBuffer keys;
+    private final IntBuffer values;
+
+    /**
+     * Compute the table of the base point of the curve, on the workers of
+     * ECC.getParallelEngine().
+     *
+     * @param c
+     * @param babySteps the number b of baby steps
+     */
+    public BabyStepTable(EllipticCurve c, int babySteps) {
+        this(ECC.getParallelEngine(), c, babySteps);
+    }
+
+    /**
+     * Compute the table of the base point of the curve, split among the
+     * workers of the given engine.
+     *
+     * @param engine
+     * @param c
+     * @param babySteps the number b of baby steps
+     */
+    public BabyStepTable(ECCEngine engine, final EllipticCurve c, final int babySteps) {
+        if (babySteps < 1 || babySteps > MAX_BABY_STEPS) {
+            throw new IllegalArgumentException("The number of baby steps should be between 1 and " + MAX_BABY_STEPS);
+        }
+        this.c = c;
+        this.babySteps = babySteps;
+        this.capacity = Integer.highestOneBit(2 * babySteps - 1) << 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.keys = LongBuffer.wrap(new long[capacity]);
+        this.values = IntBuffer.wrap(new int[capacity]);
+
+        // Each chunk starts from its own multiple of G and brings its steps
+        // to affine coordinates with a single inversion.
+        final FixedBaseTable table = c.getFixedBaseTable();
+        final ECPoint g = c.getBasePoint();
+        int chunks = (babySteps + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        engine.runInParallel(chunks, 1, new ECCEngine.RangeTask() {
+            @Override
+            public void run(int fromChunk, int toChunk) {
+                for (int chunk = fromChunk; chunk < toChunk; ++chunk) {
+                    int from = chunk * CHUNK_SIZE + 1;
+                    int to = Math.min(babySteps, from + CHUNK_SIZE - 1);
+                    JacobianPoint[] steps = new JacobianPoint[to - from + 1];
+                    steps[0] = table.multiplyJacobian(BigInteger.valueOf(from));
+                    for (int i = 1; i < steps.length; ++i) {
+                        steps[i] = c.addJacobian(steps[i - 1], g);
+                    }
+                    ECPoint[] affine = c.toAffine(steps);
+                    synchronized (BabyStepTable.this) {
+                        for (int i = 0; i < affine.length; ++i) {
+                            put(affine[i], from + i);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private BabyStepTable(EllipticCurve c, int babySteps, int capacity, LongBuffer keys, IntBuffer values) {
+        this.c = c;
+        this.babySteps = babySteps;
+        this.capacity = capacity;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.keys = keys;
+        this.values = values;
+    }
+
+    public EllipticCurve getCurve() {
+        return c;
+    }
+
+    public int getBabySteps() {
+        return babySteps;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift);
+    }
+
+    private void put(ECPoint point, int j) {
+        long key = point.x.longValue();
+        int i = slot(key);
+        while (values.get(i) != 0) {
+            i = (i + 1) & (capacity - 1);
+        }
+        keys.put(i, key);
+        values.put(i, (j << 1) | (point.y.testBit(0) ? 1 : 0));
+    }
+
+    /**
+     * Return m between 0 and max such that mG = point.
+     *
+     * @param point
+     * @param max
+     * @return -1 if there is no such m.
+     */
+    public long log(ECPoint point, long max) {
+        FixedBaseTable table = c.getFixedBaseTable();
+        long step = 2L * babySteps + 1;
+        ECPoint giantStep = table.multiply(BigInteger.valueOf(step)).negate();
+        ECPoint r = point;
+        // r = M - i * step * G, which is +-jG when m = i * step +- j.
+        for (long base = 0; base - babySteps <= max; base += step) {
+            if (r.isPointOfInfinity()) {
+                if (base <= max) {
+                    return base;
+                }
+            } else {
+                long key = r.x.longValue();
+                int parity = r.y.testBit(0) ? 1 : 0;
+                for (int i = slot(key); values.get(i) != 0; i = (i + 1) & (capacity - 1)) {
+                    if (keys.get(i) != key) {
+                        continue;
+                    }
+                    int value = values.get(i);
+                    long j = value >>> 1;
+                    long m = (value & 1) == parity ? base + j : base - j;
+                    if (m >= 0 && m <= max && isLog(table, point, m)) {
+                        return m;
+                    }
+                }
+            }
+            r = c.add(r, giantStep);
+        }
+        return -1;
+    }
+
+    private boolean isLog(FixedBaseTable table, ECPoint point, long m) {
+        ECPoint candidate = table.multiply(BigInteger.valueOf(m));
+        BigInteger p = c.getP();
+        return !candidate.isPointOfInfinity()
+                && candidate.x.subtract(point.x).mod(p).signum() == 0
+                && candidate.y.subtract(point.y).mod(p).signum() == 0;
+    }
+
+    /**
+     * Write the table to a file, to be mapped back by load.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        long size = HEADER_SIZE + (long) capacity * 12;
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(size);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.put(digest(c));
+            buffer.putInt(babySteps);
+            buffer.putInt(capacity);
+            for (int i = 0; i < capacity; ++i) {
+                buffer.putLong(keys.get(i));
+            }
+            for (int i = 0; i < capacity; ++i) {
+                buffer.putInt(values.get(i));
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Map a table saved by save. The file is not read, the pages of the table
+     * are loaded as the lookups touch them.
+     *
+     * @param c the curve the table was computed for
+     * @param file
+     * @return
+     * @throws IOException if the file is not a table of this curve
+     */
+    public static BabyStepTable load(EllipticCurve c, File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the file is closed.
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a baby-step table");
+            }
+            byte[] digest = new byte[32];
+            buffer.get(digest);
+            if (!Arrays.equals(digest, digest(c))) {
+                throw new IOException("The table belongs to another curve");
+            }
+            int babySteps = buffer.getInt();
+            int capacity = buffer.getInt();
+            if (Integer.bitCount(capacity) != 1 || babySteps < 1 || babySteps >= capacity
+                    || buffer.limit() != HEADER_SIZE + (long) capacity * 12) {
+                throw new IOException("The table is corrupted");
+            }
+            ByteBuffer keys = buffer.slice();
+            keys.limit(capacity * 8);
+            buffer.position(HEADER_SIZE + capacity * 8);
+            ByteBuffer values = buffer.slice();
+            return new BabyStepTable(c, babySteps, capacity, keys.asLongBuffer(), values.asIntBuffer());
+        }
+    }
+
+    /**
+     * Return the SHA-256 digest of the parameters and the base point of the
+     * curve, identifying the curve in the files.
+     */
+    private static byte[] digest(EllipticCurve c) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            BigInteger p = c.getP();
+            for (BigInteger value : new BigInteger[] {p, c.getA().mod(p), c.getB().mod(p),
+                    c.getBasePoint().x.mod(p), c.getBasePoint().y.mod(p)}) {
+                sha.update(value.toByteArray());
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
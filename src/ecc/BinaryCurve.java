@@ -0,0 +1,519 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents an elliptic curve over a binary field,
+ * y^2 + xy = x^3 + a x^2 + b over GF(2^m) (see BinaryField), such as the
+ * NIST B- and K-curves.
+ *
+ * The coordinates of an ECPoint of this curve are field elements written as
+ * BigInteger: bit i is the coefficient of z^i. The scalar multiplications
+ * work in the projective coordinates of Lopez and Dahab, where (X, Y, Z)
+ * stands for (X / Z, Y / Z^2), adding the affine multiples of the point in
+ * (mixed addition), so that the only inversion is the final one.
+ *
+ * On a Koblitz curve (a = 0 or 1, b = 1), the Frobenius map
+ * tau(x, y) = (x^2, y^2), three squarings, takes the place of the doubling:
+ * it satisfies tau^2 - mu tau + 2 = 0 with mu = (-1)^(1 - a), so the scalar
+ * is rewritten in base tau (the tau-adic NAF of Solinas), after reducing it
+ * modulo delta = (tau^m - 1) / (tau - 1), which leaves about m digits, a
+ * third of them non-zero. The other curves use the binary NAF.
+ *
+ * The scalar multiplications assume that the point lies in the subgroup
+ * generated by the base point, as the keys do, since they reduce the scalar
+ * modulo its order n.
+ */
+public class BinaryCurve {
+
+    private final String name;
+    private final BinaryField field;
+    private final long[] a;
+    private final long[] b;
+    private final ECPoint g;
+    private final BigInteger n;
+    private final BigInteger h;
+
+    // For Koblitz curves: mu, and delta = d0 + d1 tau; for the others, mu is 0.
+    private final int mu;
+    private final BigInteger d0;
+    private final BigInteger d1;
+
+    /**
+     * A point in Lopez-Dahab coordinates; Z = 0 is the point of infinity.
+     */
+    private static final class LdPoint {
+        final long[] X;
+        final long[] Y;
+        final long[] Z;
+
+        LdPoint(long[] X, long[] Y, long[] Z) {
+            this.X = X;
+            this.Y = Y;
+            this.Z = Z;
+        }
+
+        boolean isPointOfInfinity() {
+            return BinaryField.isZero(Z);
+        }
+    }
+
+    /**
+     * Create the curve y^2 + xy = x^3 + a x^2 + b over GF(2^m), with the
+     * field defined by z^m + z^k_1 + ... + 1.
+     *
+     * @param name
+     * @param m
+     * @param middleTerms the exponents k_1 > k_2 > ... of the terms of the
+     *        field polynomial between z^m and 1
+     * @param a
+     * @param b
+     * @param g the base point
+     * @param n the order of the base point
+     * @param h the cofactor
+     */
+    public BinaryCurve(String name, int m, int[] middleTerms, BigInteger a, BigInteger b, ECPoint g, BigInteger n, BigInteger h) {
+        this.name = name;
+        this.field = new BinaryField(m, middleTerms);
+        this.a = field.fromBigInteger(a);
+        this.b = field.fromBigInteger(b);
+        if (BinaryField.isZero(this.b)) {
+            throw new IllegalArgumentException("b should not be 0");
+        }
+        this.g = g;
+        this.n = n;
+        this.h = h;
+        if (!isPointInsideCurve(g)) {
+            throw new IllegalArgumentException("The base point is not on the curve");
+        }
+
+        if (BinaryField.isOne(this.b) && (BinaryField.isZero(this.a) || BinaryField.isOne(this.a))) {
+            mu = BinaryField.isOne(this.a) ? 1 : -1;
+            // delta = sum of tau^i for 0 <= i < m, with tau^i = U_i tau - 2 U_(i-1)
+            // for the Lucas sequence U_0 = 0, U_1 = 1,
+            // U_(i+1) = mu U_i - 2 U_(i-1).
+            BigInteger previous = BigInteger.ZERO;
+            BigInteger current = BigInteger.ONE;
+            BigInteger sum1 = BigInteger.ZERO;
+            BigInteger sum0 = BigInteger.ZERO;
+            for (int i = 1; i < m; ++i) {
+                sum1 = sum1.add(current);
+                sum0 = sum0.add(previous);
+                BigInteger next = current.multiply(BigInteger.valueOf(mu)).subtract(previous.shiftLeft(1));
+                previous = current;
+                current = next;
+            }
+            d0 = BigInteger.ONE.subtract(sum0.shiftLeft(1));
+            d1 = sum1;
+        } else {
+            mu = 0;
+            d0 = null;
+            d1 = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getM() {
+        return field.m;
+    }
+
+    public BigInteger getA() {
+        return field.toBigInteger(a);
+    }
+
+    public BigInteger getB() {
+        return field.toBigInteger(b);
+    }
+
+    public ECPoint getBasePoint() {
+        return g;
+    }
+
+    public BigInteger getOrder() {
+        return n;
+    }
+
+    public BigInteger getCofactor() {
+        return h;
+    }
+
+    /**
+     * Whether this is a Koblitz curve, whose scalar multiplications use the
+     * tau-adic NAF.
+     *
+     * @return
+     */
+    public boolean isKoblitz() {
+        return mu != 0;
+    }
+
+    /**
+     * This method will check whether a point belong to this curve or not.
+     */
+    public boolean isPointInsideCurve(ECPoint point) {
+        if (point.isPointOfInfinity()) {
+            return true;
+        }
+        if (point.x.signum() < 0 || point.x.bitLength() > field.m || point.y.signum() < 0 || point.y.bitLength() > field.m) {
+            return false;
+        }
+        long[] x = field.fromBigInteger(point.x);
+        long[] y = field.fromBigInteger(point.y);
+        long[] xx = field.square(x);
+        // y^2 + xy = x^3 + a x^2 + b
+        long[] left = field.add(field.square(y), field.multiply(x, y));
+        long[] right = field.add(field.add(field.multiply(xx, x), field.multiply(a, xx)), b);
+        return BinaryField.equals(left, right);
+    }
+
+    /**
+     * Return -P = (x, x + y).
+     *
+     * @param point
+     * @return
+     */
+    public ECPoint negate(ECPoint point) {
+        if (point.isPointOfInfinity()) {
+            return point;
+        }
+        return new ECPoint(point.x, point.x.xor(point.y));
+    }
+
+    /**
+     * Return p1 + p2 in affine coordinates.
+     *
+     * @param p1
+     * @param p2
+     * @return
+     */
+    public ECPoint add(ECPoint p1, ECPoint p2) {
+        if (p1.isPointOfInfinity()) {
+            return p2;
+        }
+        if (p2.isPointOfInfinity()) {
+            return p1;
+        }
+        long[] x1 = field.fromBigInteger(p1.x);
+        long[] y1 = field.fromBigInteger(p1.y);
+        long[] x2 = field.fromBigInteger(p2.x);
+        long[] y2 = field.fromBigInteger(p2.y);
+        long[] lambda;
+        long[] x3;
+        if (BinaryField.equals(x1, x2)) {
+            if (!BinaryField.equals(y1, y2) || BinaryField.isZero(x1)) {
+                // p2 = -p1, or p1 = p2 has order 2.
+                return ECPoint.INFINTIY;
+            }
+            // lambda = x + y / x, x3 = lambda^2 + lambda + a
+            lambda = field.add(x1, field.multiply(y1, field.invert(x1)));
+            x3 = field.add(field.add(field.square(lambda), lambda), a);
+        } else {
+            // lambda = (y1 + y2) / (x1 + x2),
+            // x3 = lambda^2 + lambda + x1 + x2 + a
+            long[] dx = field.add(x1, x2);
+            lambda = field.multiply(field.add(y1, y2), field.invert(dx));
+            x3 = field.add(field.add(field.add(field.square(lambda), lambda), dx), a);
+        }
+        // y3 = lambda (x1 + x3) + x3 + y1
+        long[] y3 = field.add(field.add(field.multiply(lambda, field.add(x1, x3)), x3), y1);
+        return new ECPoint(field.toBigInteger(x3), field.toBigInteger(y3));
+    }
+
+    /**
+     * Return k * point.
+     *
+     * @param point
+     * @param k
+     * @return
+     */
+    public ECPoint multiply(ECPoint point, BigInteger k) {
+        if (point.isPointOfInfinity()) {
+            return point;
+        }
+        if (n != null) {
+            k = k.mod(n);
+        } else if (k.signum() < 0) {
+            return multiply(negate(point), k.negate());
+        }
+        long[] x = field.fromBigInteger(point.x);
+        long[] y = field.fromBigInteger(point.y);
+        long[] negativeY = field.add(x, y);
+
+        int[] digits = mu != 0 && n != null ? tauAdicNaf(k) : naf(k);
+        LdPoint result = new LdPoint(field.zero(), field.one(), field.zero());
+        for (int i = digits.length - 1; i >= 0; --i) {
+            result = mu != 0 && n != null ? frobenius(result) : twice(result);
+            if (digits[i] == 1) {
+                result = add(result, x, y);
+            } else if (digits[i] == -1) {
+                result = add(result, x, negativeY);
+            }
+        }
+        return toAffine(result);
+    }
+
+    public ECPoint multiplyBase(BigInteger k) {
+        return multiply(g, k);
+    }
+
+    private ECPoint toAffine(LdPoint point) {
+        if (point.isPointOfInfinity()) {
+            return ECPoint.INFINTIY;
+        }
+        long[] zInverse = field.invert(point.Z);
+        long[] x = field.multiply(point.X, zInverse);
+        long[] y = field.multiply(point.Y, field.square(zInverse));
+        return new ECPoint(field.toBigInteger(x), field.toBigInteger(y));
+    }
+
+    /**
+     * Return tau(point) = (X^2, Y^2, Z^2).
+     */
+    private LdPoint frobenius(LdPoint point) {
+        return new LdPoint(field.square(point.X), field.square(point.Y), field.square(point.Z));
+    }
+
+    /**
+     * Return 2 * point:
+     * Z3 = X1^2 Z1^2, X3 = X1^4 + b Z1^4,
+     * Y3 = b Z1^4 Z3 + X3 (a Z3 + Y1^2 + b Z1^4).
+     */
+    private LdPoint twice(LdPoint point) {
+        if (point.isPointOfInfinity() || BinaryField.isZero(point.X)) {
+            return new LdPoint(field.zero(), field.one(), field.zero());
+        }
+        long[] xx = field.square(point.X);
+        long[] zz = field.square(point.Z);
+        long[] bz4 = field.multiply(b, field.square(zz));
+        long[] z3 = field.multiply(xx, zz);
+        long[] x3 = field.add(field.square(xx), bz4);
+        long[] y3 = field.add(field.add(multiplyByA(z3), field.square(point.Y)), bz4);
+        y3 = field.add(field.multiply(bz4, z3), field.multiply(x3, y3));
+        return new LdPoint(x3, y3, z3);
+    }
+
+    /**
+     * Return point + (x2, y2), the second point in affine coordinates:
+     * A = y2 Z1^2 + Y1, B = x2 Z1 + X1, C = Z1 B, D = B^2 (C + a Z1^2),
+     * Z3 = C^2, E = A C, X3 = A^2 + D + E, F = X3 + x2 Z3,
+     * G = (x2 + y2) Z3^2, Y3 = (E + Z3) F + G.
+     */
+    private LdPoint add(LdPoint point, long[] x2, long[] y2) {
+        if (point.isPointOfInfinity()) {
+            return new LdPoint(x2, y2, field.one());
+        }
+        long[] zz = field.square(point.Z);
+        long[] A = field.add(field.multiply(y2, zz), point.Y);
+        long[] B = field.add(field.multiply(x2, point.Z), point.X);
+        if (BinaryField.isZero(B)) {
+            // Same x: the same point, or its opposite.
+            return BinaryField.isZero(A) ? twice(point) : new LdPoint(field.zero(), field.one(), field.zero());
+        }
+        long[] C = field.multiply(point.Z, B);
+        long[] D = field.multiply(field.square(B), field.add(C, multiplyByA(zz)));
+        long[] z3 = field.square(C);
+        long[] E = field.multiply(A, C);
+        long[] x3 = field.add(field.add(field.square(A), D), E);
+        long[] F = field.add(x3, field.multiply(x2, z3));
+        long[] G = field.multiply(field.add(x2, y2), field.square(z3));
+        long[] y3 = field.add(field.multiply(field.add(E, z3), F), G);
+        return new LdPoint(x3, y3, z3);
+    }
+
+    private long[] multiplyByA(long[] x) {
+        if (BinaryField.isZero(a)) {
+            return field.zero();
+        }
+        if (BinaryField.isOne(a)) {
+            return x;
+        }
+        return field.multiply(a, x);
+    }
+
+    /**
+     * Return the non-adjacent form of k >= 0, lowest digit first.
+     */
+    private static int[] naf(BigInteger k) {
+        List<Integer> digits = new ArrayList<Integer>(k.bitLength() + 1);
+        while (k.signum() > 0) {
+            int digit = 0;
+            if (k.testBit(0)) {
+                // 2 - (k mod 4), so that the next digit is 0.
+                digit = k.testBit(1) ? -1 : 1;
+                k = k.subtract(BigInteger.valueOf(digit));
+            }
+            digits.add(digit);
+            k = k.shiftRight(1);
+        }
+        return toArray(digits);
+    }
+
+    /**
+     * Return the tau-adic NAF of k reduced modulo delta, lowest digit first.
+     */
+    private int[] tauAdicNaf(BigInteger k) {
+        BigInteger[] r = reduceModDelta(k);
+        BigInteger r0 = r[0];
+        BigInteger r1 = r[1];
+        BigInteger four = BigInteger.valueOf(4);
+        List<Integer> digits = new ArrayList<Integer>(field.m + 8);
+        while (r0.signum() != 0 || r1.signum() != 0) {
+            int digit = 0;
+            if (r0.testBit(0)) {
+                // 2 - ((r0 - 2 r1) mod 4)
+                digit = 2 - r0.subtract(r1.shiftLeft(1)).mod(four).intValue();
+                r0 = r0.subtract(BigInteger.valueOf(digit));
+            }
+            digits.add(digit);
+            // (r0 + r1 tau) / tau = r1 + mu r0 / 2 - (r0 / 2) tau
+            BigInteger half = r0.shiftRight(1);
+            r0 = mu == 1 ? r1.add(half) : r1.subtract(half);
+            r1 = half.negate();
+        }
+        return toArray(digits);
+    }
+
+    /**
+     * Return r0 + r1 tau = k - q delta, where q is k / delta rounded as in
+     * Solinas' Routine 60, so that r0 + r1 tau has about m tau-adic digits.
+     */
+    private BigInteger[] reduceModDelta(BigInteger k) {
+        BigInteger m = BigInteger.valueOf(mu);
+        // k / delta = k conj(delta) / N(delta), with conj(tau) = mu - tau and
+        // N(d0 + d1 tau) = d0^2 + mu d0 d1 + 2 d1^2.
+        BigInteger norm = d0.multiply(d0).add(m.multiply(d0).multiply(d1)).add(d1.multiply(d1).shiftLeft(1));
+        BigInteger lambda0 = k.multiply(d0.add(m.multiply(d1)));
+        BigInteger lambda1 = k.multiply(d1).negate();
+
+        // All the rationals below are numerators over norm.
+        BigInteger f0 = roundDivide(lambda0, norm);
+        BigInteger f1 = roundDivide(lambda1, norm);
+        BigInteger eta0 = lambda0.subtract(f0.multiply(norm));
+        BigInteger eta1 = lambda1.subtract(f1.multiply(norm));
+        BigInteger eta = eta0.shiftLeft(1).add(m.multiply(eta1));
+        BigInteger minus3 = eta0.subtract(m.multiply(eta1).multiply(BigInteger.valueOf(3)));
+        BigInteger plus4 = eta0.add(m.multiply(eta1).shiftLeft(2));
+        BigInteger h0 = BigInteger.ZERO;
+        BigInteger h1 = BigInteger.ZERO;
+        if (eta.compareTo(norm) >= 0) {
+            if (minus3.compareTo(norm.negate()) < 0) {
+                h1 = m;
+            } else {
+                h0 = BigInteger.ONE;
+            }
+        } else if (plus4.compareTo(norm.shiftLeft(1)) >= 0) {
+            h1 = m;
+        }
+        if (eta.compareTo(norm.negate()) < 0) {
+            if (minus3.compareTo(norm) >= 0) {
+                h1 = m.negate();
+            } else {
+                h0 = BigInteger.ONE.negate();
+            }
+        } else if (plus4.compareTo(norm.shiftLeft(1).negate()) < 0) {
+            h1 = m.negate();
+        }
+        BigInteger q0 = f0.add(h0);
+        BigInteger q1 = f1.add(h1);
+
+        // (q0 + q1 tau)(d0 + d1 tau), with tau^2 = mu tau - 2.
+        BigInteger p0 = q0.multiply(d0).subtract(q1.multiply(d1).shiftLeft(1));
+        BigInteger p1 = q0.multiply(d1).add(q1.multiply(d0)).add(m.multiply(q1).multiply(d1));
+        return new BigInteger[] {k.subtract(p0), p1.negate()};
+    }
+
+    /**
+     * Return x / y rounded to the nearest integer, for y > 0.
+     */
+    private static BigInteger roundDivide(BigInteger x, BigInteger y) {
+        BigInteger[] qr = x.shiftLeft(1).add(y).divideAndRemainder(y.shiftLeft(1));
+        return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+    }
+
+    private static int[] toArray(List<Integer> digits) {
+        int[] result = new int[digits.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = digits.get(i);
+        }
+        return result;
+    }
+
+    // The NIST curves of FIPS 186-4, appendix D.1.3.
+
+    public static final BinaryCurve NIST_K_233 = new BinaryCurve(
+            "NIST K-233", 233, new int[] {74},
+            BigInteger.ZERO,
+            BigInteger.ONE,
+            new ECPoint(
+                    new BigInteger("17232ba853a7e731af129f22ff4149563a419c26bf50a4c9d6eefad6126", 16),
+                    new BigInteger("1db537dece819b7f70f555a67c427a8cd9bf18aeb9b56e0c11056fae6a3", 16)
+            ),
+            new BigInteger("8000000000000000000000000000069d5bb915bcd46efb1ad5f173abdf", 16),
+            BigInteger.valueOf(4)
+    );
+
+    public static final BinaryCurve NIST_B_233 = new BinaryCurve(
+            "NIST B-233", 233, new int[] {74},
+            BigInteger.ONE,
+            new BigInteger("066647ede6c332c7f8c0923bb58213b333b20e9ce4281fe115f7d8f90ad", 16),
+            new ECPoint(
+                    new BigInteger("0fac9dfcbac8313bb2139f1bb755fef65bc391f8b36f8f8eb7371fd558b", 16),
+                    new BigInteger("1006a08a41903350678e58528bebf8a0beff867a7ca36716f7e01f81052", 16)
+            ),
+            new BigInteger("1000000000000000000000000000013e974e72f8a6922031d2603cfe0d7", 16),
+            BigInteger.valueOf(2)
+    );
+
+    public static final BinaryCurve NIST_K_283 = new BinaryCurve(
+            "NIST K-283", 283, new int[] {12, 7, 5},
+            BigInteger.ZERO,
+            BigInteger.ONE,
+            new ECPoint(
+                    new BigInteger("503213f78ca44883f1a3b8162f188e553cd265f23c1567a16876913b0c2ac2458492836", 16),
+                    new BigInteger("1ccda380f1c9e318d90f95d07e5426fe87e45c0e8184698e45962364e34116177dd2259", 16)
+            ),
+            new BigInteger("1ffffffffffffffffffffffffffffffffffe9ae2ed07577265dff7f94451e061e163c61", 16),
+            BigInteger.valueOf(4)
+    );
+
+    public static final BinaryCurve NIST_B_283 = new BinaryCurve(
+            "NIST B-283", 283, new int[] {12, 7, 5},
+            BigInteger.ONE,
+            new BigInteger("27b680ac8b8596da5a4af8a19a0303fca97fd7645309fa2a581485af6263e313b79a2f5", 16),
+            new ECPoint(
+                    new BigInteger("5f939258db7dd90e1934f8c70b0dfec2eed25b8557eac9c80e2e198f8cdbecd86b12053", 16),
+                    new BigInteger("3676854fe24141cb98fe6d4b20d02b4516ff702350eddb0826779c813f0df45be8112f4", 16)
+            ),
+            new BigInteger("3ffffffffffffffffffffffffffffffffffef90399660fc938a90165b042a7cefadb307", 16),
+            BigInteger.valueOf(2)
+    );
+
+    public static final BinaryCurve NIST_K_409 = new BinaryCurve(
+            "NIST K-409", 409, new int[] {87},
+            BigInteger.ZERO,
+            BigInteger.ONE,
+            new ECPoint(
+                    new BigInteger("060f05f658f49c1ad3ab1890f7184210efd0987e307c84c27accfb8f9f67cc2c460189eb5aaaa62ee222eb1b35540cfe9023746", 16),
+                    new BigInteger("1e369050b7c4e42acba1dacbf04299c3460782f918ea427e6325165e9ea10e3da5f6c42e9c55215aa9ca27a5863ec48d8e0286b", 16)
+            ),
+            new BigInteger("7ffffffffffffffffffffffffffffffffffffffffffffffffffe5f83b2d4ea20400ec4557d5ed3e3e7ca5b4b5c83b8e01e5fcf", 16),
+            BigInteger.valueOf(4)
+    );
+
+    public static final BinaryCurve NIST_B_409 = new BinaryCurve(
+            "NIST B-409", 409, new int[] {87},
+            BigInteger.ONE,
+            new BigInteger("021a5c2c8ee9feb5c4b9a753b7b476b7fd6422ef1f3dd674761fa99d6ac27c8a9a197b272822f6cd57a55aa4f50ae317b13545f", 16),
+            new ECPoint(
+                    new BigInteger("15d4860d088ddb3496b0c6064756260441cde4af1771d4db01ffe5b34e59703dc255a868a1180515603aeab60794e54bb7996a7", 16),
+                    new BigInteger("061b1cfab6be5f32bbfa78324ed106a7636b9c5a7bd198d0158aa4f5488d08f38514f1fdf4b4f40d2181b3681c364ba0273c706", 16)
+            ),
+            new BigInteger("10000000000000000000000000000000000000000000000000001e2aad6a612f33307be5fa47c3c9e052f838164cd37d9a21173", 16),
+            BigInteger.valueOf(2)
+    );
+}
@@ -0,0 +1,263 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in the binary field GF(2^m) = GF(2)[z] / f(z), for BinaryCurve,
+ * where f is a trinomial or a pentanomial z^m + z^k_1 + ... + 1.
+ *
+ * An element is a polynomial of degree below m, its coefficients packed into
+ * a long[] of ceil(m / 64) words, lowest degree first; the coefficient of z^i
+ * is bit i % 64 of word i / 64. Addition is XOR.
+ *
+ * Products are computed with the left-to-right comb method of Lopez and
+ * Dahab with windows of 4 bits: the 16 multiples u(z) b(z) of b by the
+ * polynomials of degree below 4 are computed once, then every 4-bit digit of
+ * a picks one and XORs it in, which replaces the carry-less multiplication of
+ * the words. Squaring only spreads the bits apart, with a table. Since f is
+ * sparse, the reduction folds every word above z^m back with a few shifts
+ * and XORs, one per term of f.
+ */
+final class BinaryField {
+
+    final int m;
+    final int words;
+
+    // The exponents of the terms of f below z^m, 0 included.
+    private final int[] terms;
+
+    private static final int WINDOW_WIDTH = 4;
+
+    // SPREAD[b] has the bits of the byte b at the even positions.
+    private static final int[] SPREAD = new int[256];
+
+    static {
+        for (int b = 0; b < 256; ++b) {
+            int spread = 0;
+            for (int i = 0; i < 8; ++i) {
+                if ((b & (1 << i)) != 0) {
+                    spread |= 1 << (2 * i);
+                }
+            }
+            SPREAD[b] = spread;
+        }
+    }
+
+    /**
+     * Create GF(2^m) for f = z^m + z^k_1 + ... + 1.
+     *
+     * @param m
+     * @param middleTerms the exponents k_i, with m - 64 >= k_1 > k_2 > ... > 0
+     */
+    BinaryField(int m, int[] middleTerms) {
+        this.m = m;
+        this.words = (m + 63) / 64;
+        this.terms = new int[middleTerms.length + 1];
+        for (int i = 0; i < middleTerms.length; ++i) {
+            if (middleTerms[i] <= 0 || middleTerms[i] > m - 64) {
+                throw new IllegalArgumentException("The middle terms should be in (0, m - 64]");
+            }
+            terms[i] = middleTerms[i];
+        }
+        terms[middleTerms.length] = 0;
+    }
+
+    long[] fromBigInteger(BigInteger x) {
+        if (x.signum() < 0 || x.bitLength() > m) {
+            throw new IllegalArgumentException("The element should have at most " + m + " bits");
+        }
+        long[] a = new long[words];
+        for (int i = 0; i < words; ++i) {
+            a[i] = x.shiftRight(64 * i).longValue();
+        }
+        return a;
+    }
+
+    BigInteger toBigInteger(long[] a) {
+        BigInteger x = BigInteger.ZERO;
+        for (int i = words - 1; i >= 0; --i) {
+            x = x.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(a[i])));
+        }
+        return x;
+    }
+
+    long[] zero() {
+        return new long[words];
+    }
+
+    long[] one() {
+        long[] a = new long[words];
+        a[0] = 1;
+        return a;
+    }
+
+    static boolean isZero(long[] a) {
+        long or = 0;
+        for (long w : a) {
+            or |= w;
+        }
+        return or == 0;
+    }
+
+    static boolean isOne(long[] a) {
+        long or = a[0] ^ 1;
+        for (int i = 1; i < a.length; ++i) {
+            or |= a[i];
+        }
+        return or == 0;
+    }
+
+    static boolean equals(long[] a, long[] b) {
+        long or = 0;
+        for (int i = 0; i < a.length; ++i) {
+            or |= a[i] ^ b[i];
+        }
+        return or == 0;
+    }
+
+    long[] add(long[] a, long[] b) {
+        long[] c = new long[words];
+        for (int i = 0; i < words; ++i) {
+            c[i] = a[i] ^ b[i];
+        }
+        return c;
+    }
+
+    long[] multiply(long[] a, long[] b) {
+        // table[u] = u(z) b(z), one word longer than b.
+        long[][] table = new long[1 << WINDOW_WIDTH][words + 1];
+        for (int i = 0; i < words; ++i) {
+            table[1][i] = b[i];
+        }
+        for (int u = 2; u < table.length; ++u) {
+            long[] t = table[u];
+            if ((u & 1) == 0) {
+                long[] half = table[u >>> 1];
+                long carry = 0;
+                for (int i = 0; i <= words; ++i) {
+                    t[i] = (half[i] << 1) | carry;
+                    carry = half[i] >>> 63;
+                }
+            } else {
+                long[] even = table[u - 1];
+                for (int i = 0; i <= words; ++i) {
+                    t[i] = even[i] ^ table[1][i];
+                }
+            }
+        }
+
+        long[] c = new long[2 * words + 1];
+        for (int j = 64 / WINDOW_WIDTH - 1; j >= 0; --j) {
+            int shift = WINDOW_WIDTH * j;
+            for (int i = 0; i < words; ++i) {
+                long[] t = table[(int) (a[i] >>> shift) & ((1 << WINDOW_WIDTH) - 1)];
+                for (int k = 0; k <= words; ++k) {
+                    c[i + k] ^= t[k];
+                }
+            }
+            if (j != 0) {
+                for (int k = c.length - 1; k > 0; --k) {
+                    c[k] = (c[k] << WINDOW_WIDTH) | (c[k - 1] >>> (64 - WINDOW_WIDTH));
+                }
+                c[0] <<= WINDOW_WIDTH;
+            }
+        }
+        return reduce(c);
+    }
+
+    long[] square(long[] a) {
+        long[] c = new long[2 * words];
+        for (int i = 0; i < words; ++i) {
+            long w = a[i];
+            c[2 * i] = spread((int) w);
+            c[2 * i + 1] = spread((int) (w >>> 32));
+        }
+        return reduce(c);
+    }
+
+    /**
+     * Return the 32 bits of w at the even positions of a long.
+     */
+    private static long spread(int w) {
+        return (SPREAD[w & 0xff] & 0xffffL)
+                | (SPREAD[(w >>> 8) & 0xff] & 0xffffL) << 16
+                | (SPREAD[(w >>> 16) & 0xff] & 0xffffL) << 32
+                | (SPREAD[(w >>> 24) & 0xff] & 0xffffL) << 48;
+    }
+
+    /**
+     * Return a^(2^k).
+     */
+    private long[] square(long[] a, int k) {
+        for (int i = 0; i < k; ++i) {
+            a = square(a);
+        }
+        return a;
+    }
+
+    /**
+     * Return 1 / a = a^(2^m - 2), by the method of Itoh and Tsujii: about
+     * log2(m) multiplications, and m squarings.
+     *
+     * @throws ArithmeticException if a is 0
+     */
+    long[] invert(long[] a) {
+        if (isZero(a)) {
+            throw new ArithmeticException("0 is not invertible");
+        }
+        // beta = a^(2^k - 1), up to k = m - 1.
+        int e = m - 1;
+        long[] beta = a;
+        int k = 1;
+        for (int i = 31 - Integer.numberOfLeadingZeros(e) - 1; i >= 0; --i) {
+            beta = multiply(square(beta, k), beta);
+            k *= 2;
+            if ((e & (1 << i)) != 0) {
+                beta = multiply(square(beta), a);
+                k += 1;
+            }
+        }
+        return square(beta);
+    }
+
+    /**
+     * Reduce the polynomial c modulo f, folding the words from the top.
+     */
+    private long[] reduce(long[] c) {
+        int top = m / 64;
+        int r = m % 64;
+        for (int i = c.length - 1; i > top; --i) {
+            long t = c[i];
+            if (t == 0) {
+                continue;
+            }
+            c[i] = 0;
+            // z^(64 i) = z^(64 i - m) (z^k_1 + ... + 1).
+            for (int term : terms) {
+                xorAt(c, t, 64 * i - m + term);
+            }
+        }
+        long t = c[top] >>> r;
+        if (t != 0) {
+            c[top] &= (1L << r) - 1;
+            for (int term : terms) {
+                xorAt(c, t, term);
+            }
+        }
+        long[] result = new long[words];
+        System.arraycopy(c, 0, result, 0, words);
+        return result;
+    }
+
+    /**
+     * XOR the 64 bits of t into c, from bit position.
+     */
+    private static void xorAt(long[] c, long t, int position) {
+        int word = position >>> 6;
+        int bit = position & 63;
+        c[word] ^= t << bit;
+        if (bit != 0) {
+            c[word + 1] ^= t >>> (64 - bit);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class remembers the points another encoder returned, so that blocks
+ * seen before are not encoded again.
+ *
+ * Encoding is deterministic, while the randomness of El Gamal comes from the
+ * per-block nonce, so caching the encoded points is safe, and pays off for
+ * plain texts with many equal blocks, such as the runs of zero bytes of disk
+ * images. Up to a limited number of entries are kept, least recently used
+ * entries are evicted first. Decoding is left to the other encoder.
+ *
+ * To cache the encodings of an engine:
+ *
+ *     new ECCEngine(c, source, threads, strategy,
+ *             new CachingEncoder(PointEncoder.KOBLITZ, 4096), sink);
+ *
+ * Instances are thread-safe.
+ */
+public class CachingEncoder implements PointEncoder {
+
+    private final PointEncoder encoder;
+    private final int capacity;
+    private final LinkedHashMap<CacheKey, ECPoint> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Identifies one block: the curve and the block.
+     */
+    private static final class CacheKey {
+        private final BigInteger p;
+        private final BigInteger a;
+        private final BigInteger b;
+        private final BigInteger m;
+        private final int hash;
+
+        CacheKey(EllipticCurve c, BigInteger m) {
+            this.p = c.getP();
+            this.a = c.getA();
+            this.b = c.getB();
+            this.m = m;
+            this.hash = Arrays.hashCode(new Object[] {p, a, b, m});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey e = (CacheKey) o;
+            return hash == e.hash && m.equals(e.m)
+                    && p.equals(e.p) && a.equals(e.a) && b.equals(e.b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @param encoder the encoder computing the points
+     * @param capacity the maximum number of points to remember
+     */
+    public CachingEncoder(PointEncoder encoder, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity should be at least 1");
+        }
+        this.encoder = encoder;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<CacheKey, ECPoint>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, ECPoint> eldest) {
+                return size() > CachingEncoder.this.capacity;
+            }
+        };
+    }
+
+    public PointEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public int getBlockSize(EllipticCurve c) {
+        return encoder.getBlockSize(c);
+    }
+
+    @Override
+    public ECPoint encode(EllipticCurve c, BigInteger m) throws Exception {
+        CacheKey entry = new CacheKey(c, m);
+        synchronized (cache) {
+            ECPoint cached = cache.get(entry);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return new ECPoint(cached);
+            }
+        }
+
+        // Encode outside of the lock, so that the workers of an engine
+        // encode different blocks at the same time.
+        misses.incrementAndGet();
+        ECPoint point = encoder.encode(c, m);
+        synchronized (cache) {
+            cache.put(entry, new ECPoint(point));
+        }
+        return point;
+    }
+
+    @Override
+    public BigInteger decode(EllipticCurve c, ECPoint point) throws Exception {
+        return encoder.decode(c, point);
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Return the fraction of the blocks found in the cache, or 0 if nothing
+     * was encoded yet.
+     *
+     * @return
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
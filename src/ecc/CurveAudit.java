@@ -0,0 +1,538 @@
+package ecc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class audits the strength of a curve by attacking a public key on it
+ * with Pollard's rho method, in parallel with distinguished points (van
+ * Oorschot and Wiener):
+ *
+ *     CurveAudit [-threads n] [-seconds s] [-checkpoint file] key.pub
+ *
+ * Every thread runs many pseudo-random walks X -> X + R_h(X) over a fixed set
+ * of points R_j = a_j G + b_j Q, keeping track of X = aG + bQ. A point whose
+ * x-coordinate ends with enough zero bits is distinguished, and goes to a
+ * store shared by all threads; when two walks reach the same distinguished
+ * point (or opposite ones), a G + b Q = +-(a' G + b' Q) gives the private key
+ * d with Q = dG. The walks take about sqrt(pi n / 2) steps in all, n being
+ * the prime order of G, so this is only feasible for small curves; for the
+ * others, a run limited with -seconds measures the rate of the walks and
+ * extrapolates the time a full attack would take.
+ *
+ * The steps of the walks of a thread are done together, so that they share a
+ * single modular inversion (Montgomery's trick) instead of one per step.
+ *
+ * With -checkpoint, the store and the step count are saved to the file every
+ * minute and at the end, and read back when the file exists, so an
+ * interrupted audit resumes where it stopped: the walks are new, but they
+ * still run into the points of the saved store.
+ */
+public class CurveAudit {
+
+    // The number of points R_j of the walk.
+    private static final int PARTITIONS = 32;
+
+    // The number of walks done together by one thread.
+    private static final int WALKS_PER_THREAD = 64;
+
+    // About this many distinguished points are expected before a collision.
+    private static final int EXPECTED_DISTINGUISHED_POINTS_BITS = 16;
+
+    private static final int CHECKPOINT_MAGIC = 0x45435241;
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 60000;
+
+    private final EllipticCurve c;
+    private final ECPoint g;
+    private final ECPoint q;
+    private final BigInteger n;
+    private final BigInteger p;
+    private final int threads;
+    private final File checkpoint;
+    private final int distinguishedBits;
+    private final long distinguishedMask;
+
+    private final BigInteger[] partitionA = new BigInteger[PARTITIONS];
+    private final BigInteger[] partitionB = new BigInteger[PARTITIONS];
+    private final ECPoint[] partitions = new ECPoint[PARTITIONS];
+
+    private final Map<BigInteger, Trail> store = new ConcurrentHashMap<BigInteger, Trail>();
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicReference<BigInteger> solution = new AtomicReference<BigInteger>();
+    private volatile boolean stopped = false;
+
+    /**
+     * A distinguished point aG + bQ.
+     */
+    private static final class Trail {
+        final BigInteger y;
+        final BigInteger a;
+        final BigInteger b;
+
+        Trail(BigInteger y, BigInteger a, BigInteger b) {
+            this.y = y;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    /**
+     * The outcome of an audit.
+     */
+    public static class Result {
+        private final BigInteger privateKey;
+        private final BigInteger order;
+        private final double expectedSteps;
+        private final long steps;
+        private final int distinguishedPoints;
+        private final long millis;
+
+        Result(BigInteger privateKey, BigInteger order, double expectedSteps, long steps, int distinguishedPoints, long millis) {
+            this.privateKey = privateKey;
+            this.order = order;
+            this.expectedSteps = expectedSteps;
+            this.steps = steps;
+            this.distinguishedPoints = distinguishedPoints;
+            this.millis = millis;
+        }
+
+        /**
+         * @return null if the attack was stopped before it succeeded.
+         */
+        public BigInteger getPrivateKey() {
+            return privateKey;
+        }
+
+        public BigInteger getOrder() {
+            return order;
+        }
+
+        /**
+         * Return the expected number of steps of the whole attack,
+         * sqrt(pi n / 2).
+         */
+        public double getExpectedSteps() {
+            return expectedSteps;
+        }
+
+        /**
+         * Return the number of steps done, over all the runs of a resumed
+         * audit.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        public int getDistinguishedPoints() {
+            return distinguishedPoints;
+        }
+
+        /**
+         * Return the duration of this run.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Return the number of steps per second of this run.
+         */
+        public double getRate(long stepsBefore) {
+            return millis == 0 ? 0 : (steps - stepsBefore) * 1000.0 / millis;
+        }
+    }
+
+    /**
+     * Prepare the audit of the key. The order of the base point is computed
+     * with point counting if it is not known, and must be prime.
+     *
+     * @param key
+     * @param threads
+     * @param checkpoint the file to save the progress to and resume from, or
+     *        null
+     * @throws Exception
+     */
+    public CurveAudit(PublicKey key, int threads, File checkpoint) throws Exception {
+        this.c = key.getCurve();
+        this.g = c.getBasePoint();
+        this.q = key.getKey();
+        this.p = c.getP();
+        this.n = c.computeOrder();
+        if (n == null || !n.isProbablePrime(64)) {
+            throw new IllegalArgumentException("The order of the base point should be a known prime");
+        }
+        this.threads = threads;
+        this.checkpoint = checkpoint;
+
+        int expectedBits = (int) Math.ceil(Math.log(expectedSteps(n)) / Math.log(2));
+        this.distinguishedBits = Math.min(Math.max(expectedBits - EXPECTED_DISTINGUISHED_POINTS_BITS, 0), 48);
+        this.distinguishedMask = (1L << distinguishedBits) - 1;
+
+        Random random = new SecureRandom();
+        for (int j = 0; j < PARTITIONS; ++j) {
+            partitionA[j] = randomScalar(random);
+            partitionB[j] = randomScalar(random);
+        }
+        if (checkpoint != null && checkpoint.exists()) {
+            load();
+        }
+        FixedBaseTable table = c.getFixedBaseTable();
+        for (int j = 0; j < PARTITIONS; ++j) {
+            partitions[j] = table.multiplyAdd(partitionA[j], partitionB[j], q);
+        }
+    }
+
+    /**
+     * Return the expected number of steps of the rho method in a group of
+     * prime order n, sqrt(pi n / 2).
+     *
+     * @param n
+     * @return
+     */
+    public static double expectedSteps(BigInteger n) {
+        return Math.sqrt(Math.PI * n.doubleValue() / 2);
+    }
+
+    public BigInteger getOrder() {
+        return n;
+    }
+
+    public long getSteps() {
+        return steps.get();
+    }
+
+    public int getDistinguishedPoints() {
+        return store.size();
+    }
+
+    /**
+     * Stop the walks; run returns without a private key.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Run the walks until the private key is found, stop is called, or the
+     * given time has passed.
+     *
+     * @param maxMillis the longest time to run, or 0 to run until done
+     * @return
+     * @throws Exception
+     */
+    public Result run(long maxMillis) throws Exception {
+        long start = System.currentTimeMillis();
+        List<Thread> workers = new ArrayList<Thread>(threads);
+        for (int t = 0; t < threads; ++t) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    walk();
+                }
+            }, "ecc-audit-" + t);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        long lastCheckpoint = start;
+        while (solution.get() == null && !stopped) {
+            long now = System.currentTimeMillis();
+            if (maxMillis > 0 && now - start >= maxMillis) {
+                break;
+            }
+            if (checkpoint != null && now - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS) {
+                save();
+                lastCheckpoint = now;
+            }
+            Thread.sleep(100);
+        }
+        stopped = true;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (checkpoint != null) {
+            save();
+        }
+        return new Result(solution.get(), n, expectedSteps(n), steps.get(), store.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    private BigInteger randomScalar(Random random) {
+        BigInteger k;
+        do {
+            k = new BigInteger(n.bitLength(), random);
+        } while (k.signum() == 0 || k.compareTo(n) >= 0);
+        return k;
+    }
+
+    /**
+     * Run WALKS_PER_THREAD walks until the attack is over.
+     */
+    private void walk() {
+        Random random = new SecureRandom();
+        FixedBaseTable table = c.getFixedBaseTable();
+        int count = WALKS_PER_THREAD;
+        BigInteger[] x = new BigInteger[count];
+        BigInteger[] y = new BigInteger[count];
+        BigInteger[] a = new BigInteger[count];
+        BigInteger[] b = new BigInteger[count];
+        long[] length = new long[count];
+        int[] partition = new int[count];
+        BigInteger[] prefix = new BigInteger[count];
+        // A walk that has not met a distinguished point after this many steps
+        // is probably stuck in a cycle.
+        long maxLength = 20L << distinguishedBits;
+
+        for (int i = 0; i < count; ++i) {
+            restart(i, x, y, a, b, length, table, random);
+        }
+        while (!stopped) {
+            // The denominators x(R_j) - x of all the additions are inverted
+            // together.
+            BigInteger product = BigInteger.ONE;
+            for (int i = 0; i < count; ++i) {
+                int j = partition(x[i]);
+                partition[i] = j;
+                BigInteger dx = partitions[j].x.subtract(x[i]).mod(p);
+                if (dx.signum() != 0) {
+                    product = product.multiply(dx).mod(p);
+                }
+                prefix[i] = product;
+            }
+            BigInteger inverse = product.modInverse(p);
+            for (int i = count - 1; i >= 0; --i) {
+                ECPoint r = partitions[partition[i]];
+                BigInteger dx = r.x.subtract(x[i]).mod(p);
+                if (dx.signum() == 0) {
+                    // X = +-R_j, which the general formula does not handle.
+                    ECPoint sum = c.add(new ECPoint(x[i], y[i]), r);
+                    if (sum.isPointOfInfinity()) {
+                        restart(i, x, y, a, b, length, table, random);
+                        continue;
+                    }
+                    x[i] = sum.x;
+                    y[i] = sum.y;
+                } else {
+                    BigInteger dxInverse = i > 0 ? inverse.multiply(prefix[i - 1]).mod(p) : inverse;
+                    inverse = inverse.multiply(dx).mod(p);
+                    BigInteger lambda = r.y.subtract(y[i]).multiply(dxInverse).mod(p);
+                    BigInteger x3 = lambda.multiply(lambda).subtract(x[i]).subtract(r.x).mod(p);
+                    y[i] = lambda.multiply(x[i].subtract(x3)).subtract(y[i]).mod(p);
+                    x[i] = x3;
+                }
+                a[i] = addMod(a[i], partitionA[partition[i]]);
+                b[i] = addMod(b[i], partitionB[partition[i]]);
+                ++length[i];
+
+                if ((x[i].longValue() & distinguishedMask) == 0) {
+                    distinguished(x[i], y[i], a[i], b[i]);
+                    restart(i, x, y, a, b, length, table, random);
+                } else if (length[i] > maxLength) {
+                    restart(i, x, y, a, b, length, table, random);
+                }
+            }
+            steps.addAndGet(count);
+        }
+    }
+
+    private int partition(BigInteger x) {
+        return (int) ((x.longValue() * 0x9e3779b97f4a7c15L) >>> 59) & (PARTITIONS - 1);
+    }
+
+    private BigInteger addMod(BigInteger u, BigInteger v) {
+        BigInteger sum = u.add(v);
+        return sum.compareTo(n) >= 0 ? sum.subtract(n) : sum;
+    }
+
+    private void restart(int i, BigInteger[] x, BigInteger[] y, BigInteger[] a, BigInteger[] b, long[] length, FixedBaseTable table, Random random) {
+        ECPoint start;
+        do {
+            a[i] = randomScalar(random);
+            b[i] = randomScalar(random);
+            start = table.multiplyAdd(a[i], b[i], q);
+        } while (start.isPointOfInfinity());
+        x[i] = start.x;
+        y[i] = start.y;
+        length[i] = 0;
+        restarts.incrementAndGet();
+    }
+
+    /**
+     * Store the distinguished point aG + bQ = (x, y), and solve for the key
+     * if another walk reached it before.
+     */
+    private void distinguished(BigInteger x, BigInteger y, BigInteger a, BigInteger b) {
+        Trail trail = new Trail(y, a, b);
+        Trail other = store.putIfAbsent(x, trail);
+        if (other == null) {
+            return;
+        }
+        BigInteger d;
+        if (other.y.equals(y)) {
+            // aG + bQ = a'G + b'Q, so d = (a - a') / (b' - b).
+            BigInteger denominator = other.b.subtract(b).mod(n);
+            if (denominator.signum() == 0) {
+                return;
+            }
+            d = a.subtract(other.a).multiply(denominator.modInverse(n)).mod(n);
+        } else {
+            // aG + bQ = -(a'G + b'Q), so d = -(a + a') / (b + b').
+            BigInteger denominator = b.add(other.b).mod(n);
+            if (denominator.signum() == 0) {
+                return;
+            }
+            d = a.add(other.a).negate().multiply(denominator.modInverse(n)).mod(n);
+        }
+        ECPoint check = c.getFixedBaseTable().multiply(d);
+        if (check.x.equals(q.x.mod(p)) && check.y.equals(q.y.mod(p))) {
+            solution.compareAndSet(null, d);
+            stopped = true;
+        }
+    }
+
+    /**
+     * Write the parameters, the walk, the step count and the store to the
+     * checkpoint file, through a temporary file so that an interruption never
+     * leaves a partial checkpoint.
+     */
+    private synchronized void save() throws IOException {
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            for (BigInteger value : identity()) {
+                writeBigInteger(out, value);
+            }
+            out.writeInt(distinguishedBits);
+            for (int j = 0; j < PARTITIONS; ++j) {
+                writeBigInteger(out, partitionA[j]);
+                writeBigInteger(out, partitionB[j]);
+            }
+            out.writeLong(steps.get());
+            List<Map.Entry<BigInteger, Trail>> entries = new ArrayList<Map.Entry<BigInteger, Trail>>(store.entrySet());
+            out.writeInt(entries.size());
+            for (Map.Entry<BigInteger, Trail> entry : entries) {
+                writeBigInteger(out, entry.getKey());
+                writeBigInteger(out, entry.getValue().y);
+                writeBigInteger(out, entry.getValue().a);
+                writeBigInteger(out, entry.getValue().b);
+            }
+        }
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a checkpoint of an audit");
+            }
+            for (BigInteger value : identity()) {
+                if (!readBigInteger(in).equals(value)) {
+                    throw new IOException("The checkpoint belongs to another curve or key");
+                }
+            }
+            if (in.readInt() != distinguishedBits) {
+                throw new IOException("The checkpoint uses other distinguished points");
+            }
+            for (int j = 0; j < PARTITIONS; ++j) {
+                partitionA[j] = readBigInteger(in);
+                partitionB[j] = readBigInteger(in);
+            }
+            steps.set(in.readLong());
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                BigInteger x = readBigInteger(in);
+                store.put(x, new Trail(readBigInteger(in), readBigInteger(in), readBigInteger(in)));
+            }
+        }
+    }
+
+    /**
+     * Return the values identifying the curve and the key of the audit.
+     */
+    private BigInteger[] identity() {
+        return new BigInteger[] {p, c.getA().mod(p), c.getB().mod(p), g.x.mod(p), g.y.mod(p), q.x.mod(p), q.y.mod(p)};
+    }
+
+    private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readBigInteger(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: CurveAudit [-threads n] [-seconds s] [-checkpoint file] key.pub");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seconds = 0;
+        File checkpoint = null;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); ++i) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-seconds".equals(args[i]) && i + 1 < args.length) {
+                seconds = Long.parseLong(args[++i]);
+            } else if ("-checkpoint".equals(args[i]) && i + 1 < args.length) {
+                checkpoint = new File(args[++i]);
+            } else {
+                usage();
+            }
+        }
+        if (args.length - i != 1 || threads < 1 || seconds < 0) {
+            usage();
+        }
+        PublicKey key = new PublicKey(args[i]);
+        if (key.getCurve() == null) {
+            System.err.println("Cannot read the public key " + args[i]);
+            System.exit(1);
+        }
+
+        CurveAudit audit = new CurveAudit(key, threads, checkpoint);
+        long stepsBefore = audit.getSteps();
+        System.out.println("Order of the base point: " + audit.getOrder() + " (" + audit.getOrder().bitLength() + " bits)");
+        System.out.printf("Expected work: 2^%.1f steps%n", Math.log(expectedSteps(audit.getOrder())) / Math.log(2));
+        if (stepsBefore > 0) {
+            System.out.println("Resuming after " + stepsBefore + " steps and " + audit.getDistinguishedPoints() + " distinguished points");
+        }
+
+        Result result = audit.run(seconds * 1000);
+        double rate = result.getRate(stepsBefore);
+        System.out.printf("Observed work: 2^%.1f steps (%.2f of the expected), %d distinguished points, %.0f steps/s on %d threads%n",
+                Math.log(Math.max(result.getSteps(), 1)) / Math.log(2), result.getSteps() / result.getExpectedSteps(),
+                result.getDistinguishedPoints(), rate, threads);
+        if (result.getPrivateKey() != null) {
+            System.out.println("Private key found: " + result.getPrivateKey());
+            System.out.println("The curve is NOT safe to use.");
+        } else if (rate > 0) {
+            double remaining = Math.max(result.getExpectedSteps() - result.getSteps(), 0) / rate;
+            System.out.printf("Stopped. Expected time to find the key at this rate: %.3g days%n", remaining / 86400);
+        }
+    }
+}
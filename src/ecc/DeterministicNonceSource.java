@@ -0,0 +1,90 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.Mac;
+
+/**
+ * A nonce source deriving every nonce from a secret and a digest, as in
+ * RFC 6979 (with HMAC-SHA256). No entropy is needed at all after
+ * construction.
+ * 
+ * For signatures the secret is the private key, exactly as in RFC 6979. When
+ * there is no private key (encryption with a public key) the secret given to
+ * the constructor is used instead. Note that this makes the encryption
+ * deterministic: the same plain text encrypted with the same public key and
+ * the same source gives the same cipher text.
+ *
+ * A call with neither a private key nor a digest, as in key-pair generation,
+ * is refused: every such call would return the same scalar.
+ */
+public class DeterministicNonceSource implements NonceSource {
+
+    private final BigInteger defaultSecret;
+
+    private static final ThreadLocal<Mac> MAC = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(HmacDrbg.ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * Create a source that only serves callers giving a private key, such as
+     * signatures.
+     */
+    public DeterministicNonceSource() {
+        this.defaultSecret = null;
+    }
+
+    /**
+     * @param defaultSecret the secret used when no private key is given, it
+     *        should be at least as long as the scalars of the curves used
+     */
+    public DeterministicNonceSource(byte[] defaultSecret) {
+        this.defaultSecret = new BigInteger(1, defaultSecret);
+        if (this.defaultSecret.signum() == 0) {
+            throw new IllegalArgumentException("The secret should not be zero");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no private key and no
+     *         digest, or no private key and no default secret
+     */
+    @Override
+    public BigInteger nextNonce(BigInteger bound, BigInteger secret, byte[] digest) {
+        if (secret == null && digest == null) {
+            throw new IllegalArgumentException("A deterministic source needs a private key or a digest, or every nonce would be the same");
+        }
+        if (secret == null && defaultSecret == null) {
+            throw new IllegalArgumentException("This source needs a private key to derive the nonce from");
+        }
+        int qlen = bound.bitLength();
+        BigInteger x = (secret != null ? secret : defaultSecret).mod(bound);
+        BigInteger h = digest != null ? HmacDrbg.bits2int(digest, qlen).mod(bound) : BigInteger.ZERO;
+
+        // seed = int2octets(x) || bits2octets(h1)
+        byte[] xOctets = HmacDrbg.int2octets(x, qlen);
+        byte[] hOctets = HmacDrbg.int2octets(h, qlen);
+        byte[] seed = new byte[xOctets.length + hOctets.length];
+        System.arraycopy(xOctets, 0, seed, 0, xOctets.length);
+        System.arraycopy(hOctets, 0, seed, xOctets.length, hOctets.length);
+
+        try {
+            return new HmacDrbg(MAC.get(), seed).nextScalar(bound);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A nonce source drawing every nonce from an HMAC_DRBG (SP 800-90A) that no
+ * other thread uses at the same time.
+ * 
+ * The generators are kept in a pool of idle ones: a nonce is drawn from a
+ * generator taken from the pool, which is given back afterwards, and a new
+ * generator is only created when all of them are busy. They therefore
+ * outlive the threads using them, so that short-lived threads (such as the
+ * virtual threads of ECCAsync) do not seed a new one for every operation.
+ * 
+ * Each generator is seeded from its own SecureRandom when it is created, and
+ * reseeded from it after a fixed number of nonces. Only the (rare) seeding
+ * reads from the operating system's entropy source.
+ */
+public class DrbgNonceSource implements NonceSource {
+
+    // Well below the limit of 2^48 requests between reseeds of SP 800-90A.
+    public static final long DEFAULT_RESEED_INTERVAL = 1L << 16;
+
+    private static final int SEED_LENGTH = 48;
+
+    private final long reseedInterval;
+
+    private static class State {
+        final SecureRandom entropy = new SecureRandom();
+        final HmacDrbg drbg;
+
+        State() throws GeneralSecurityException {
+            byte[] seed = new byte[SEED_LENGTH];
+            entropy.nextBytes(seed);
+            drbg = new HmacDrbg(seed);
+        }
+    }
+
+    // The generators not in use.
+    private final ConcurrentLinkedQueue<State> idle = new ConcurrentLinkedQueue<State>();
+
+    public DrbgNonceSource() {
+        this(DEFAULT_RESEED_INTERVAL);
+    }
+
+    /**
+     * @param reseedInterval the number of nonces drawn from each generator
+     *        before it is reseeded
+     */
+    public DrbgNonceSource(long reseedInterval) {
+        if (reseedInterval < 1) {
+            throw new IllegalArgumentException("The reseed interval should be at least 1");
+        }
+        this.reseedInterval = reseedInterval;
+    }
+
+    public long getReseedInterval() {
+        return reseedInterval;
+    }
+
+    @Override
+    public BigInteger nextNonce(BigInteger bound, BigInteger secret, byte[] digest) {
+        try {
+            State s = idle.poll();
+            if (s == null) {
+                s = new State();
+            }
+            if (s.drbg.getGenerateCount() >= reseedInterval) {
+                byte[] entropy = new byte[SEED_LENGTH];
+                s.entropy.nextBytes(entropy);
+                s.drbg.reseed(entropy);
+            }
+            BigInteger nonce = s.drbg.nextScalar(bound);
+            idle.offer(s);
+            return nonce;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return false;
+    }
+}
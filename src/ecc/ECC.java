@@ -15,8 +15,11 @@ public class ECC {
     public static final BigInteger AUXILIARY_CONSTANT = BigInteger.valueOf(AUXILIARY_CONSTANT_LONG);
     
     // The execution time of the last action, in millisecond.
-    private static long executionTime = -1;
-    private static long startExecutionTime;
+    private static volatile long executionTime = -1;
+    
+    private static final ECCEngine DEFAULT_ENGINE = new ECCEngine();
+    
+    private static volatile ECCEngine parallelEngine;
     
     /**
      * The main encryption function of ECC.
@@ -26,82 +29,46 @@ public class ECC {
      * @return 
      */
     public static byte[] encrypt(byte[] plainText, PublicKey key) throws Exception {
-        initializeExecutionTime();
-        
-        EllipticCurve c = key.getCurve();
-        ECPoint g = c.getBasePoint();
-        ECPoint publicKey = key.getKey();
-        BigInteger p = c.getP();
-        int numBits = p.bitLength();
-        int blockSize = getBlockSize(c);
-        int cipherTextBlockSize = getCipherTextBlockSize(c);
-        
-        // Pad the plainText
-        byte[] padded = pad(plainText, blockSize);
-        
-        // Chunk the plainText into blocks.
-        byte[][] block = new byte[padded.length / blockSize][blockSize];
-        for (int i = 0; i < block.length; ++i) {
-            for (int j = 0; j < blockSize; ++j) {
-                block[i][j] = padded[i * blockSize + j];
-            }
-        }
-        
-        // Encode each block into unique point.
-        ECPoint[] encoded = new ECPoint[block.length];
-        for (int i = 0; i < encoded.length; ++i) {
-            encoded[i] = encode(block[i], c);
-        }
-        
-        // Encrypt each encoded point into a pair of points:
-        // [C_1, C_2] = [kG, P_m + kP_G], where:
-        // k is a randomly generated integer such that 1 <= k < p-1,
-        // G is the base point (provided in the key),
-        // P_m is the encoded point from the plain text,
-        // P_G is the point provided in the public key.
-        ECPoint[][] encrypted = new ECPoint[block.length][2];
-        Random rnd = new Random(System.currentTimeMillis());
-        for (int i = 0; i < encrypted.length; ++i) {
-            BigInteger k;
-            do {
-                k = new BigInteger(numBits, rnd);
-            } while (k.mod(p).compareTo(BigInteger.ZERO) == 0);
-            encrypted[i][0] = c.multiply(g, k);
-            encrypted[i][1] = c.add(encoded[i], c.multiply(publicKey, k));
-        }
-        
-        // Represent the ciphertext as an array of bytes
-        byte[] cipherText = new byte[encrypted.length * cipherTextBlockSize * 4];
-        for (int i = 0; i < encrypted.length; ++i) {
-            // encrypted[0].x
-            byte[] cipher = encrypted[i][0].x.toByteArray();
-            int offset = i * cipherTextBlockSize * 4 + cipherTextBlockSize * 0 + (cipherTextBlockSize - cipher.length);
-            for (int j = 0; j < cipher.length; ++j) {
-                cipherText[j + offset] = cipher[j];
-            }
-            // encrypted[0].y
-            cipher = encrypted[i][0].y.toByteArray();
-            offset = i * cipherTextBlockSize * 4 + cipherTextBlockSize * 1 + (cipherTextBlockSize - cipher.length);
-            for (int j = 0; j < cipher.length; ++j) {
-                cipherText[j + offset] = cipher[j];
-            }
-            // encrypted[1].x
-            cipher = encrypted[i][1].x.toByteArray();
-            offset = i * cipherTextBlockSize * 4 + cipherTextBlockSize * 2 + (cipherTextBlockSize - cipher.length);
-            for (int j = 0; j < cipher.length; ++j) {
-                cipherText[j + offset] = cipher[j];
-            }
-            // encrypted[1].y
-            cipher = encrypted[i][1].y.toByteArray();
-            offset = i * cipherTextBlockSize * 4 + cipherTextBlockSize * 3 + (cipherTextBlockSize - cipher.length);
-            for (int j = 0; j < cipher.length; ++j) {
-                cipherText[j + offset] = cipher[j];
-            }
-        }
-        
-        finalizeExecutionTime();
-        
-        return cipherText;
+        return recordExecutionTime(encryptWithTimings(plainText, key));
+    }
+    
+    /**
+     * Same as encrypt, but also returns the time spent in each phase of the
+     * encryption next to the cipher text.
+     * 
+     * @param plainText
+     * @param key
+     * @return 
+     */
+    public static ECCResult<byte[]> encryptWithTimings(byte[] plainText, PublicKey key) throws Exception {
+        return DEFAULT_ENGINE.encryptWithTimings(plainText, key);
+    }
+    
+    /**
+     * Same as encryptWithTimings, but reports the progress to the listener,
+     * which can also cancel the encryption.
+     * 
+     * @param plainText
+     * @param key
+     * @param listener
+     * @return 
+     */
+    public static ECCResult<byte[]> encryptWithTimings(byte[] plainText, PublicKey key, ProgressListener listener) throws Exception {
+        return DEFAULT_ENGINE.encryptWithTimings(plainText, key, listener);
+    }
+    
+    /**
+     * Encrypt the plain text for several recipients, returning one cipher
+     * text per key, each of which decrypts with the matching private key.
+     * This is cheaper than encrypting for each key in turn; see
+     * ECCEngine.encryptWithTimings(byte[], PublicKey[]).
+     * 
+     * @param plainText
+     * @param keys
+     * @return 
+     */
+    public static byte[][] encrypt(byte[] plainText, PublicKey[] keys) throws Exception {
+        return recordExecutionTime(DEFAULT_ENGINE.encryptWithTimings(plainText, keys));
     }
     
     /**
@@ -112,50 +79,32 @@ public class ECC {
      * @return 
      */
     public static byte[] decrypt(byte[] cipherText, PrivateKey key) throws Exception {
-        initializeExecutionTime();
-        
-        EllipticCurve c = key.getCurve();
-        ECPoint g = c.getBasePoint();
-        BigInteger privateKey = key.getKey();
-        BigInteger p = c.getP();
-        int numBits = p.bitLength();
-        int blockSize = getBlockSize(c);
-        int cipherTextBlockSize = getCipherTextBlockSize(c);
-        
-        // Chunk the cipherText into blocks.
-        if (cipherText.length % cipherTextBlockSize != 0 || (cipherText.length / cipherTextBlockSize) % 4 != 0) {
-            throw new Exception("The length of the cipher text is not valid");
-        }
-        byte block[][] = new byte[cipherText.length / cipherTextBlockSize][cipherTextBlockSize];
-        for (int i = 0; i < block.length; ++i) {
-            for (int j = 0; j < cipherTextBlockSize; ++j) {
-                block[i][j] = cipherText[i * cipherTextBlockSize + j];
-            }
-        }
-        
-        // Calculate the encoded point
-        // P_m = C_2 - kC_1, where:
-        // [C_1, C_2] is the ciphertext,
-        // k is the private key.
-        ECPoint encoded[] = new ECPoint[block.length / 4];
-        for (int i = 0; i < block.length; i += 4) {
-            ECPoint c1 = new ECPoint(new BigInteger(block[i]), new BigInteger(block[i + 1]));
-            ECPoint c2 = new ECPoint(new BigInteger(block[i + 2]), new BigInteger(block[i + 3]));
-            encoded[i / 4] = c.subtract(c2, c.multiply(c1, privateKey));
-        }
-        
-        // Decode the encoded point
-        byte plainText[] = new byte[encoded.length * blockSize];
-        for (int i = 0; i < encoded.length; ++i) {
-            byte decoded[] = decode(encoded[i], c);
-            for (int j = Math.max(blockSize - decoded.length, 0); j < blockSize; ++j) {
-                plainText[i * blockSize + j] = decoded[j + decoded.length - blockSize];
-            }
-        }
-        plainText = unpad(plainText, blockSize);
-        
-        finalizeExecutionTime();
-        return plainText;
+        return recordExecutionTime(decryptWithTimings(cipherText, key));
+    }
+    
+    /**
+     * Same as decrypt, but also returns the time spent in each phase of the
+     * decryption next to the plain text.
+     * 
+     * @param cipherText
+     * @param key
+     * @return 
+     */
+    public static ECCResult<byte[]> decryptWithTimings(byte[] cipherText, PrivateKey key) throws Exception {
+        return DEFAULT_ENGINE.decryptWithTimings(cipherText, key);
+    }
+    
+    /**
+     * Same as decryptWithTimings, but reports the progress to the listener,
+     * which can also cancel the decryption.
+     * 
+     * @param cipherText
+     * @param key
+     * @param listener
+     * @return 
+     */
+    public static ECCResult<byte[]> decryptWithTimings(byte[] cipherText, PrivateKey key, ProgressListener listener) throws Exception {
+        return DEFAULT_ENGINE.decryptWithTimings(cipherText, key, listener);
     }
     
     /**
@@ -166,40 +115,97 @@ public class ECC {
      * @return
      */
     public static KeyPair generateKeyPair(EllipticCurve c, Random rnd) throws Exception {
-        initializeExecutionTime();
-        
-        // Randomly select the private key, such that it is relatively
-        // prime to p
-        BigInteger p = c.getP();
-        BigInteger privateKey;
-        do {
-            privateKey = new BigInteger(p.bitLength(), rnd);
-        } while (privateKey.mod(p).compareTo(BigInteger.ZERO) == 0);
-        
-        // Calculate the public key, k * g.
-        // First, randomly generate g if it is not present in the curve.
-        ECPoint g = c.getBasePoint();
-        if (g == null) {
-            // Randomly generate g using Koblits method.
-            // The starting value of x should be random.
-            BigInteger x = new BigInteger(p.bitLength(), rnd);
-            g = koblitzProbabilistic(c, x);
-            c.setBasePoint(g);
+        return recordExecutionTime(generateKeyPairWithTimings(c, rnd));
+    }
+    
+    /**
+     * Same as generateKeyPair, but also returns the time spent in each phase
+     * of the generation next to the key pair.
+     * 
+     * @param c
+     * @param rnd
+     * @return
+     */
+    public static ECCResult<KeyPair> generateKeyPairWithTimings(EllipticCurve c, Random rnd) throws Exception {
+        return DEFAULT_ENGINE.generateKeyPairWithTimings(c, rnd);
+    }
+    
+    /**
+     * Generate a key-pair with a private key drawn from the given source.
+     * 
+     * @param c
+     * @param source
+     * @return
+     */
+    public static KeyPair generateKeyPair(EllipticCurve c, NonceSource source) throws Exception {
+        return recordExecutionTime(generateKeyPairWithTimings(c, source));
+    }
+    
+    /**
+     * Same as generateKeyPair, but also returns the time spent in each phase
+     * of the generation next to the key pair.
+     * 
+     * @param c
+     * @param source
+     * @return
+     */
+    public static ECCResult<KeyPair> generateKeyPairWithTimings(EllipticCurve c, NonceSource source) throws Exception {
+        return DEFAULT_ENGINE.generateKeyPairWithTimings(c, source);
+    }
+    
+    /**
+     * Generate count key-pairs at once, with private keys drawn from the given
+     * source. This is much faster per key than calling generateKeyPair count
+     * times; see ECCEngine.generateKeyPairsWithTimings.
+     * 
+     * @param c
+     * @param count
+     * @param source
+     * @return
+     */
+    public static KeyPair[] generateKeyPairs(EllipticCurve c, int count, NonceSource source) throws Exception {
+        return recordExecutionTime(DEFAULT_ENGINE.generateKeyPairsWithTimings(c, count, source));
+    }
+    
+    /**
+     * Return the engine the static methods of this class delegate to. It
+     * uses the default configuration of ECCEngine.
+     * 
+     * @return 
+     */
+    public static ECCEngine getDefaultEngine() {
+        return DEFAULT_ENGINE;
+    }
+    
+    /**
+     * Return an engine with the default configuration of ECCEngine, but one
+     * worker per processor. The batch operations of the other classes
+     * (ECDSA.signAll, ExponentialElGamal.sum...) run on its workers when they
+     * are not given an engine. It is created on first use.
+     * 
+     * @return 
+     */
+    public static ECCEngine getParallelEngine() {
+        ECCEngine result = parallelEngine;
+        if (result == null) {
+            synchronized (ECC.class) {
+                result = parallelEngine;
+                if (result == null) {
+                    result = new ECCEngine(EllipticCurve.NIST_P_192, new DrbgNonceSource(),
+                            Runtime.getRuntime().availableProcessors(), MultiplyStrategy.DOUBLE_AND_ADD, MetricsSink.NONE);
+                    parallelEngine = result;
+                }
+            }
         }
-        ECPoint publicKey = c.multiply(g, privateKey);
-        
-        KeyPair result = new KeyPair(
-                new PublicKey(c, publicKey),
-                new PrivateKey(c, privateKey)
-        );
-        
-        finalizeExecutionTime();
         return result;
     }
     
     /**
      * Get the execution time of the last executed (public) method.
      * 
+     * This value is shared by all threads. Use the *WithTimings variants to
+     * get the execution time of one particular call.
+     * 
      * @return -1 if there was no executed method yet.
      */
     public static long getLastExecutionTime() {
@@ -207,19 +213,15 @@ public class ECC {
     }
     
     /**
-     * Return the encoded point from a block of byte.
+     * Return the encoded point from a block of byte, with the encoder of the
+     * default engine.
      * 
      * @param block
      * @param c
      * @return 
      */
-    private static ECPoint encode(byte[] block, EllipticCurve c) throws Exception {
-        // pad two zero byte
-        byte[] paddedBlock = new byte[block.length + 2];
-        for (int i = 0; i < block.length; ++i) {
-            paddedBlock[i + 2] = block[i];
-        }
-        return koblitzProbabilistic(c, new BigInteger(paddedBlock));
+    static ECPoint encode(byte[] block, EllipticCurve c) throws Exception {
+        return DEFAULT_ENGINE.getPointEncoder().encode(c, new BigInteger(1, block));
     }
     
     /**
@@ -229,23 +231,24 @@ public class ECC {
      * @param c
      * @return 
      */
-    private static byte[] decode(ECPoint point, EllipticCurve c) {
-        return point.x.divide(AUXILIARY_CONSTANT).toByteArray();
+    static byte[] decode(ECPoint point, EllipticCurve c) throws Exception {
+        return DEFAULT_ENGINE.getPointEncoder().decode(c, point).toByteArray();
     }
     
     /**
-     * Calculate the block size of plain text in bytes.
+     * Calculate the block size of plain text in bytes, as given by the
+     * encoder of the default engine.
      * 
-     * This assumes that the order of g over p is very close to |c|, as the
-     * recommended cofactor must be no larger than 4.
-     * 
-     * The chosen block size is max((bitLength(p) / 8) - 5, 1).
+     * For the default encoder of Koblitz, this assumes that the order of g
+     * over p is very close to |c|, as the recommended cofactor must be no
+     * larger than 4, and the chosen block size is
+     * max((bitLength(p) / 8) - 5, 1).
      * 
      * @param c
      * @return 
      */
-    private static int getBlockSize(EllipticCurve c) {
-        return Math.max(c.getP().bitLength() / 8 - 5, 1);
+    static int getBlockSize(EllipticCurve c) {
+        return DEFAULT_ENGINE.getPointEncoder().getBlockSize(c);
     }
     
     /**
@@ -256,46 +259,56 @@ public class ECC {
      * @param c
      * @return 
      */
-    private static int getCipherTextBlockSize(EllipticCurve c) {
+    static int getCipherTextBlockSize(EllipticCurve c) {
         return c.getP().bitLength() / 8 + 5;
     }
     
+    /**
+     * Calculate the length of the array of byte of the given length after it
+     * is padded by pad.
+     * 
+     * @param length
+     * @param blockSize
+     * @return 
+     */
+    static int getPaddedLength(int length, int blockSize) {
+        return length + blockSize - (length % blockSize);
+    }
+    
     /**
      * Pad the array of byte b so its length will be multiple of blockSize.
      * 
      * There will be at least one byte padded. The last byte will contain the
      * number of padded bytes.
      * 
+     * The result is written into the first getPaddedLength(b.length,
+     * blockSize) bytes of padded.
+     * 
      * @param b
-     * @return 
+     * @param blockSize
+     * @param padded
      */
-    private static byte[] pad(byte[] b, int blockSize) {
+    static void pad(byte[] b, int blockSize, byte[] padded) {
         int paddedLength = blockSize - (b.length % blockSize);
-        byte[] padded = new byte[b.length + paddedLength];
-        for (int i = 0; i < b.length; ++i) {
-            padded[i] = b[i];
-        }
+        System.arraycopy(b, 0, padded, 0, b.length);
         for (int i = 0; i < paddedLength - 1; ++i) {
             padded[b.length + i] = 0;
         }
-        padded[padded.length - 1] = (byte)paddedLength;
-        
-        return padded;
+        padded[b.length + paddedLength - 1] = (byte)paddedLength;
     }
     
     /**
-     * Recover the original array of byte given the padded array of byte b.
+     * Recover the original array of byte given the first length bytes of the
+     * padded array of byte b.
      * 
      * @param b
-     * @param blockSize
+     * @param length
      * @return 
      */
-    private static byte[] unpad(byte[] b, int blockSize) {
-        int paddedLength = b[b.length - 1];
-        byte[] unpadded = new byte[b.length - paddedLength];
-        for (int i = 0; i < unpadded.length; ++i) {
-            unpadded[i] = b[i];
-        }
+    static byte[] unpad(byte[] b, int length) {
+        int paddedLength = b[length - 1];
+        byte[] unpadded = new byte[length - paddedLength];
+        System.arraycopy(b, 0, unpadded, 0, unpadded.length);
         return unpadded;
     }
     
@@ -317,7 +330,7 @@ public class ECC {
      * @param x
      * @return 
      */
-    private static ECPoint koblitzProbabilistic(EllipticCurve c, BigInteger x) throws Exception {
+    static ECPoint koblitzProbabilistic(EllipticCurve c, BigInteger x) throws Exception {
         BigInteger p = c.getP();
         
         // throw an exception if p != 3 (mod 4)
@@ -326,6 +339,9 @@ public class ECC {
         }
         BigInteger pMinusOnePerTwo = p.subtract(BigInteger.ONE).shiftRight(1);
         
+        ECCEvents.KoblitzEncode event = new ECCEvents.KoblitzEncode();
+        event.begin();
+        
         BigInteger tempX = x.multiply(AUXILIARY_CONSTANT).mod(p);
         for (long k = 0; k < AUXILIARY_CONSTANT_LONG; ++k) {
             BigInteger newX = tempX.add(BigInteger.valueOf(k));
@@ -338,20 +354,29 @@ public class ECC {
             if (a.modPow(pMinusOnePerTwo, p).compareTo(BigInteger.ONE) == 0) {
                 // We found it! Now, the solution is y = a ^ ((p + 1) / 4)
                 BigInteger y = a.modPow(p.add(BigInteger.ONE).shiftRight(2), p);
+                commitKoblitzEvent(event, c, k, true);
                 return new ECPoint(newX.mod(p), y);
             }
         }
         
         // If we reach this point, then no point are found within the limit.
+        commitKoblitzEvent(event, c, AUXILIARY_CONSTANT_LONG, false);
         throw new Exception("No point found within the auxiliary constant");
     }
     
-    private static void initializeExecutionTime() {
-        startExecutionTime = System.currentTimeMillis();
+    static void commitKoblitzEvent(ECCEvents.KoblitzEncode event, EllipticCurve c, long retries, boolean success) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.curve = c.getName();
+            event.retries = retries;
+            event.success = success;
+            event.commit();
+        }
     }
     
-    private static void finalizeExecutionTime() {
-        executionTime = System.currentTimeMillis() - startExecutionTime;
+    private static <T> T recordExecutionTime(ECCResult<T> result) {
+        executionTime = result.getTimings().getTotalMillis();
+        return result.getResult();
     }
     
     public static void main(String[] args) throws Exception {
@@ -0,0 +1,240 @@
+package ecc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs the operations of an ECCEngine asynchronously, returning
+ * CompletableFuture instead of blocking the caller.
+ *
+ * The operations run on a pluggable executor. By default this is one virtual
+ * thread per operation when the runtime has them (Java 21 and later), and a
+ * pool of one daemon thread per processor otherwise. The engine's own workers
+ * are not used, since an operation waits for them to encrypt its blocks. The
+ * costly state of an operation is not kept per thread, so it survives the
+ * virtual threads: the engine pools its message buffers, and a
+ * DrbgNonceSource its generators, instead of seeding a new one from the
+ * system entropy for every operation.
+ *
+ * The number of operations admitted at once is bounded: once maxInFlight
+ * operations are queued or running, new ones are not queued but fail at once
+ * with a RejectedExecutionException, so a burst of requests cannot pile up
+ * unbounded work behind the executor. The permit of an operation is released
+ * when its future completes.
+ */
+public class ECCAsync {
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private static volatile ECCAsync defaultInstance;
+
+    private final ECCEngine engine;
+    private final Executor executor;
+    private final Semaphore admission;
+    private final int maxInFlight;
+    // The executor created by this instance, shut down by shutdown().
+    private final ExecutorService ownExecutor;
+
+    /**
+     * Run the operations of the given engine on the default executor, with at
+     * most 64 operations per processor in flight.
+     *
+     * @param engine
+     */
+    public ECCAsync(ECCEngine engine) {
+        this(engine, null, 64 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run the operations of the given engine on the given executor.
+     *
+     * @param engine
+     * @param executor the executor, or null for the default one
+     * @param maxInFlight the largest number of operations queued or running
+     */
+    public ECCAsync(ECCEngine engine, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The admission limit should be at least 1");
+        }
+        this.engine = engine;
+        this.maxInFlight = maxInFlight;
+        this.admission = new Semaphore(maxInFlight);
+        if (executor == null) {
+            ownExecutor = createDefaultExecutor();
+            this.executor = ownExecutor;
+        } else {
+            ownExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Return the instance running the operations of ECC.getDefaultEngine() on
+     * the default executor.
+     *
+     * @return
+     */
+    public static ECCAsync getDefault() {
+        ECCAsync result = defaultInstance;
+        if (result == null) {
+            synchronized (ECCAsync.class) {
+                result = defaultInstance;
+                if (result == null) {
+                    result = new ECCAsync(ECC.getDefaultEngine());
+                    defaultInstance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public ECCEngine getEngine() {
+        return engine;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * The number of operations admitted but not completed yet.
+     *
+     * @return
+     */
+    public int getInFlight() {
+        return maxInFlight - admission.availablePermits();
+    }
+
+    public CompletableFuture<byte[]> encryptAsync(final byte[] plainText, final PublicKey key) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return engine.encrypt(plainText, key);
+            }
+        });
+    }
+
+    public CompletableFuture<byte[]> decryptAsync(final byte[] cipherText, final PrivateKey key) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return engine.decrypt(cipherText, key);
+            }
+        });
+    }
+
+    public CompletableFuture<KeyPair> generateKeyPairAsync() {
+        return generateKeyPairAsync(engine.getCurve(), engine.getNonceSource());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the source is deterministic
+     */
+    public CompletableFuture<KeyPair> generateKeyPairAsync(final EllipticCurve c, final NonceSource source) {
+        ECCEngine.checkKeySource(source);
+        return submit(new Callable<KeyPair>() {
+            @Override
+            public KeyPair call() throws Exception {
+                return engine.generateKeyPair(c, source);
+            }
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the nonce source of the engine is
+     *         deterministic
+     */
+    public CompletableFuture<KeyPair[]> generateKeyPairsAsync(final EllipticCurve c, final int count) {
+        ECCEngine.checkKeySource(engine.getNonceSource());
+        return submit(new Callable<KeyPair[]>() {
+            @Override
+            public KeyPair[] call() throws Exception {
+                return engine.generateKeyPairs(c, count);
+            }
+        });
+    }
+
+    /**
+     * Shut down the executor if it was created by this instance. A given
+     * executor is left to its owner.
+     */
+    public void shutdown() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Run the task on the executor if the admission limit allows it.
+     */
+    private <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        if (!admission.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Too many operations in flight (" + maxInFlight + ")"));
+            return future;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // The permit is released before completing the future, so
+                    // that the dependent stages can already submit new work.
+                    T result;
+                    try {
+                        result = future.isDone() ? null : task.call();
+                    } catch (Throwable e) {
+                        admission.release();
+                        future.completeExceptionally(e);
+                        return;
+                    }
+                    admission.release();
+                    future.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Create an executor starting a virtual thread per task if the runtime
+     * supports it, or else a fixed pool of daemon threads, one per processor.
+     */
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            // Looked up by reflection, so the package still builds and runs
+            // on runtimes without virtual threads.
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            // Not available, or a preview feature that is not enabled.
+        }
+
+        final String prefix = "ecc-async-" + POOL_COUNT.incrementAndGet() + "-worker-";
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,380 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * The Cipher of the ECElGamal algorithm of ECCProvider: the encryption of
+ * ECC, with a PublicKey, and its decryption, with a PrivateKey. The EC keys of
+ * other providers are translated by ECCKeyFactorySpi.
+ *
+ * The cipher text is the same as the one of ECC.encrypt, so either side may
+ * use ECC instead. Every plain text block is encrypted on its own, so update
+ * encrypts the whole blocks it gets right away, and buffers only the rest;
+ * doFinal pads the rest into the last block, as ECC.pad does. When
+ * decrypting, update keeps the last whole block back, since doFinal has to
+ * remove the padding from it. The blocks are processed by the default engine
+ * of ECC, with its parallelism and encoder; the nonces are drawn from the
+ * SecureRandom given to init.
+ *
+ * A Cipher can be used for any number of messages, with the same key or
+ * another one. The precomputed multiples of a public key (see
+ * FixedBaseTable) are built once it has encrypted KEY_TABLE_THRESHOLD blocks,
+ * from which on its multiplications are several times faster, and are kept
+ * as long as the Cipher is initialized with the same key, so that pooled
+ * Ciphers pay for them once per key.
+ *
+ * When decrypting, a block that cannot be decrypted fails the whole message,
+ * whichever block it is: update drops the buffered input and returns no
+ * output from then on, and doFinal throws a BadPaddingException, after which
+ * the Cipher is ready for the next message.
+ */
+public class ECCCipherSpi extends CipherSpi {
+
+    /**
+     * The name of the padding of ECC.pad: zeros, and the number of padded
+     * bytes in the last byte.
+     */
+    public static final String PADDING = "ECCPadding";
+
+    // The number of blocks a public key encrypts before its multiples are
+    // precomputed; building the table costs about as much as this many
+    // multiplications.
+    static final int KEY_TABLE_THRESHOLD = 16;
+
+    private final ECCEngine engine = ECC.getDefaultEngine();
+
+    private int mode = 0;
+    private EllipticCurve curve;
+    private PublicKey publicKey;
+    private PrivateKey privateKey;
+    private NonceSource nonceSource;
+
+    // The bytes of a block in and out: a block of plain text and four
+    // coordinates when encrypting, and the other way around when decrypting.
+    private int inputBlockSize = 0;
+    private int outputBlockSize = 0;
+
+    // The input not processed yet, less than a block when encrypting, and up
+    // to a whole block when decrypting.
+    private byte[] buffer = new byte[0];
+    private int bufferLength = 0;
+
+    // Why a block of the current message could not be decrypted, thrown
+    // by doFinal, or null.
+    private Throwable decryptionFailure;
+
+    // The precomputed multiples of the last public key, or null, and the
+    // number of blocks it encrypted.
+    private PublicKey tableKey;
+    private FixedBaseTable keyTable;
+    private long keyBlocks = 0;
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!"ECB".equalsIgnoreCase(mode) && !"NONE".equalsIgnoreCase(mode)) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (!PADDING.equalsIgnoreCase(padding)) {
+            throw new NoSuchPaddingException("Unsupported padding " + padding);
+        }
+    }
+
+    /**
+     * Return the size of a plain text block of the curve of the key, or 0
+     * before init.
+     */
+    @Override
+    protected int engineGetBlockSize() {
+        return curve != null ? engine.getBlockSize(curve) : 0;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        int total = bufferLength + inputLen;
+        if (mode == Cipher.ENCRYPT_MODE) {
+            return (total / inputBlockSize + 1) * outputBlockSize;
+        }
+        return total / inputBlockSize * outputBlockSize;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        return null;
+    }
+
+    @Override
+    protected int engineGetKeySize(Key key) throws InvalidKeyException {
+        if (key instanceof java.security.PrivateKey) {
+            return ECCKeyFactorySpi.translatePrivate(key).getCurve().getP().bitLength();
+        }
+        return ECCKeyFactorySpi.translatePublic(key).getCurve().getP().bitLength();
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        EllipticCurve c;
+        if (opmode == Cipher.ENCRYPT_MODE) {
+            PublicKey k = ECCKeyFactorySpi.translatePublic(key);
+            c = k.getCurve();
+            if (c.getBasePoint() == null) {
+                throw new InvalidKeyException("The curve of the key has no base point");
+            }
+            if (tableKey == null || !isSameKey(tableKey, k)) {
+                tableKey = k;
+                keyTable = null;
+                keyBlocks = 0;
+            }
+            publicKey = k;
+            privateKey = null;
+            nonceSource = new RandomNonceSource(random != null ? random : new SecureRandom());
+            inputBlockSize = engine.getBlockSize(c);
+            outputBlockSize = ECC.getCipherTextBlockSize(c) * 4;
+        } else if (opmode == Cipher.DECRYPT_MODE) {
+            PrivateKey k = ECCKeyFactorySpi.translatePrivate(key);
+            c = k.getCurve();
+            publicKey = null;
+            privateKey = k;
+            nonceSource = null;
+            inputBlockSize = ECC.getCipherTextBlockSize(c) * 4;
+            outputBlockSize = engine.getBlockSize(c);
+        } else {
+            throw new InvalidParameterException("Only ENCRYPT_MODE and DECRYPT_MODE are supported");
+        }
+        mode = opmode;
+        curve = c;
+        if (buffer.length != inputBlockSize) {
+            buffer = new byte[inputBlockSize];
+        }
+        bufferLength = 0;
+        decryptionFailure = null;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("The cipher takes no parameters");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("The cipher takes no parameters");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] output = new byte[blocksToProcess(inputLen) * outputBlockSize];
+        int length = update(input, inputOffset, inputLen, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) throws ShortBufferException {
+        int outputLen = blocksToProcess(inputLen) * outputBlockSize;
+        if (output.length - outputOffset < outputLen) {
+            throw new ShortBufferException("The output needs " + outputLen + " bytes");
+        }
+        return update(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen) throws IllegalBlockSizeException, BadPaddingException {
+        byte[] output = new byte[engineGetOutputSize(inputLen)];
+        int length = doFinal(input, inputOffset, inputLen, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        int outputLen = engineGetOutputSize(inputLen);
+        if (output.length - outputOffset < outputLen) {
+            throw new ShortBufferException("The output needs " + outputLen + " bytes");
+        }
+        return doFinal(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    /**
+     * Process the input with update, then the padded last block, and get
+     * ready for the next message.
+     */
+    private int doFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) throws IllegalBlockSizeException, BadPaddingException {
+        if (input == null) {
+            input = buffer;
+            inputLen = 0;
+        }
+        int written = update(input, inputOffset, inputLen, output, outputOffset);
+        try {
+            if (mode == Cipher.ENCRYPT_MODE) {
+                byte[] padded = new byte[inputBlockSize];
+                ECC.pad(Arrays.copyOf(buffer, bufferLength), inputBlockSize, padded);
+                processBlocks(padded, 0, 1, output, outputOffset + written);
+                return written + outputBlockSize;
+            }
+
+            if (decryptionFailure == null && bufferLength != inputBlockSize) {
+                throw new IllegalBlockSizeException("The length of the cipher text is not valid");
+            }
+            byte[] block = new byte[outputBlockSize];
+            if (decryptionFailure == null) {
+                try {
+                    processBlocks(buffer, 0, 1, block, 0);
+                } catch (RuntimeException e) {
+                    decryptionFailure = getDecryptionFailure(e);
+                }
+            }
+            if (decryptionFailure != null) {
+                throw (BadPaddingException) new BadPaddingException("The cipher text cannot be decrypted").initCause(decryptionFailure);
+            }
+            int padding = block[outputBlockSize - 1] & 0xff;
+            if (padding < 1 || padding > outputBlockSize) {
+                throw new BadPaddingException("The padding of the plain text is not valid");
+            }
+            int length = outputBlockSize - padding;
+            System.arraycopy(block, 0, output, outputOffset + written, length);
+            return written + length;
+        } finally {
+            bufferLength = 0;
+            decryptionFailure = null;
+        }
+    }
+
+    /**
+     * Process the input as process does, except that when decrypting, a
+     * block that cannot be decrypted is recorded for doFinal instead of
+     * thrown: the buffer is dropped, the output is cleared, and no output is
+     * returned for the rest of the message.
+     */
+    private int update(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+        if (mode != Cipher.DECRYPT_MODE) {
+            return process(input, inputOffset, inputLen, output, outputOffset);
+        }
+        if (decryptionFailure != null) {
+            return 0;
+        }
+        int outputLen = blocksToProcess(inputLen) * outputBlockSize;
+        try {
+            return process(input, inputOffset, inputLen, output, outputOffset);
+        } catch (RuntimeException e) {
+            decryptionFailure = getDecryptionFailure(e);
+            bufferLength = 0;
+            Arrays.fill(output, outputOffset, outputOffset + outputLen, (byte) 0);
+            return 0;
+        }
+    }
+
+    /**
+     * Return the cause of a failure of processBlocks when decrypting. The
+     * blocks of a corrupted cipher text decode to no point.
+     */
+    private static Throwable getDecryptionFailure(RuntimeException e) {
+        return e instanceof ProviderException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Return the number of whole blocks update processes out of the buffer
+     * and inputLen more bytes.
+     */
+    private int blocksToProcess(int inputLen) {
+        int total = bufferLength + inputLen;
+        int blocks = total / inputBlockSize;
+        if (mode == Cipher.DECRYPT_MODE && blocks > 0 && total % inputBlockSize == 0) {
+            // The last block may be the one with the padding.
+            --blocks;
+        }
+        return blocks;
+    }
+
+    /**
+     * Process the whole blocks of the buffer followed by the input, and
+     * buffer the rest.
+     */
+    private int process(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+        int blocks = blocksToProcess(inputLen);
+        if (blocks > 0 && input == output) {
+            // The output would overwrite the input not read yet.
+            input = Arrays.copyOfRange(input, inputOffset, inputOffset + inputLen);
+            inputOffset = 0;
+        }
+        int written = 0;
+        if (blocks > 0 && bufferLength > 0) {
+            int fill = inputBlockSize - bufferLength;
+            System.arraycopy(input, inputOffset, buffer, bufferLength, fill);
+            inputOffset += fill;
+            inputLen -= fill;
+            bufferLength = 0;
+            processBlocks(buffer, 0, 1, output, outputOffset);
+            written += outputBlockSize;
+            --blocks;
+        }
+        if (blocks > 0) {
+            processBlocks(input, inputOffset, blocks, output, outputOffset + written);
+            inputOffset += blocks * inputBlockSize;
+            inputLen -= blocks * inputBlockSize;
+            written += blocks * outputBlockSize;
+        }
+        System.arraycopy(input, inputOffset, buffer, bufferLength, inputLen);
+        bufferLength += inputLen;
+        return written;
+    }
+
+    private void processBlocks(byte[] input, int inputOffset, int count, byte[] output, int outputOffset) {
+        try {
+            if (mode == Cipher.ENCRYPT_MODE) {
+                keyBlocks += count;
+                if (keyTable == null && keyBlocks >= KEY_TABLE_THRESHOLD) {
+                    BigInteger bound = ECCEngine.scalarBound(curve);
+                    keyTable = new FixedBaseTable(curve, publicKey.getKey(), bound.bitLength());
+                }
+                engine.encryptBlocks(curve, publicKey.getKey(), keyTable, nonceSource, input, inputOffset, count, output, outputOffset);
+            } else {
+                engine.decryptBlocks(curve, privateKey.getKey(), input, inputOffset, count, output, outputOffset);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ProviderException(e);
+        }
+    }
+
+    /**
+     * Return whether the two keys are the same point of the same curve.
+     */
+    private static boolean isSameKey(PublicKey k, PublicKey other) {
+        if (k == other) {
+            return true;
+        }
+        BigInteger p = k.getCurve().getP();
+        return ECCEngine.isSameCurve(k.getCurve(), other.getCurve())
+                && k.getKey().x.subtract(other.getKey().x).mod(p).signum() == 0
+                && k.getKey().y.subtract(other.getKey().y).mod(p).signum() == 0;
+    }
+}
@@ -0,0 +1,93 @@
+package ecc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A connection to an ECCServer on the local machine. See ECCServer for the
+ * protocol.
+ *
+ * The requests of one client are sent one after the other, so a client should
+ * not be shared by threads that need to run requests concurrently; each of
+ * them can open its own.
+ */
+public class ECCClient {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public ECCClient() throws IOException {
+        this(ECCServer.DEFAULT_PORT);
+    }
+
+    public ECCClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Generate a key pair on the server, and return its id, valid for both
+     * encrypt and decrypt.
+     *
+     * @return
+     */
+    public int generateKeyPair() throws Exception {
+        return ECCServer.readInt(call(ECCServer.OP_GENERATE_KEY_PAIR, new byte[0]), 0);
+    }
+
+    /**
+     * Load a *.pub file on the server, and return its id.
+     *
+     * @param path the name of the file in the key directory of the server
+     * @return
+     */
+    public int loadPublicKey(String path) throws Exception {
+        return ECCServer.readInt(call(ECCServer.OP_LOAD_PUBLIC_KEY, path.getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    /**
+     * Load a *.pri file on the server, and return its id.
+     *
+     * @param path the name of the file in the key directory of the server
+     * @return
+     */
+    public int loadPrivateKey(String path) throws Exception {
+        return ECCServer.readInt(call(ECCServer.OP_LOAD_PRIVATE_KEY, path.getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    public byte[] encrypt(int keyId, byte[] plainText) throws Exception {
+        return call(ECCServer.OP_ENCRYPT, ECCServer.concat(ECCServer.intToBytes(keyId), plainText));
+    }
+
+    public byte[] decrypt(int keyId, byte[] cipherText) throws Exception {
+        return call(ECCServer.OP_DECRYPT, ECCServer.concat(ECCServer.intToBytes(keyId), cipherText));
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private byte[] call(byte operation, byte[] arguments) throws Exception {
+        ECCServer.writeFrame(out, ECCServer.concat(new byte[]{operation}, arguments));
+        out.flush();
+        byte[] response = ECCServer.readFrame(in);
+        if (response.length == 0) {
+            throw new IOException("Empty response");
+        }
+        byte[] result = new byte[response.length - 1];
+        System.arraycopy(response, 1, result, 0, result.length);
+        if (response[0] != ECCServer.STATUS_OK) {
+            throw new Exception(new String(result, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,981 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An instance of the El Gamal Elliptic Curve Cryptography of ECC, carrying its
+ * own configuration:
+ * - the default curve, used when generating a key pair without a curve,
+ * - the source of private keys and per-block nonces,
+ * - the number of threads that process the blocks of one message,
+ * - the scalar multiplication algorithm,
+ * - the encoder mapping the plain text blocks to points,
+ * - the sink that receives the timings of every operation.
+ *
+ * The configuration never changes after construction, and all working state
+ * of an operation is either local to the call, kept per thread, or taken
+ * from a pool of the engine for the time of the operation, so one engine can
+ * be shared by any number of threads without synchronization.
+ * The static methods of ECC delegate to ECC.getDefaultEngine().
+ */
+public class ECCEngine {
+
+    private final EllipticCurve curve;
+    private final NonceSource nonceSource;
+    private final int parallelism;
+    private final MultiplyStrategy multiplyStrategy;
+    private final PointEncoder pointEncoder;
+    private final MetricsSink metricsSink;
+
+    // The workers processing the blocks, null if parallelism is 1.
+    private final ExecutorService executor;
+
+    // Messages with less blocks than this are processed by the calling thread
+    // alone, as handing them to the workers would cost more than it saves.
+    private static final int MIN_BLOCKS_PER_TASK = 4;
+
+    private static final AtomicInteger ENGINE_COUNT = new AtomicInteger();
+
+    /**
+     * The working buffers of one thread for the blocks of a message, reused
+     * between calls. They are small: the buffers of whole messages are
+     * pooled by the engine instead (see takeMessage), so that they are also
+     * reused by short-lived threads.
+     */
+    private static class Scratch {
+        // Holds one block behind two zero bytes, so that it reads as a
+        // non-negative BigInteger.
+        byte[] block = new byte[0];
+        // Holds one coordinate of the cipher text while decrypting.
+        byte[] coordinate = new byte[0];
+
+        byte[] block(int length) {
+            if (block.length != length) {
+                block = new byte[length];
+            }
+            return block;
+        }
+
+        byte[] coordinate(int length) {
+            if (coordinate.length != length) {
+                coordinate = new byte[length];
+            }
+            return coordinate;
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    // The buffers holding the padded plain text while encrypting, and the
+    // decoded plain text before unpadding while decrypting, not in use.
+    private final ConcurrentLinkedQueue<byte[]> idleMessages = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger idleMessageCount = new AtomicInteger();
+
+    // The largest number of message buffers kept when not in use.
+    private static final int MAX_IDLE_MESSAGES = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The work done for the i-th block of a message.
+     */
+    private interface BlockTask {
+        void run(int i) throws Exception;
+    }
+
+    /**
+     * Counts the blocks done by all threads of one operation for its
+     * listener.
+     */
+    private static class Progress {
+        private final ProgressListener listener;
+        private final int total;
+        private final AtomicInteger completed = new AtomicInteger();
+
+        Progress(ProgressListener listener, int total) {
+            this.listener = listener;
+            this.total = total;
+        }
+
+        void checkCancelled() {
+            if (listener.isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        void completed() {
+            listener.progress(completed.incrementAndGet(), total);
+        }
+    }
+
+    /**
+     * The work done for the blocks from (inclusive) to to (exclusive).
+     */
+    interface RangeTask {
+        void run(int from, int to) throws Exception;
+    }
+
+    /**
+     * Create an engine using NIST P-192, pooled DRBGs, a single thread,
+     * the double-and-add multiplication, Koblitz's encoding and no metrics.
+     */
+    public ECCEngine() {
+        this(EllipticCurve.NIST_P_192, new DrbgNonceSource(), 1, MultiplyStrategy.DOUBLE_AND_ADD, MetricsSink.NONE);
+    }
+
+    /**
+     * Create an engine using Koblitz's encoding.
+     */
+    public ECCEngine(EllipticCurve curve, NonceSource nonceSource, int parallelism, MultiplyStrategy multiplyStrategy, MetricsSink metricsSink) {
+        this(curve, nonceSource, parallelism, multiplyStrategy, PointEncoder.KOBLITZ, metricsSink);
+    }
+
+    public ECCEngine(EllipticCurve curve, NonceSource nonceSource, int parallelism, MultiplyStrategy multiplyStrategy,
+            PointEncoder pointEncoder, MetricsSink metricsSink) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism should be at least 1");
+        }
+        this.curve = curve;
+        this.nonceSource = nonceSource;
+        this.parallelism = parallelism;
+        this.multiplyStrategy = multiplyStrategy;
+        this.pointEncoder = pointEncoder;
+        this.metricsSink = metricsSink;
+
+        if (parallelism > 1) {
+            final String prefix = "ecc-engine-" + ENGINE_COUNT.incrementAndGet() + "-worker-";
+            executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    public EllipticCurve getCurve() {
+        return curve;
+    }
+
+    public NonceSource getNonceSource() {
+        return nonceSource;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public MultiplyStrategy getMultiplyStrategy() {
+        return multiplyStrategy;
+    }
+
+    /**
+     * Return how this engine maps the plain text blocks to points. Every
+     * party of an encryption must use the same encoder.
+     *
+     * @return
+     */
+    public PointEncoder getPointEncoder() {
+        return pointEncoder;
+    }
+
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    public byte[] encrypt(byte[] plainText, PublicKey key) throws Exception {
+        return encryptWithTimings(plainText, key).getResult();
+    }
+
+    public byte[] decrypt(byte[] cipherText, PrivateKey key) throws Exception {
+        return decryptWithTimings(cipherText, key).getResult();
+    }
+
+    /**
+     * Generate a random key-pair on the curve of this engine.
+     *
+     * @return
+     */
+    public KeyPair generateKeyPair() throws Exception {
+        return generateKeyPairWithTimings(curve, nonceSource).getResult();
+    }
+
+    public KeyPair generateKeyPair(EllipticCurve c, NonceSource source) throws Exception {
+        return generateKeyPairWithTimings(c, source).getResult();
+    }
+
+    public KeyPair generateKeyPair(EllipticCurve c, Random rnd) throws Exception {
+        return generateKeyPairWithTimings(c, new RandomNonceSource(rnd)).getResult();
+    }
+
+    /**
+     * Encrypt the plain text, and return the cipher text together with the
+     * time spent in each phase.
+     *
+     * @param plainText
+     * @param key
+     * @return
+     */
+    public ECCResult<byte[]> encryptWithTimings(byte[] plainText, PublicKey key) throws Exception {
+        return encryptWithTimings(plainText, key, ProgressListener.NONE);
+    }
+
+    /**
+     * Encrypt the plain text, reporting the progress to the listener after
+     * each block, and return the cipher text together with the time spent in
+     * each phase.
+     *
+     * @param plainText
+     * @param key
+     * @param listener
+     * @return
+     * @throws CancellationException if the listener cancelled the operation
+     */
+    public ECCResult<byte[]> encryptWithTimings(byte[] plainText, PublicKey key, ProgressListener listener) throws Exception {
+        ECCResult<byte[][]> result = encryptWithTimings(plainText, new PublicKey[] {key}, listener, MetricsSink.Operation.ENCRYPT);
+        return new ECCResult<byte[]>(result.getResult()[0], result.getTimings());
+    }
+
+    public byte[][] encrypt(byte[] plainText, PublicKey[] keys) throws Exception {
+        return encryptWithTimings(plainText, keys).getResult();
+    }
+
+    /**
+     * Encrypt the plain text for several recipients at once, and return one
+     * cipher text per key, in the order of the keys, together with the time
+     * spent in each phase.
+     *
+     * Each cipher text is the one encrypt would return for its key, except
+     * that they all share the encoded blocks and the nonces k, hence C_1 = kG:
+     * only C_2 = P_m + kP_G differs between them. Per block, this costs
+     * 1 + keys.length scalar multiplications instead of 2 * keys.length, and
+     * the blocks are encoded once. Reusing k this way is safe as long as the
+     * keys are distinct. The keys must be on the same curve, with the same
+     * base point.
+     *
+     * @param plainText
+     * @param keys
+     * @return
+     */
+    public ECCResult<byte[][]> encryptWithTimings(byte[] plainText, PublicKey[] keys) throws Exception {
+        return encryptWithTimings(plainText, keys, ProgressListener.NONE, MetricsSink.Operation.ENCRYPT_FOR_RECIPIENTS);
+    }
+
+    private ECCResult<byte[][]> encryptWithTimings(byte[] plainText, PublicKey[] keys, ProgressListener listener, MetricsSink.Operation operation) throws Exception {
+        ECCEvents.Encrypt event = new ECCEvents.Encrypt();
+        event.begin();
+        PhaseTimings timings = new PhaseTimings();
+        timings.begin();
+
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("There should be at least one key");
+        }
+        final EllipticCurve c = keys[0].getCurve();
+        final ECPoint g = c.getBasePoint();
+        final ECPoint[] publicKeys = new ECPoint[keys.length];
+        for (int j = 0; j < keys.length; ++j) {
+            checkSameCurve(c, keys[j].getCurve());
+            publicKeys[j] = keys[j].getKey();
+        }
+        final BigInteger bound = scalarBound(c);
+        final int blockSize = getBlockSize(c);
+        final int cipherTextBlockSize = ECC.getCipherTextBlockSize(c);
+
+        // Pad the plainText
+        final int paddedLength = ECC.getPaddedLength(plainText.length, blockSize);
+        final byte[] padded = takeMessage(paddedLength);
+        final ECPoint[] encoded = new ECPoint[paddedLength / blockSize];
+        final Progress progress = new Progress(listener, encoded.length);
+        try {
+            ECC.pad(plainText, blockSize, padded);
+            timings.lap(PhaseTimings.Phase.PADDING);
+
+            // Encode each block into unique point. The blocks are read straight
+            // from the padded plain text, so no separate chunking is needed.
+            if (executor == null || encoded.length < MIN_BLOCKS_PER_TASK * 2) {
+                for (int i = 0; i < encoded.length; ++i) {
+                    progress.checkCancelled();
+                    encoded[i] = encodeBlock(padded, i * blockSize, blockSize, c);
+                }
+            } else {
+                // The pooled buffer may be handed to another operation while
+                // the workers of a cancelled one still run, so the workers
+                // get their own copy of the padded plain text.
+                final byte[] shared = new byte[paddedLength];
+                System.arraycopy(padded, 0, shared, 0, paddedLength);
+                forEachBlock(encoded.length, new BlockTask() {
+                    @Override
+                    public void run(int i) throws Exception {
+                        progress.checkCancelled();
+                        encoded[i] = encodeBlock(shared, i * blockSize, blockSize, c);
+                    }
+                });
+            }
+        } finally {
+            releaseMessage(padded);
+        }
+        timings.lap(PhaseTimings.Phase.ENCODING);
+
+        // Encrypt each encoded point into a pair of points:
+        // [C_1, C_2] = [kG, P_m + kP_G], where:
+        // k is an integer from the nonce source such that 1 <= k < n, the
+        // order of G, or 1 <= k < p if n is not known,
+        // G is the base point (provided in the key),
+        // P_m is the encoded point from the plain text,
+        // P_G is the point provided in the public key.
+        // With several keys, C_1 is shared and there is one C_2 per key.
+        // A deterministic source derives k from the message and the block
+        // index; others do not get to see the message.
+        final byte[] messageDigest = nonceSource.isDeterministic() ? digestMessage(publicKeys, plainText) : null;
+        final ECPoint[] c1 = new ECPoint[encoded.length];
+        final ECPoint[][] c2 = new ECPoint[keys.length][encoded.length];
+        forEachBlock(encoded.length, new BlockTask() {
+            @Override
+            public void run(int i) throws Exception {
+                byte[] digest = messageDigest != null ? digestBlock(messageDigest, i) : null;
+                BigInteger k = nonceSource.nextNonce(bound, null, digest);
+                c1[i] = multiplyStrategy.multiply(c, g, k);
+                for (int j = 0; j < publicKeys.length; ++j) {
+                    c2[j][i] = c.add(encoded[i], multiplyStrategy.multiply(c, publicKeys[j], k));
+                }
+                progress.completed();
+            }
+        });
+        timings.lap(PhaseTimings.Phase.MULTIPLICATION);
+
+        // Represent the ciphertexts as arrays of bytes
+        final byte[][] cipherTexts = new byte[keys.length][encoded.length * cipherTextBlockSize * 4];
+        forEachBlock(encoded.length, new BlockTask() {
+            @Override
+            public void run(int i) {
+                int offset = i * cipherTextBlockSize * 4;
+                for (int j = 0; j < cipherTexts.length; ++j) {
+                    byte[] cipherText = cipherTexts[j];
+                    writeCoordinate(c1[i].x, cipherText, offset + cipherTextBlockSize * 0, cipherTextBlockSize);
+                    writeCoordinate(c1[i].y, cipherText, offset + cipherTextBlockSize * 1, cipherTextBlockSize);
+                    writeCoordinate(c2[j][i].x, cipherText, offset + cipherTextBlockSize * 2, cipherTextBlockSize);
+                    writeCoordinate(c2[j][i].y, cipherText, offset + cipherTextBlockSize * 3, cipherTextBlockSize);
+                }
+            }
+        });
+        timings.lap(PhaseTimings.Phase.SERIALIZATION);
+
+        timings.end();
+        event.end();
+        if (event.shouldCommit()) {
+            event.curve = c.getName();
+            event.payloadSize = plainText.length;
+            event.blockCount = encoded.length;
+            // With Koblitz's encoding, the encoded x is
+            // m * AUXILIARY_CONSTANT + k, where k is the number of failed
+            // attempts, and m 2^w + k with the packed one. The other
+            // encoders do not retry. A cache is looked through, and its hits
+            // count the retries of the first encoding again.
+            PointEncoder encoder = pointEncoder;
+            while (encoder instanceof CachingEncoder) {
+                encoder = ((CachingEncoder) encoder).getEncoder();
+            }
+            if (encoder == PointEncoder.KOBLITZ) {
+                for (ECPoint point : encoded) {
+                    event.encodingRetries += point.x.mod(ECC.AUXILIARY_CONSTANT).longValue();
+                }
+            } else if (encoder instanceof PackedEncoder) {
+                int w = ((PackedEncoder) encoder).getAuxiliaryBits(c);
+                for (ECPoint point : encoded) {
+                    event.encodingRetries += point.x.longValue() & ((1L << w) - 1);
+                }
+            }
+            event.commit();
+        }
+        metricsSink.record(operation, c, timings);
+        return new ECCResult<byte[][]>(cipherTexts, timings);
+    }
+
+    /**
+     * Throw unless the two curves have the same parameters and base point.
+     */
+    private static void checkSameCurve(EllipticCurve c, EllipticCurve other) {
+        if (!isSameCurve(c, other)) {
+            throw new IllegalArgumentException("The keys should be on the same curve");
+        }
+    }
+
+    /**
+     * Return whether the two curves have the same parameters and base point.
+     */
+    static boolean isSameCurve(EllipticCurve c, EllipticCurve other) {
+        if (other == c) {
+            return true;
+        }
+        BigInteger p = c.getP();
+        ECPoint g = c.getBasePoint();
+        ECPoint h = other.getBasePoint();
+        return other.getP().equals(p)
+                && other.getA().subtract(c.getA()).mod(p).signum() == 0
+                && other.getB().subtract(c.getB()).mod(p).signum() == 0
+                && g != null && h != null
+                && g.x.subtract(h.x).mod(p).signum() == 0
+                && g.y.subtract(h.y).mod(p).signum() == 0;
+    }
+
+    /**
+     * Decrypt the cipher text, and return the plain text together with the
+     * time spent in each phase.
+     *
+     * @param cipherText
+     * @param key
+     * @return
+     */
+    public ECCResult<byte[]> decryptWithTimings(byte[] cipherText, PrivateKey key) throws Exception {
+        return decryptWithTimings(cipherText, key, ProgressListener.NONE);
+    }
+
+    /**
+     * Decrypt the cipher text, reporting the progress to the listener after
+     * each block, and return the plain text together with the time spent in
+     * each phase.
+     *
+     * @param cipherText
+     * @param key
+     * @param listener
+     * @return
+     * @throws CancellationException if the listener cancelled the operation
+     */
+    public ECCResult<byte[]> decryptWithTimings(final byte[] cipherText, PrivateKey key, ProgressListener listener) throws Exception {
+        ECCEvents.Decrypt event = new ECCEvents.Decrypt();
+        event.begin();
+        PhaseTimings timings = new PhaseTimings();
+        timings.begin();
+
+        final EllipticCurve c = key.getCurve();
+        final BigInteger privateKey = key.getKey();
+        final int blockSize = getBlockSize(c);
+        final int cipherTextBlockSize = ECC.getCipherTextBlockSize(c);
+
+        // Chunk the cipherText into blocks of four coordinates.
+        if (cipherText.length % cipherTextBlockSize != 0 || (cipherText.length / cipherTextBlockSize) % 4 != 0) {
+            throw new Exception("The length of the cipher text is not valid");
+        }
+        final int blockCount = cipherText.length / cipherTextBlockSize / 4;
+        timings.lap(PhaseTimings.Phase.CHUNKING);
+
+        // Read the pairs of points [C_1, C_2] from the blocks
+        final ECPoint[][] encrypted = new ECPoint[blockCount][2];
+        forEachBlock(blockCount, new BlockTask() {
+            @Override
+            public void run(int i) throws Exception {
+                int offset = i * cipherTextBlockSize * 4;
+                encrypted[i][0] = new ECPoint(
+                        readCoordinate(cipherText, offset + cipherTextBlockSize * 0, cipherTextBlockSize),
+                        readCoordinate(cipherText, offset + cipherTextBlockSize * 1, cipherTextBlockSize));
+                encrypted[i][1] = new ECPoint(
+                        readCoordinate(cipherText, offset + cipherTextBlockSize * 2, cipherTextBlockSize),
+                        readCoordinate(cipherText, offset + cipherTextBlockSize * 3, cipherTextBlockSize));
+                checkCipherTextPoint(c, encrypted[i][0]);
+                checkCipherTextPoint(c, encrypted[i][1]);
+            }
+        });
+        timings.lap(PhaseTimings.Phase.SERIALIZATION);
+
+        // Calculate the encoded point
+        // P_m = C_2 - kC_1, where:
+        // [C_1, C_2] is the ciphertext,
+        // k is the private key.
+        final ECPoint[] encoded = new ECPoint[blockCount];
+        final Progress progress = new Progress(listener, blockCount);
+        forEachBlock(blockCount, new BlockTask() {
+            @Override
+            public void run(int i) {
+                progress.checkCancelled();
+                encoded[i] = c.subtract(encrypted[i][1], multiplyStrategy.multiply(c, encrypted[i][0], privateKey));
+                progress.completed();
+            }
+        });
+        timings.lap(PhaseTimings.Phase.MULTIPLICATION);
+
+        // Decode the encoded point
+        final PointEncoder encoder = pointEncoder;
+        final byte[] decoded = takeMessage(blockCount * blockSize);
+        byte[] plainText;
+        try {
+            for (int i = 0; i < blockCount; ++i) {
+                byte[] block = encoder.decode(c, encoded[i]).toByteArray();
+                int offset = i * blockSize;
+                int length = Math.min(block.length, blockSize);
+                for (int j = offset; j < offset + blockSize - length; ++j) {
+                    decoded[j] = 0;
+                }
+                System.arraycopy(block, block.length - length, decoded, offset + blockSize - length, length);
+            }
+            timings.lap(PhaseTimings.Phase.ENCODING);
+            plainText = ECC.unpad(decoded, blockCount * blockSize);
+        } finally {
+            releaseMessage(decoded);
+        }
+        timings.lap(PhaseTimings.Phase.PADDING);
+
+        timings.end();
+        event.end();
+        if (event.shouldCommit()) {
+            event.curve = c.getName();
+            event.payloadSize = cipherText.length;
+            event.blockCount = blockCount;
+            event.commit();
+        }
+        metricsSink.record(MetricsSink.Operation.DECRYPT, c, timings);
+        return new ECCResult<byte[]>(plainText, timings);
+    }
+
+    /**
+     * Generate a random key-pair, given the elliptic curve being used, and
+     * return it together with the time spent in each phase.
+     *
+     * @param c
+     * @param rnd
+     * @return
+     */
+    public ECCResult<KeyPair> generateKeyPairWithTimings(EllipticCurve c, Random rnd) throws Exception {
+        return generateKeyPairWithTimings(c, new RandomNonceSource(rnd));
+    }
+
+    /**
+     * Generate a key-pair with a private key drawn from the given source, and
+     * return it together with the time spent in each phase.
+     *
+     * @param c
+     * @param source
+     * @return
+     * @throws IllegalArgumentException if the source is deterministic, since
+     *         it would give the same key-pair every time
+     */
+    public ECCResult<KeyPair> generateKeyPairWithTimings(EllipticCurve c, NonceSource source) throws Exception {
+        checkKeySource(source);
+        ECCEvents.GenerateKeyPair event = new ECCEvents.GenerateKeyPair();
+        event.begin();
+        PhaseTimings timings = new PhaseTimings();
+        timings.begin();
+
+        // Select the private key, such that 1 <= k < n (or p)
+        BigInteger privateKey = source.nextNonce(scalarBound(c), null, null);
+        timings.skip();
+
+        // Calculate the public key, k * g.
+        // First, randomly generate g if it is not present in the curve.
+        event.basePointGenerated = ensureBasePoint(c, source, privateKey);
+        ECPoint g = c.getBasePoint();
+        timings.lap(PhaseTimings.Phase.ENCODING);
+        ECPoint publicKey = multiplyStrategy.multiply(c, g, privateKey);
+        timings.lap(PhaseTimings.Phase.MULTIPLICATION);
+
+        KeyPair result = new KeyPair(
+                new PublicKey(c, publicKey),
+                new PrivateKey(c, privateKey)
+        );
+
+        timings.end();
+        event.end();
+        if (event.shouldCommit()) {
+            event.curve = c.getName();
+            event.commit();
+        }
+        metricsSink.record(MetricsSink.Operation.GENERATE_KEY_PAIR, c, timings);
+        return new ECCResult<KeyPair>(result, timings);
+    }
+
+    /**
+     * Generate count key-pairs on the given curve, with private keys drawn
+     * from the nonce source of this engine.
+     *
+     * @param c
+     * @param count
+     * @return
+     */
+    public KeyPair[] generateKeyPairs(EllipticCurve c, int count) throws Exception {
+        return generateKeyPairsWithTimings(c, count, nonceSource).getResult();
+    }
+
+    /**
+     * Generate count key-pairs on the given curve, and return them together
+     * with the time spent in each phase.
+     *
+     * All public keys are computed with the fixed-base table of the curve and
+     * kept in Jacobian coordinates, then brought back to affine coordinates
+     * together with a single modular inversion. When the engine has several
+     * threads, the keys are split among them, and each thread does one
+     * inversion for its share.
+     *
+     * @param c
+     * @param count
+     * @param source
+     * @return
+     * @throws IllegalArgumentException if the source is deterministic, since
+     *         all the key-pairs would be the same
+     */
+    public ECCResult<KeyPair[]> generateKeyPairsWithTimings(final EllipticCurve c, int count, final NonceSource source) throws Exception {
+        checkKeySource(source);
+        if (count == 0) {
+            // Nothing to compute, not even the base point or its table.
+            return new ECCResult<KeyPair[]>(new KeyPair[0], new PhaseTimings());
+        }
+        PhaseTimings timings = new PhaseTimings();
+        timings.begin();
+
+        // Select the private keys, such that 1 <= k < n (or p)
+        final BigInteger bound = scalarBound(c);
+        final BigInteger[] privateKeys = new BigInteger[count];
+        for (int i = 0; i < count; ++i) {
+            privateKeys[i] = source.nextNonce(bound, null, null);
+        }
+        timings.skip();
+
+        ensureBasePoint(c, source, privateKeys[0]);
+        final FixedBaseTable table = c.getFixedBaseTable();
+        timings.lap(PhaseTimings.Phase.ENCODING);
+
+        final KeyPair[] result = new KeyPair[count];
+        forEachRange(count, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                JacobianPoint[] publicKeys = new JacobianPoint[to - from];
+                for (int i = from; i < to; ++i) {
+                    publicKeys[i - from] = table.multiplyJacobian(privateKeys[i]);
+                }
+                ECPoint[] affine = c.toAffine(publicKeys);
+                for (int i = from; i < to; ++i) {
+                    result[i] = new KeyPair(
+                            new PublicKey(c, affine[i - from]),
+                            new PrivateKey(c, privateKeys[i])
+                    );
+                }
+            }
+        });
+        timings.lap(PhaseTimings.Phase.MULTIPLICATION);
+
+        timings.end();
+        metricsSink.record(MetricsSink.Operation.GENERATE_KEY_PAIRS, c, timings);
+        return new ECCResult<KeyPair[]>(result, timings);
+    }
+
+    /**
+     * Return the block size of plain text in bytes on the curve, as given by
+     * the encoder of this engine.
+     *
+     * @param c
+     * @return
+     */
+    int getBlockSize(EllipticCurve c) {
+        return pointEncoder.getBlockSize(c);
+    }
+
+    /**
+     * Encrypt count whole blocks of already padded plain text, read from in
+     * at inOffset, into count cipher text blocks of four coordinates written
+     * to out at outOffset. This is the core of encryptWithTimings without
+     * the padding, for ECCCipherSpi, which streams a message through it a
+     * few blocks at a time; the blocks are independent, so the result is the
+     * same as encrypting the whole message at once.
+     *
+     * C_1 = kG uses the fixed-base table of the curve, and kP_G the given
+     * table of the public key when there is one.
+     *
+     * @param c
+     * @param publicKey
+     * @param keyTable the precomputed multiples of publicKey, or null
+     * @param source the source of the nonces, which never gets a digest
+     * @param in
+     * @param inOffset
+     * @param count
+     * @param out
+     * @param outOffset
+     * @throws Exception
+     */
+    void encryptBlocks(final EllipticCurve c, final ECPoint publicKey, final FixedBaseTable keyTable, final NonceSource source,
+            final byte[] in, final int inOffset, int count, final byte[] out, final int outOffset) throws Exception {
+        final BigInteger bound = scalarBound(c);
+        final int blockSize = getBlockSize(c);
+        final int cipherTextBlockSize = ECC.getCipherTextBlockSize(c);
+        final FixedBaseTable table = c.getFixedBaseTable();
+        forEachBlock(count, new BlockTask() {
+            @Override
+            public void run(int i) throws Exception {
+                ECPoint encoded = encodeBlock(in, inOffset + i * blockSize, blockSize, c);
+                BigInteger k = source.nextNonce(bound, null, null);
+                ECPoint c1 = table.multiply(k);
+                ECPoint c2 = c.add(encoded, keyTable != null ? keyTable.multiply(k) : multiplyStrategy.multiply(c, publicKey, k));
+                // Unlike a new cipher text, out may hold anything.
+                int offset = outOffset + i * cipherTextBlockSize * 4;
+                Arrays.fill(out, offset, offset + cipherTextBlockSize * 4, (byte) 0);
+                writeCoordinate(c1.x, out, offset + cipherTextBlockSize * 0, cipherTextBlockSize);
+                writeCoordinate(c1.y, out, offset + cipherTextBlockSize * 1, cipherTextBlockSize);
+                writeCoordinate(c2.x, out, offset + cipherTextBlockSize * 2, cipherTextBlockSize);
+                writeCoordinate(c2.y, out, offset + cipherTextBlockSize * 3, cipherTextBlockSize);
+            }
+        });
+    }
+
+    /**
+     * Decrypt count cipher text blocks, read from in at inOffset, into count
+     * blocks of padded plain text written to out at outOffset; the caller
+     * removes the padding from the last block of the message. This is the
+     * core of decryptWithTimings, for ECCCipherSpi.
+     *
+     * @param c
+     * @param privateKey
+     * @param in
+     * @param inOffset
+     * @param count
+     * @param out
+     * @param outOffset
+     * @throws Exception
+     */
+    void decryptBlocks(final EllipticCurve c, final BigInteger privateKey,
+            final byte[] in, final int inOffset, int count, final byte[] out, final int outOffset) throws Exception {
+        final int blockSize = getBlockSize(c);
+        final int cipherTextBlockSize = ECC.getCipherTextBlockSize(c);
+        final PointEncoder encoder = pointEncoder;
+        forEachBlock(count, new BlockTask() {
+            @Override
+            public void run(int i) throws Exception {
+                int offset = inOffset + i * cipherTextBlockSize * 4;
+                ECPoint c1 = new ECPoint(
+                        readCoordinate(in, offset + cipherTextBlockSize * 0, cipherTextBlockSize),
+                        readCoordinate(in, offset + cipherTextBlockSize * 1, cipherTextBlockSize));
+                ECPoint c2 = new ECPoint(
+                        readCoordinate(in, offset + cipherTextBlockSize * 2, cipherTextBlockSize),
+                        readCoordinate(in, offset + cipherTextBlockSize * 3, cipherTextBlockSize));
+                checkCipherTextPoint(c, c1);
+                checkCipherTextPoint(c, c2);
+                ECPoint encoded = c.subtract(c2, multiplyStrategy.multiply(c, c1, privateKey));
+                byte[] block = encoder.decode(c, encoded).toByteArray();
+                int length = Math.min(block.length, blockSize);
+                int start = outOffset + i * blockSize;
+                Arrays.fill(out, start, start + blockSize - length, (byte) 0);
+                System.arraycopy(block, block.length - length, out, start + blockSize - length, length);
+            }
+        });
+    }
+
+    /**
+     * Throw unless the source can draw private keys: a deterministic source
+     * has no message to derive them from, so it would draw the same key
+     * every time.
+     */
+    static void checkKeySource(NonceSource source) {
+        if (source.isDeterministic()) {
+            throw new IllegalArgumentException("Private keys cannot be drawn from a deterministic nonce source");
+        }
+    }
+
+    /**
+     * Return the bound of the scalars multiplying the base point of the
+     * curve: its order n when it is known, so that the scalars are no longer
+     * than needed, and p otherwise. A curve without base point gets a new
+     * one of unknown order, so p is used for it as well.
+     */
+    static BigInteger scalarBound(EllipticCurve c) {
+        BigInteger n = c.getBasePoint() != null ? c.getOrder() : null;
+        return n != null ? n : c.getP();
+    }
+
+    /**
+     * Randomly generate the base point of the curve if it has none.
+     *
+     * @return whether a base point was generated
+     */
+    private static boolean ensureBasePoint(EllipticCurve c, NonceSource source, BigInteger seed) throws Exception {
+        synchronized (c) {
+            if (c.getBasePoint() != null) {
+                return false;
+            }
+            // Randomly generate g using Koblits method.
+            // The starting value of x should be random.
+            BigInteger x = source.nextNonce(c.getP(), seed, null);
+            c.setBasePoint(ECC.koblitzProbabilistic(c, x));
+            return true;
+        }
+    }
+
+    /**
+     * Return a pooled message buffer of at least the given length, to be
+     * given back with releaseMessage.
+     */
+    private byte[] takeMessage(int length) {
+        byte[] message = idleMessages.poll();
+        if (message == null) {
+            return new byte[length];
+        }
+        idleMessageCount.decrementAndGet();
+        return message.length >= length ? message : new byte[Math.max(length, message.length * 2)];
+    }
+
+    private void releaseMessage(byte[] message) {
+        if (idleMessageCount.incrementAndGet() <= MAX_IDLE_MESSAGES) {
+            idleMessages.offer(message);
+        } else {
+            idleMessageCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Encode the block at the given offset of the message, using the scratch
+     * block of the current thread for the leading zero bytes.
+     */
+    private ECPoint encodeBlock(byte[] message, int offset, int blockSize, EllipticCurve c) throws Exception {
+        byte[] block = scratch.get().block(blockSize + 2);
+        System.arraycopy(message, offset, block, 2, blockSize);
+        return pointEncoder.encode(c, new BigInteger(block));
+    }
+
+    /**
+     * Return SHA-256(P_G.x || P_G.y || ... || plainText), over the points of
+     * all the public keys, from which the digests of the blocks are derived.
+     */
+    private static byte[] digestMessage(ECPoint[] publicKeys, byte[] plainText) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        for (ECPoint publicKey : publicKeys) {
+            sha.update(publicKey.x.toByteArray());
+            sha.update(publicKey.y.toByteArray());
+        }
+        sha.update(plainText);
+        return sha.digest();
+    }
+
+    /**
+     * Return SHA-256(messageDigest || i), the digest identifying the i-th
+     * block of a message.
+     */
+    private static byte[] digestBlock(byte[] messageDigest, int i) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(messageDigest);
+        sha.update(new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i});
+        return sha.digest();
+    }
+
+    /**
+     * Throw unless a point read from a cipher text is on the curve, with
+     * coordinates below p. The addition formulas never use b, so multiplying
+     * a point of another curve by the private key would still succeed, and
+     * the result would leak the key modulo the small order of that point
+     * (the invalid-curve attack).
+     */
+    private static void checkCipherTextPoint(EllipticCurve c, ECPoint point) throws Exception {
+        BigInteger p = c.getP();
+        if (point.x.signum() < 0 || point.x.compareTo(p) >= 0
+                || point.y.signum() < 0 || point.y.compareTo(p) >= 0
+                || !c.isPointInsideCurve(point)) {
+            throw new Exception("The cipher text is not valid");
+        }
+    }
+
+    private BigInteger readCoordinate(byte[] cipherText, int offset, int size) {
+        byte[] coordinate = scratch.get().coordinate(size);
+        System.arraycopy(cipherText, offset, coordinate, 0, size);
+        return new BigInteger(coordinate);
+    }
+
+    private static void writeCoordinate(BigInteger value, byte[] cipherText, int offset, int size) {
+        byte[] bytes = value.toByteArray();
+        System.arraycopy(bytes, 0, cipherText, offset + size - bytes.length, bytes.length);
+    }
+
+    /**
+     * Run the task for every block, split among the workers of this engine
+     * when there are any and the message is long enough.
+     */
+    private void forEachBlock(int count, final BlockTask task) throws Exception {
+        forEachRange(count, new RangeTask() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                for (int i = from; i < to; ++i) {
+                    task.run(i);
+                }
+            }
+        });
+    }
+
+    /**
+     * Split the blocks into one contiguous range per worker of this engine,
+     * and run the task for each range. Without workers, or when there are
+     * too few blocks, the task runs once for all of them.
+     */
+    private void forEachRange(int count, final RangeTask task) throws Exception {
+        forEachRange(count, MIN_BLOCKS_PER_TASK, task);
+    }
+
+    /**
+     * Run the task over the elements 0 to count - 1 split among the workers
+     * of this engine, with at least minPerTask elements per range, for the
+     * batch operations of the other classes (ECDSA, Schnorr...), whose tasks
+     * throw no checked exception.
+     *
+     * @param count
+     * @param minPerTask
+     * @param task
+     */
+    void runInParallel(int count, int minPerTask, RangeTask task) {
+        try {
+            forEachRange(count, minPerTask, task);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void forEachRange(int count, int minPerTask, final RangeTask task) throws Exception {
+        if (executor == null || count < minPerTask * 2) {
+            task.run(0, count);
+            return;
+        }
+
+        int tasks = Math.min(parallelism, count / minPerTask);
+        List<Callable<Void>> ranges = new ArrayList<Callable<Void>>(tasks);
+        for (int t = 0; t < tasks; ++t) {
+            final int from = (int) ((long) count * t / tasks);
+            final int to = (int) ((long) count * (t + 1) / tasks);
+            ranges.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.run(from, to);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : executor.invokeAll(ranges)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package ecc;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events emitted by the hot paths of this package.
+ *
+ * All events are disabled by default, so they have to be switched on in the
+ * recording settings, e.g.
+ *
+ *     -XX:StartFlightRecording:ecc.Encrypt#enabled=true,ecc.Decrypt#enabled=true
+ *
+ * or with a custom .jfc file. The callers only compute the more expensive
+ * fields (such as the retry counts) after checking shouldCommit().
+ *
+ * jdk.jfr is not part of the Java SE 8 API, so the event types are not
+ * subclasses of jdk.jfr.Event: they are declared at run time through
+ * jdk.jfr.EventFactory, looked up by reflection. On a runtime without JFR,
+ * the events are no-ops and shouldCommit() is always false.
+ */
+public final class ECCEvents {
+
+    private static final String CATEGORY = "Elliptic Curve Cryptography";
+
+    // The members of jdk.jfr used here, or null if JFR is not available.
+    private static final Class<?> EVENT_FACTORY;
+    private static final Constructor<?> ANNOTATION_ELEMENT;
+    private static final Constructor<?> VALUE_DESCRIPTOR;
+    private static final Method CREATE;
+    private static final Method NEW_EVENT;
+    private static final Method BEGIN;
+    private static final Method END;
+    private static final Method SHOULD_COMMIT;
+    private static final Method SET;
+    private static final Method COMMIT;
+
+    static {
+        Class<?> eventFactory = null;
+        Constructor<?> annotationElement = null;
+        Constructor<?> valueDescriptor = null;
+        Method create = null;
+        Method newEvent = null;
+        Method begin = null;
+        Method end = null;
+        Method shouldCommit = null;
+        Method set = null;
+        Method commit = null;
+        try {
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            eventFactory = Class.forName("jdk.jfr.EventFactory");
+            annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+            create = eventFactory.getMethod("create", List.class, List.class);
+            newEvent = eventFactory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            shouldCommit = event.getMethod("shouldCommit");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+        } catch (Exception e) {
+            // No JFR in this runtime.
+            eventFactory = null;
+        }
+        EVENT_FACTORY = eventFactory;
+        ANNOTATION_ELEMENT = annotationElement;
+        VALUE_DESCRIPTOR = valueDescriptor;
+        CREATE = create;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        SET = set;
+        COMMIT = commit;
+    }
+
+    private ECCEvents() {
+    }
+
+    /**
+     * Whether the events are recorded by JFR, or are no-ops.
+     *
+     * @return
+     */
+    public static boolean isAvailable() {
+        return EVENT_FACTORY != null;
+    }
+
+    /**
+     * The declaration of an event type: its jdk.jfr.EventFactory, or null if
+     * JFR is not available.
+     */
+    static final class Type {
+        private final Object factory;
+
+        /**
+         * @param name
+         * @param label
+         * @param description
+         * @param stackTrace whether the events record the stack trace
+         * @param fields the fields, in the order of Event.values(), each
+         *        created by field()
+         */
+        Type(String name, String label, String description, boolean stackTrace, Object... fields) {
+            Object factory = null;
+            if (isAvailable()) {
+                try {
+                    List<Object> annotations = new ArrayList<Object>();
+                    annotations.add(annotation("Name", name));
+                    annotations.add(annotation("Label", label));
+                    annotations.add(annotation("Description", description));
+                    annotations.add(annotation("Category", new String[] {CATEGORY}));
+                    annotations.add(annotation("Enabled", false));
+                    annotations.add(annotation("StackTrace", stackTrace));
+                    factory = CREATE.invoke(null, annotations, Arrays.asList(fields));
+                } catch (Exception e) {
+                    // Leave the events of this type as no-ops.
+                    factory = null;
+                }
+            }
+            this.factory = factory;
+        }
+
+        Object newEvent() {
+            return factory == null ? null : invoke(NEW_EVENT, factory);
+        }
+    }
+
+    /**
+     * Return the declaration of a field of an event type, or null if JFR is
+     * not available.
+     *
+     * @param type
+     * @param name
+     * @param label
+     * @param description may be null
+     * @param dataAmount whether the field is a number of bytes
+     * @return
+     */
+    static Object field(Class<?> type, String name, String label, String description, boolean dataAmount) {
+        if (!isAvailable()) {
+            return null;
+        }
+        try {
+            List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation("Label", label));
+            if (description != null) {
+                annotations.add(annotation("Description", description));
+            }
+            if (dataAmount) {
+                annotations.add(annotation("DataAmount", "BYTES"));
+            }
+            return VALUE_DESCRIPTOR.newInstance(type, name, annotations);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object annotation(String name, Object value) throws Exception {
+        Class<? extends Annotation> type = (Class<? extends Annotation>) Class.forName("jdk.jfr." + name);
+        return ANNOTATION_ELEMENT.newInstance(type, value);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * An event being timed, with the same life cycle as jdk.jfr.Event:
+     * begin(), end(), then if shouldCommit(), set the fields and commit().
+     */
+    public abstract static class Event {
+        // The jdk.jfr.Event, or null.
+        private final Object event;
+
+        Event(Type type) {
+            this.event = type.newEvent();
+        }
+
+        public void begin() {
+            if (event != null) {
+                invoke(BEGIN, event);
+            }
+        }
+
+        public void end() {
+            if (event != null) {
+                invoke(END, event);
+            }
+        }
+
+        public boolean shouldCommit() {
+            return event != null && (Boolean) invoke(SHOULD_COMMIT, event);
+        }
+
+        public void commit() {
+            if (event != null) {
+                Object[] values = values();
+                for (int i = 0; i < values.length; ++i) {
+                    invoke(SET, event, i, values[i]);
+                }
+                invoke(COMMIT, event);
+            }
+        }
+
+        /**
+         * Return the values of the fields, in the order of the declaration of
+         * the event type.
+         */
+        abstract Object[] values();
+    }
+
+    /**
+     * One call to ECC.encrypt.
+     */
+    public static final class Encrypt extends Event {
+        private static final Type TYPE = new Type("ecc.Encrypt", "ECC Encrypt", "One call to ECC.encrypt", true,
+                field(String.class, "curve", "Curve", null, false),
+                field(long.class, "payloadSize", "Payload Size", null, true),
+                field(int.class, "blockCount", "Block Count", null, false),
+                field(long.class, "encodingRetries", "Encoding Retries", "Total number of Koblitz attempts beyond the first one, over all blocks", false));
+
+        public String curve;
+        public long payloadSize;
+        public int blockCount;
+        public long encodingRetries;
+
+        public Encrypt() {
+            super(TYPE);
+        }
+
+        @Override
+        Object[] values() {
+            return new Object[] {curve, payloadSize, blockCount, encodingRetries};
+        }
+    }
+
+    /**
+     * One call to ECC.decrypt.
+     */
+    public static final class Decrypt extends Event {
+        private static final Type TYPE = new Type("ecc.Decrypt", "ECC Decrypt", "One call to ECC.decrypt", true,
+                field(String.class, "curve", "Curve", null, false),
+                field(long.class, "payloadSize", "Payload Size", null, true),
+                field(int.class, "blockCount", "Block Count", null, false));
+
+        public String curve;
+        public long payloadSize;
+        public int blockCount;
+
+        public Decrypt() {
+            super(TYPE);
+        }
+
+        @Override
+        Object[] values() {
+            return new Object[] {curve, payloadSize, blockCount};
+        }
+    }
+
+    /**
+     * One call to ECC.generateKeyPair.
+     */
+    public static final class GenerateKeyPair extends Event {
+        private static final Type TYPE = new Type("ecc.GenerateKeyPair", "ECC Generate Key Pair", "One call to ECC.generateKeyPair", true,
+                field(String.class, "curve", "Curve", null, false),
+                field(boolean.class, "basePointGenerated", "Base Point Generated", "Whether a random base point had to be generated for the curve", false));
+
+        public String curve;
+        public boolean basePointGenerated;
+
+        public GenerateKeyPair() {
+            super(TYPE);
+        }
+
+        @Override
+        Object[] values() {
+            return new Object[] {curve, basePointGenerated};
+        }
+    }
+
+    /**
+     * One call to EllipticCurve.multiply.
+     */
+    public static final class Multiply extends Event {
+        private static final Type TYPE = new Type("ecc.Multiply", "EC Scalar Multiplication", "One call to EllipticCurve.multiply", false,
+                field(String.class, "curve", "Curve", null, false),
+                field(int.class, "scalarBits", "Scalar Bits", null, false));
+
+        public String curve;
+        public int scalarBits;
+
+        public Multiply() {
+            super(TYPE);
+        }
+
+        @Override
+        Object[] values() {
+            return new Object[] {curve, scalarBits};
+        }
+    }
+
+    /**
+     * One run of the probabilistic Koblitz encoding.
+     */
+    public static final class KoblitzEncode extends Event {
+        private static final Type TYPE = new Type("ecc.KoblitzEncode", "Koblitz Encoding", "One run of the probabilistic Koblitz encoding", false,
+                field(String.class, "curve", "Curve", null, false),
+                field(long.class, "retries", "Retries", "Number of attempts beyond the first one", false),
+                field(boolean.class, "success", "Success", null, false));
+
+        public String curve;
+        public long retries;
+        public boolean success;
+
+        public KoblitzEncode() {
+            super(TYPE);
+        }
+
+        @Override
+        Object[] values() {
+            return new Object[] {curve, retries, success};
+        }
+    }
+}
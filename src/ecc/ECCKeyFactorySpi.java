@@ -0,0 +1,180 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyFactorySpi;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+
+/**
+ * The KeyFactory of the ECElGamal algorithm of ECCProvider. It converts
+ * PublicKey and PrivateKey to and from the ECPublicKeySpec and
+ * ECPrivateKeySpec of java.security.spec, and translates the EC keys of other
+ * providers over a prime field (e.g. those of KeyPairGenerator "EC").
+ *
+ * A curve whose parameters and base point are those of a standard curve is
+ * replaced with the standard curve, so that the keys share its precomputed
+ * tables. The specification of a key on a curve of unknown order computes
+ * the order with EllipticCurve.computeOrder.
+ */
+public class ECCKeyFactorySpi extends KeyFactorySpi {
+
+    @Override
+    protected java.security.PublicKey engineGeneratePublic(KeySpec keySpec) throws InvalidKeySpecException {
+        if (!(keySpec instanceof ECPublicKeySpec)) {
+            throw new InvalidKeySpecException("Only ECPublicKeySpec is supported");
+        }
+        ECPublicKeySpec spec = (ECPublicKeySpec) keySpec;
+        EllipticCurve c = toCurve(spec.getParams());
+        ECPoint point = new ECPoint(spec.getW().getAffineX(), spec.getW().getAffineY());
+        if (!c.isPointInsideCurve(point)) {
+            throw new InvalidKeySpecException("The point of the key is not on the curve");
+        }
+        return new PublicKey(c, point);
+    }
+
+    @Override
+    protected java.security.PrivateKey engineGeneratePrivate(KeySpec keySpec) throws InvalidKeySpecException {
+        if (!(keySpec instanceof ECPrivateKeySpec)) {
+            throw new InvalidKeySpecException("Only ECPrivateKeySpec is supported");
+        }
+        ECPrivateKeySpec spec = (ECPrivateKeySpec) keySpec;
+        return new PrivateKey(toCurve(spec.getParams()), spec.getS());
+    }
+
+    @Override
+    protected <T extends KeySpec> T engineGetKeySpec(Key key, Class<T> keySpec) throws InvalidKeySpecException {
+        try {
+            if (key instanceof PublicKey && keySpec.isAssignableFrom(ECPublicKeySpec.class)) {
+                PublicKey publicKey = (PublicKey) key;
+                ECPoint point = publicKey.getKey();
+                BigInteger p = publicKey.getCurve().getP();
+                return keySpec.cast(new ECPublicKeySpec(
+                        new java.security.spec.ECPoint(point.x.mod(p), point.y.mod(p)),
+                        toParameterSpec(publicKey.getCurve())));
+            }
+            if (key instanceof PrivateKey && keySpec.isAssignableFrom(ECPrivateKeySpec.class)) {
+                PrivateKey privateKey = (PrivateKey) key;
+                return keySpec.cast(new ECPrivateKeySpec(privateKey.getKey(), toParameterSpec(privateKey.getCurve())));
+            }
+        } catch (InvalidKeySpecException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvalidKeySpecException(e);
+        }
+        throw new InvalidKeySpecException("Cannot convert a " + key.getClass().getName() + " to a " + keySpec.getName());
+    }
+
+    @Override
+    protected Key engineTranslateKey(Key key) throws InvalidKeyException {
+        if (key instanceof java.security.PublicKey) {
+            return translatePublic(key);
+        }
+        if (key instanceof java.security.PrivateKey) {
+            return translatePrivate(key);
+        }
+        throw new InvalidKeyException("Not an EC key");
+    }
+
+    /**
+     * Return the key itself if it is a PublicKey, or its translation if it is
+     * the ECPublicKey of another provider.
+     *
+     * @param key
+     * @return
+     * @throws InvalidKeyException
+     */
+    static PublicKey translatePublic(Key key) throws InvalidKeyException {
+        if (key instanceof PublicKey) {
+            return (PublicKey) key;
+        }
+        if (key instanceof ECPublicKey) {
+            ECPublicKey ecKey = (ECPublicKey) key;
+            try {
+                return (PublicKey) new ECCKeyFactorySpi().engineGeneratePublic(new ECPublicKeySpec(ecKey.getW(), ecKey.getParams()));
+            } catch (InvalidKeySpecException e) {
+                throw new InvalidKeyException(e);
+            }
+        }
+        throw new InvalidKeyException("Not an EC public key");
+    }
+
+    /**
+     * Return the key itself if it is a PrivateKey, or its translation if it
+     * is the ECPrivateKey of another provider.
+     *
+     * @param key
+     * @return
+     * @throws InvalidKeyException
+     */
+    static PrivateKey translatePrivate(Key key) throws InvalidKeyException {
+        if (key instanceof PrivateKey) {
+            return (PrivateKey) key;
+        }
+        if (key instanceof ECPrivateKey) {
+            ECPrivateKey ecKey = (ECPrivateKey) key;
+            try {
+                return new PrivateKey(toCurve(ecKey.getParams()), ecKey.getS());
+            } catch (InvalidKeySpecException e) {
+                throw new InvalidKeyException(e);
+            }
+        }
+        throw new InvalidKeyException("Not an EC private key");
+    }
+
+    /**
+     * Return the curve with the given parameters, the standard one if there
+     * is one.
+     *
+     * @param params
+     * @return
+     * @throws InvalidKeySpecException if the field is not a prime field
+     */
+    static EllipticCurve toCurve(ECParameterSpec params) throws InvalidKeySpecException {
+        if (!(params.getCurve().getField() instanceof ECFieldFp)) {
+            throw new InvalidKeySpecException("Only curves over a prime field are supported");
+        }
+        BigInteger p = ((ECFieldFp) params.getCurve().getField()).getP();
+        BigInteger a = params.getCurve().getA();
+        BigInteger b = params.getCurve().getB();
+        ECPoint g = new ECPoint(params.getGenerator().getAffineX(), params.getGenerator().getAffineY());
+        EllipticCurve standard = EllipticCurve.findStandardCurve(a, b, p);
+        if (standard != null && standard.getBasePoint().x.equals(g.x.mod(p)) && standard.getBasePoint().y.equals(g.y.mod(p))) {
+            return standard;
+        }
+        return new EllipticCurve(null, a, b, p, g, params.getOrder(), BigInteger.valueOf(params.getCofactor()));
+    }
+
+    /**
+     * Return the parameters of the curve, computing the order of its base
+     * point and its cofactor if they are not known.
+     *
+     * @param c
+     * @return
+     * @throws Exception
+     */
+    static ECParameterSpec toParameterSpec(EllipticCurve c) throws Exception {
+        BigInteger p = c.getP();
+        ECPoint g = c.getBasePoint();
+        BigInteger n = g != null ? c.computeOrder() : null;
+        if (n == null) {
+            throw new InvalidKeySpecException("The order of the base point of the curve is not known");
+        }
+        BigInteger h = c.getCofactor();
+        if (h == null) {
+            h = c.countPoints().divide(n);
+        }
+        return new ECParameterSpec(
+                new java.security.spec.EllipticCurve(new ECFieldFp(p), c.getA().mod(p), c.getB().mod(p)),
+                new java.security.spec.ECPoint(g.x.mod(p), g.y.mod(p)),
+                n,
+                h.intValue());
+    }
+}
@@ -0,0 +1,91 @@
+package ecc;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.KeyPairGeneratorSpi;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * The KeyPairGenerator of the ECElGamal algorithm of ECCProvider. It generates
+ * the key pairs with the default engine of ECC, on:
+ * - the standard curve of the given size (192, 224, 256, 384 or 521 bits),
+ * - the standard curve of an ECGenParameterSpec, named e.g. "P-256",
+ *   "NIST P-256" or "secp256r1",
+ * - the curve of an ECParameterSpec.
+ * The default is NIST P-256, and the default generator is a SecureRandom.
+ */
+public class ECCKeyPairGeneratorSpi extends KeyPairGeneratorSpi {
+
+    private static final EllipticCurve[] STANDARD_CURVES = {
+        EllipticCurve.NIST_P_192,
+        EllipticCurve.NIST_P_224,
+        EllipticCurve.NIST_P_256,
+        EllipticCurve.NIST_P_384,
+        EllipticCurve.NIST_P_521
+    };
+
+    private EllipticCurve curve = EllipticCurve.NIST_P_256;
+    private SecureRandom random = null;
+
+    @Override
+    public void initialize(int keysize, SecureRandom random) {
+        for (EllipticCurve c : STANDARD_CURVES) {
+            if (c.getP().bitLength() == keysize) {
+                this.curve = c;
+                this.random = random;
+                return;
+            }
+        }
+        throw new InvalidParameterException("There is no standard curve of " + keysize + " bits");
+    }
+
+    @Override
+    public void initialize(AlgorithmParameterSpec params, SecureRandom random) throws InvalidAlgorithmParameterException {
+        if (params instanceof ECGenParameterSpec) {
+            this.curve = findCurve(((ECGenParameterSpec) params).getName());
+        } else if (params instanceof ECParameterSpec) {
+            try {
+                this.curve = ECCKeyFactorySpi.toCurve((ECParameterSpec) params);
+            } catch (InvalidKeySpecException e) {
+                throw new InvalidAlgorithmParameterException(e);
+            }
+        } else {
+            throw new InvalidAlgorithmParameterException("Only ECGenParameterSpec and ECParameterSpec are supported");
+        }
+        this.random = random;
+    }
+
+    @Override
+    public java.security.KeyPair generateKeyPair() {
+        if (random == null) {
+            random = new SecureRandom();
+        }
+        try {
+            KeyPair keyPair = ECC.getDefaultEngine().generateKeyPair(curve, random);
+            return new java.security.KeyPair(keyPair.getPublicKey(), keyPair.getPrivateKey());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the standard curve of the given name, which may leave out the
+     * "NIST " prefix, or use the SEC 2 name.
+     */
+    private static EllipticCurve findCurve(String name) throws InvalidAlgorithmParameterException {
+        String normalized = name.trim().toUpperCase();
+        for (EllipticCurve c : STANDARD_CURVES) {
+            String bits = Integer.toString(c.getP().bitLength());
+            if (normalized.equals(c.getName().toUpperCase())
+                    || normalized.equals("P-" + bits)
+                    || normalized.equals("SECP" + bits + "R1")) {
+                return c;
+            }
+        }
+        throw new InvalidAlgorithmParameterException("Unknown curve " + name);
+    }
+}
@@ -0,0 +1,38 @@
+package ecc;
+
+import java.security.Provider;
+
+/**
+ * A provider of the Java Cryptography Architecture for the El Gamal Elliptic
+ * Curve Cryptography of ECC, under the algorithm name "ECElGamal":
+ * - Cipher, see ECCCipherSpi,
+ * - KeyPairGenerator, see ECCKeyPairGeneratorSpi,
+ * - KeyFactory, see ECCKeyFactorySpi.
+ *
+ * It is installed with Security.addProvider(new ECCProvider()), after which
+ * Cipher.getInstance("ECElGamal") returns a cipher taking PublicKey and
+ * PrivateKey, which implement the keys of java.security. On a JDK requiring
+ * signed cipher providers, the jar of this project must be signed.
+ */
+public class ECCProvider extends Provider {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "ECC";
+
+    public static final String ALGORITHM = "ECElGamal";
+
+    // Provider(String, String, String) only exists since Java 9.
+    @SuppressWarnings("deprecation")
+    public ECCProvider() {
+        super(NAME, 1.0, "El Gamal Elliptic Curve Cryptography (" + ALGORITHM + " cipher, key pair generator and key factory)");
+        put("Cipher." + ALGORITHM, ECCCipherSpi.class.getName());
+        put("Cipher." + ALGORITHM + " SupportedModes", "ECB|NONE");
+        put("Cipher." + ALGORITHM + " SupportedPaddings", ECCCipherSpi.PADDING.toUpperCase());
+        put("Cipher." + ALGORITHM + " SupportedKeyClasses",
+                PublicKey.class.getName() + "|" + PrivateKey.class.getName()
+                + "|java.security.interfaces.ECPublicKey|java.security.interfaces.ECPrivateKey");
+        put("KeyPairGenerator." + ALGORITHM, ECCKeyPairGeneratorSpi.class.getName());
+        put("KeyFactory." + ALGORITHM, ECCKeyFactorySpi.class.getName());
+    }
+}
@@ -0,0 +1,25 @@
+package ecc;
+
+/**
+ * The output of an ECC operation together with the time spent in each of its
+ * phases.
+ *
+ * @param <T> the type of the output, e.g. byte[] or KeyPair
+ */
+public class ECCResult<T> {
+    private final T result;
+    private final PhaseTimings timings;
+
+    public ECCResult(T result, PhaseTimings timings) {
+        this.result = result;
+        this.timings = timings;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public PhaseTimings getTimings() {
+        return timings;
+    }
+}
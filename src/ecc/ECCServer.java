@@ -0,0 +1,673 @@
+package ecc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A long-running encryption daemon, listening on a TCP port of the loopback
+ * interface. It keeps the engine, its curve tables and the keys in memory, so
+ * that short-lived clients do not pay the start-up and precomputation costs
+ * on every call. See ECCClient for the client side.
+ *
+ * Every request and response is a frame: a 4-byte big-endian length followed
+ * by that many bytes. A request frame starts with the operation code:
+ * - OP_GENERATE_KEY_PAIR, no arguments,
+ * - OP_LOAD_PUBLIC_KEY, OP_LOAD_PRIVATE_KEY, followed by the UTF-8 name of a
+ *   .pub or .pri file in the key directory of the server,
+ * - OP_ENCRYPT, OP_DECRYPT, followed by a 4-byte key id and the data.
+ * A response frame starts with STATUS_OK or STATUS_ERROR. After STATUS_OK
+ * comes the result: the 4-byte key id for the key operations (followed by the
+ * x and y coordinates of the public key, each as long as the prime, for
+ * OP_GENERATE_KEY_PAIR), or the output of OP_ENCRYPT and OP_DECRYPT. After
+ * STATUS_ERROR comes a UTF-8 message. It only describes malformed requests
+ * and unknown keys: every other failure, in particular of OP_DECRYPT, gets
+ * the same message, so that the errors reveal nothing about the keys.
+ *
+ * The trust model is that of the local machine: the port is only bound on
+ * the loopback interface, but any local process that can connect to it can
+ * use every key loaded in the server, without authentication. Keys can only
+ * be loaded from the key directory given at start-up (none by default), so
+ * a client cannot make the server read other files, and the key ids are
+ * random, so a client cannot guess the ids of the keys loaded by others.
+ *
+ * A connection handles its requests one after the other; clients open one
+ * connection per thread to run requests concurrently. Concurrent small
+ * requests are coalesced: while one batch is being served, the requests that
+ * arrive are queued and served together by the next batch.
+ * - Key pairs are generated by one call to ECCEngine.generateKeyPairs, which
+ *   shares one inversion among them.
+ * - Encryptions and decryptions of at most MAX_BATCHED_REQUEST_BLOCKS blocks
+ *   are grouped by key, and the blocks of each group go through one call to
+ *   ECCEngine.encryptBlocks or decryptBlocks, so that they are spread over
+ *   the workers of the engine together. Larger requests keep the workers
+ *   busy on their own, and are not queued. With a deterministic nonce
+ *   source, encryptions are not batched either, as their nonces depend on
+ *   the whole message.
+ *
+ * Errors that cannot be sent to a client, such as a failure to accept
+ * connections, are logged to the logger named after this class.
+ */
+public class ECCServer {
+
+    public static final int DEFAULT_PORT = 7457;
+
+    public static final byte OP_GENERATE_KEY_PAIR = 1;
+    public static final byte OP_LOAD_PUBLIC_KEY = 2;
+    public static final byte OP_LOAD_PRIVATE_KEY = 3;
+    public static final byte OP_ENCRYPT = 4;
+    public static final byte OP_DECRYPT = 5;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    // Frames longer than this are refused, without reading them.
+    public static final int MAX_FRAME_LENGTH = 64 << 20;
+
+    private static final int MAX_KEY_PAIR_BATCH = 256;
+
+    /**
+     * The largest number of blocks of an encryption or decryption request
+     * that is coalesced with others.
+     */
+    public static final int MAX_BATCHED_REQUEST_BLOCKS = 16;
+
+    private static final int MAX_BLOCK_BATCH = 256;
+
+    private static final Logger LOGGER = Logger.getLogger(ECCServer.class.getName());
+
+    private static final String REQUEST_FAILED = "Request failed";
+
+    private final ECCEngine engine;
+    private final File keyDirectory;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+    private final Thread keyPairBatcher;
+    private final Thread blockBatcher;
+
+    private final SecureRandom keyIds = new SecureRandom();
+    private final Set<Integer> usedKeyIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final ConcurrentHashMap<Integer, PublicKey> publicKeys = new ConcurrentHashMap<Integer, PublicKey>();
+    private final ConcurrentHashMap<Integer, PrivateKey> privateKeys = new ConcurrentHashMap<Integer, PrivateKey>();
+
+    private final Set<Socket> openSockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private final BlockingQueue<CompletableFuture<KeyPair>> keyPairRequests = new LinkedBlockingQueue<CompletableFuture<KeyPair>>();
+    private final BlockingQueue<BlockRequest> blockRequests = new LinkedBlockingQueue<BlockRequest>();
+
+    private volatile boolean closed;
+
+    /**
+     * An error whose message can be sent back to the client.
+     */
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A small encryption or decryption request queued for the block batcher,
+     * with either key.
+     */
+    private static final class BlockRequest {
+        final PublicKey publicKey;
+        final PrivateKey privateKey;
+        final byte[] data;
+        final CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+
+        BlockRequest(PublicKey publicKey, PrivateKey privateKey, byte[] data) {
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+            this.data = data;
+        }
+
+        Object getKey() {
+            return publicKey != null ? publicKey : privateKey;
+        }
+    }
+
+    /**
+     * Listen on the given port of the loopback interface, 0 for any free
+     * port, without a key directory: keys can only be generated. The server
+     * does not accept connections before start().
+     *
+     * @param engine
+     * @param port
+     */
+    public ECCServer(ECCEngine engine, int port) throws IOException {
+        this(engine, port, null);
+    }
+
+    /**
+     * Listen on the given port of the loopback interface, 0 for any free
+     * port. The server does not accept connections before start().
+     *
+     * @param engine
+     * @param port
+     * @param keyDirectory the directory of the key files that clients can
+     *        load, or null if they cannot load any
+     */
+    public ECCServer(ECCEngine engine, int port, File keyDirectory) throws IOException {
+        this.engine = engine;
+        this.keyDirectory = keyDirectory != null ? keyDirectory.getCanonicalFile() : null;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.connections = Executors.newCachedThreadPool(daemonThreads("ecc-server-connection-"));
+        this.acceptor = daemonThreads("ecc-server-acceptor-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+        this.keyPairBatcher = daemonThreads("ecc-server-keygen-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                generateKeyPairs();
+            }
+        });
+        this.blockBatcher = daemonThreads("ecc-server-blocks-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                processBlockRequests();
+            }
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public ECCEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Warm up the tables of the curve of the engine, then start accepting
+     * connections.
+     */
+    public void start() {
+        engine.getCurve().getFixedBaseTable();
+        keyPairBatcher.start();
+        blockBatcher.start();
+        acceptor.start();
+    }
+
+    /**
+     * Stop accepting connections and close the open ones. A request being
+     * served is cut short: its connection is closed before the response.
+     */
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        // Interrupting the connection threads does not wake up a blocking
+        // socket read, closing the socket does.
+        for (Socket socket : openSockets) {
+            closeQuietly(socket);
+        }
+        connections.shutdownNow();
+        keyPairBatcher.interrupt();
+        blockBatcher.interrupt();
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.log(Level.SEVERE, "Cannot accept connections", e);
+                }
+                return;
+            }
+            openSockets.add(socket);
+            if (closed) {
+                // close() may have missed it.
+                closeQuietly(socket);
+                return;
+            }
+            try {
+                connections.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed in the meantime.
+                openSockets.remove(socket);
+                closeQuietly(socket);
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (!closed) {
+                byte[] request;
+                try {
+                    request = readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] response;
+                try {
+                    response = concat(new byte[]{STATUS_OK}, handle(request));
+                } catch (RequestException e) {
+                    response = concat(new byte[]{STATUS_ERROR}, e.getMessage().getBytes(StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    response = concat(new byte[]{STATUS_ERROR}, REQUEST_FAILED.getBytes(StandardCharsets.UTF_8));
+                }
+                writeFrame(out, response);
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // The connection was closed by the client or by close().
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Connection from " + socket.getRemoteSocketAddress() + " failed", e);
+        } finally {
+            openSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private byte[] handle(byte[] request) throws Exception {
+        if (request.length == 0) {
+            throw new RequestException("Empty request");
+        }
+        switch (request[0]) {
+            case OP_GENERATE_KEY_PAIR: {
+                KeyPair keys = requestKeyPair();
+                int id = newKeyId();
+                publicKeys.put(id, keys.getPublicKey());
+                privateKeys.put(id, keys.getPrivateKey());
+                EllipticCurve c = keys.getPublicKey().getCurve();
+                int size = (c.getP().bitLength() + 7) / 8;
+                byte[] result = new byte[4 + size * 2];
+                writeInt(id, result, 0);
+                writeUnsigned(keys.getPublicKey().getKey().x, result, 4, size);
+                writeUnsigned(keys.getPublicKey().getKey().y, result, 4 + size, size);
+                return result;
+            }
+            case OP_LOAD_PUBLIC_KEY: {
+                PublicKey key = new PublicKey(resolveKeyFile(request));
+                if (key.getCurve() == null) {
+                    throw new RequestException("Cannot read the public key");
+                }
+                int id = newKeyId();
+                publicKeys.put(id, key);
+                return intToBytes(id);
+            }
+            case OP_LOAD_PRIVATE_KEY: {
+                PrivateKey key = new PrivateKey(resolveKeyFile(request));
+                if (key.getCurve() == null) {
+                    throw new RequestException("Cannot read the private key");
+                }
+                int id = newKeyId();
+                privateKeys.put(id, key);
+                return intToBytes(id);
+            }
+            case OP_ENCRYPT: {
+                PublicKey key = publicKeys.get(readKeyId(request));
+                if (key == null) {
+                    throw new RequestException("Unknown public key " + readKeyId(request));
+                }
+                byte[] data = copyData(request);
+                int blockSize = engine.getBlockSize(key.getCurve());
+                if (engine.getNonceSource().isDeterministic()
+                        || ECC.getPaddedLength(data.length, blockSize) / blockSize > MAX_BATCHED_REQUEST_BLOCKS) {
+                    return engine.encrypt(data, key);
+                }
+                return requestBlocks(new BlockRequest(key, null, data));
+            }
+            case OP_DECRYPT: {
+                PrivateKey key = privateKeys.get(readKeyId(request));
+                if (key == null) {
+                    throw new RequestException("Unknown private key " + readKeyId(request));
+                }
+                try {
+                    byte[] data = copyData(request);
+                    int cipherTextBlockSize = ECC.getCipherTextBlockSize(key.getCurve()) * 4;
+                    if (data.length == 0 || data.length % cipherTextBlockSize != 0
+                            || data.length / cipherTextBlockSize > MAX_BATCHED_REQUEST_BLOCKS) {
+                        return engine.decrypt(data, key);
+                    }
+                    return requestBlocks(new BlockRequest(null, key, data));
+                } catch (Exception e) {
+                    // One message for every failure, whether the points, the
+                    // encoding or the padding are wrong.
+                    throw new RequestException("Decryption failed");
+                }
+            }
+            default:
+                throw new RequestException("Unknown operation " + request[0]);
+        }
+    }
+
+    /**
+     * Return a new random key id.
+     */
+    private int newKeyId() {
+        while (true) {
+            int id = keyIds.nextInt();
+            if (usedKeyIds.add(id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Return the path of the key file named in the request, which must be
+     * directly in the key directory.
+     */
+    private String resolveKeyFile(byte[] request) throws IOException, RequestException {
+        if (keyDirectory == null) {
+            throw new RequestException("Loading keys is disabled");
+        }
+        File file = new File(keyDirectory, readPath(request)).getCanonicalFile();
+        if (!keyDirectory.equals(file.getParentFile())) {
+            throw new RequestException("The key file should be in the key directory");
+        }
+        return file.getPath();
+    }
+
+    /**
+     * Queue a key-pair request for the batcher and wait for its key pair.
+     */
+    private KeyPair requestKeyPair() throws Exception {
+        CompletableFuture<KeyPair> future = new CompletableFuture<KeyPair>();
+        keyPairRequests.add(future);
+        return await(future);
+    }
+
+    /**
+     * Queue an encryption or decryption request for the block batcher and
+     * wait for its output.
+     */
+    private byte[] requestBlocks(BlockRequest request) throws Exception {
+        blockRequests.add(request);
+        return await(request.result);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Serve the queued key-pair requests, all those waiting at once.
+     */
+    private void generateKeyPairs() {
+        List<CompletableFuture<KeyPair>> batch = new ArrayList<CompletableFuture<KeyPair>>();
+        while (!closed) {
+            try {
+                batch.add(keyPairRequests.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            keyPairRequests.drainTo(batch, MAX_KEY_PAIR_BATCH - 1);
+            try {
+                KeyPair[] keys = engine.generateKeyPairs(engine.getCurve(), batch.size());
+                for (int i = 0; i < keys.length; ++i) {
+                    batch.get(i).complete(keys[i]);
+                }
+            } catch (Exception e) {
+                for (CompletableFuture<KeyPair> request : batch) {
+                    request.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Serve the queued encryption and decryption requests, all those waiting
+     * at once, in one call to the engine per key.
+     */
+    private void processBlockRequests() {
+        List<BlockRequest> batch = new ArrayList<BlockRequest>();
+        while (!closed) {
+            try {
+                batch.add(blockRequests.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            blockRequests.drainTo(batch, MAX_BLOCK_BATCH - 1);
+            Map<Object, List<BlockRequest>> groups = new IdentityHashMap<Object, List<BlockRequest>>();
+            for (BlockRequest request : batch) {
+                List<BlockRequest> group = groups.get(request.getKey());
+                if (group == null) {
+                    group = new ArrayList<BlockRequest>();
+                    groups.put(request.getKey(), group);
+                }
+                group.add(request);
+            }
+            for (List<BlockRequest> group : groups.values()) {
+                if (group.get(0).publicKey != null) {
+                    encryptGroup(group);
+                } else {
+                    decryptGroup(group);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Encrypt the messages of the requests, all for the same public key, as
+     * one run of blocks.
+     */
+    private void encryptGroup(List<BlockRequest> group) {
+        PublicKey key = group.get(0).publicKey;
+        EllipticCurve c = key.getCurve();
+        int blockSize = engine.getBlockSize(c);
+        int cipherTextBlockSize = ECC.getCipherTextBlockSize(c) * 4;
+        int[] offsets = new int[group.size() + 1];
+        for (int i = 0; i < group.size(); ++i) {
+            offsets[i + 1] = offsets[i] + ECC.getPaddedLength(group.get(i).data.length, blockSize) / blockSize;
+        }
+        byte[] in = new byte[offsets[group.size()] * blockSize];
+        for (int i = 0; i < group.size(); ++i) {
+            byte[] padded = new byte[(offsets[i + 1] - offsets[i]) * blockSize];
+            ECC.pad(group.get(i).data, blockSize, padded);
+            System.arraycopy(padded, 0, in, offsets[i] * blockSize, padded.length);
+        }
+        byte[] out = new byte[offsets[group.size()] * cipherTextBlockSize];
+        try {
+            engine.encryptBlocks(c, key.getKey(), null, engine.getNonceSource(), in, 0, offsets[group.size()], out, 0);
+        } catch (Exception e) {
+            for (BlockRequest request : group) {
+                request.result.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); ++i) {
+            group.get(i).result.complete(Arrays.copyOfRange(out, offsets[i] * cipherTextBlockSize, offsets[i + 1] * cipherTextBlockSize));
+        }
+    }
+
+    /**
+     * Decrypt the cipher texts of the requests, all for the same private key,
+     * as one run of blocks. If a block is not valid, the requests are
+     * decrypted one by one, so that only the faulty ones fail.
+     */
+    private void decryptGroup(List<BlockRequest> group) {
+        PrivateKey key = group.get(0).privateKey;
+        EllipticCurve c = key.getCurve();
+        int blockSize = engine.getBlockSize(c);
+        int cipherTextBlockSize = ECC.getCipherTextBlockSize(c) * 4;
+        int[] offsets = new int[group.size() + 1];
+        for (int i = 0; i < group.size(); ++i) {
+            offsets[i + 1] = offsets[i] + group.get(i).data.length / cipherTextBlockSize;
+        }
+        byte[] in = new byte[offsets[group.size()] * cipherTextBlockSize];
+        for (int i = 0; i < group.size(); ++i) {
+            System.arraycopy(group.get(i).data, 0, in, offsets[i] * cipherTextBlockSize, group.get(i).data.length);
+        }
+        byte[] out = new byte[offsets[group.size()] * blockSize];
+        try {
+            engine.decryptBlocks(c, key.getKey(), in, 0, offsets[group.size()], out, 0);
+        } catch (Exception e) {
+            for (BlockRequest request : group) {
+                try {
+                    request.result.complete(engine.decrypt(request.data, key));
+                } catch (Exception f) {
+                    request.result.completeExceptionally(f);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); ++i) {
+            try {
+                byte[] decoded = Arrays.copyOfRange(out, offsets[i] * blockSize, offsets[i + 1] * blockSize);
+                group.get(i).result.complete(ECC.unpad(decoded, decoded.length));
+            } catch (RuntimeException e) {
+                // A padding out of range.
+                group.get(i).result.completeExceptionally(e);
+            }
+        }
+    }
+
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+    }
+
+    static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    static byte[] intToBytes(int value) {
+        byte[] result = new byte[4];
+        writeInt(value, result, 0);
+        return result;
+    }
+
+    static void writeInt(int value, byte[] b, int offset) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16)
+                | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+    }
+
+    private static void writeUnsigned(BigInteger value, byte[] b, int offset, int size) {
+        byte[] bytes = value.toByteArray();
+        int skip = bytes.length > size ? bytes.length - size : 0;
+        System.arraycopy(bytes, skip, b, offset + size - (bytes.length - skip), bytes.length - skip);
+    }
+
+    private static int readKeyId(byte[] request) throws RequestException {
+        if (request.length < 5) {
+            throw new RequestException("Missing key id");
+        }
+        return readInt(request, 1);
+    }
+
+    private static byte[] copyData(byte[] request) {
+        byte[] data = new byte[request.length - 5];
+        System.arraycopy(request, 5, data, 0, data.length);
+        return data;
+    }
+
+    private static String readPath(byte[] request) {
+        return new String(request, 1, request.length - 1, StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Run the server until the process is killed.
+     *
+     * Usage: ECCServer [port [threads [keyDirectory]]]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        File keyDirectory = args.length > 2 ? new File(args[2]) : null;
+        ECCEngine engine = new ECCEngine(EllipticCurve.NIST_P_192, new DrbgNonceSource(), threads,
+                MultiplyStrategy.WINDOW_NAF_JACOBIAN, MetricsSink.NONE);
+        ECCServer server = new ECCServer(engine, port, keyDirectory);
+        server.start();
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+        server.acceptor.join();
+    }
+}
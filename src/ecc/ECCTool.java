@@ -0,0 +1,311 @@
+package ecc;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A command-line tool encrypting or decrypting every file of a directory
+ * tree, without the GUI:
+ *
+ *     ECCTool encrypt [options] key.pub input-dir output-dir
+ *     ECCTool decrypt [options] key.pri input-dir output-dir
+ *
+ * Options:
+ *     -threads n   the number of files encrypted at once (default: one per
+ *                  processor)
+ *     -force       process every file, even the unchanged ones
+ *
+ * The output tree mirrors the input tree. Encrypted files get the extension
+ * .ecc, which is removed again when decrypting. The output directory may be
+ * inside the input directory: it is not walked, and neither are the .ecc
+ * files when encrypting, nor the temporary files of an interrupted run, so
+ * the outputs of a previous run are never encrypted again.
+ *
+ * Files are pipelined through three stages: a pool of I/O threads reads them,
+ * the workers encrypt them, and the I/O threads write them, so the disk and
+ * the processors are kept busy at the same time. The number of files between
+ * the first and the last stage is bounded to keep the memory in check.
+ *
+ * Each output file gets the modification time of its input file. A file whose
+ * output exists with the same modification time is considered unchanged and
+ * skipped, so a run after an interrupted one, or over a tree where few files
+ * changed, only processes what is needed.
+ */
+public class ECCTool {
+
+    public static final String EXTENSION = ".ecc";
+
+    private static final int IO_THREADS = 4;
+
+    private static final String TEMPORARY_PREFIX = ".ecc-tool-";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final boolean encrypting;
+    private final PublicKey publicKey;
+    private final PrivateKey privateKey;
+    private final int threads;
+    private final boolean force;
+    private final ECCEngine engine;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private ECCTool(boolean encrypting, PublicKey publicKey, PrivateKey privateKey, int threads, boolean force) {
+        this.encrypting = encrypting;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.threads = threads;
+        this.force = force;
+        EllipticCurve c = encrypting ? publicKey.getCurve() : privateKey.getCurve();
+        // The files are processed in parallel, so every file is processed by
+        // one thread.
+        this.engine = new ECCEngine(c, new DrbgNonceSource(), 1, MultiplyStrategy.WINDOW_NAF_JACOBIAN, MetricsSink.NONE);
+    }
+
+    /**
+     * Process every regular file below input, and wait for all of them.
+     */
+    private void run(final Path input, final Path output) throws Exception {
+        final ExecutorService io = Executors.newFixedThreadPool(IO_THREADS, daemonThreads("ecc-tool-io-"));
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, daemonThreads("ecc-tool-worker-"));
+        final Semaphore inFlight = new Semaphore(threads * 2 + IO_THREADS * 2);
+        final Path inputRoot = input.toAbsolutePath().normalize();
+        final Path outputRoot = output.toAbsolutePath().normalize();
+        try {
+            Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    Path path = dir.toAbsolutePath().normalize();
+                    if (path.equals(outputRoot) && !path.equals(inputRoot)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (!attributes.isRegularFile() || isOutput(file.getFileName().toString())) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    final Path target = getTarget(output.resolve(input.relativize(file).toString()));
+                    final FileTime modified = attributes.lastModifiedTime();
+                    if (!force && isUnchanged(target, modified)) {
+                        skipped.incrementAndGet();
+                        return FileVisitResult.CONTINUE;
+                    }
+                    inFlight.acquireUninterruptibly();
+                    process(file, target, modified, io, workers).whenComplete(new BiConsumer<Void, Throwable>() {
+                        @Override
+                        public void accept(Void result, Throwable error) {
+                            inFlight.release();
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    failed.incrementAndGet();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            // Wait for the files still in the pipeline.
+            inFlight.acquireUninterruptibly(threads * 2 + IO_THREADS * 2);
+        } finally {
+            io.shutdown();
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Read, process and write one file.
+     */
+    private CompletableFuture<Void> process(final Path file, final Path target, final FileTime modified,
+            ExecutorService io, ExecutorService workers) {
+        return CompletableFuture.supplyAsync(new Supplier<byte[]>() {
+            @Override
+            public byte[] get() {
+                try {
+                    byte[] data = Files.readAllBytes(file);
+                    bytesRead.addAndGet(data.length);
+                    return data;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, io).thenApplyAsync(new Function<byte[], byte[]>() {
+            @Override
+            public byte[] apply(byte[] data) {
+                try {
+                    return encrypting ? engine.encrypt(data, publicKey) : engine.decrypt(data, privateKey);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, workers).thenAcceptAsync(new Consumer<byte[]>() {
+            @Override
+            public void accept(byte[] data) {
+                try {
+                    write(target, data, modified);
+                    bytesWritten.addAndGet(data.length);
+                    processed.incrementAndGet();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, io).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable error) {
+                if (error != null) {
+                    Throwable cause = error;
+                    while (cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    System.err.println(file + ": " + cause);
+                    failed.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the file through a temporary file, so that an interrupted run
+     * never leaves a partial output looking unchanged.
+     */
+    private static void write(Path target, byte[] data, FileTime modified) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, TEMPORARY_PREFIX, TEMPORARY_SUFFIX);
+        try {
+            Files.write(temporary, data);
+            Files.setLastModifiedTime(temporary, modified);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Return whether a file of the input tree is an output of this tool: a
+     * temporary file, or an encrypted file when encrypting.
+     */
+    private boolean isOutput(String name) {
+        return (name.startsWith(TEMPORARY_PREFIX) && name.endsWith(TEMPORARY_SUFFIX))
+                || (encrypting && name.endsWith(EXTENSION));
+    }
+
+    private static boolean isUnchanged(Path target, FileTime modified) {
+        try {
+            return Files.getLastModifiedTime(target).equals(modified);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path getTarget(Path path) {
+        String name = path.getFileName().toString();
+        if (encrypting) {
+            return path.resolveSibling(name + EXTENSION);
+        } else if (name.endsWith(EXTENSION) && name.length() > EXTENSION.length()) {
+            return path.resolveSibling(name.substring(0, name.length() - EXTENSION.length()));
+        } else {
+            return path;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ECCTool encrypt|decrypt [-threads n] [-force] key input-dir output-dir");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            usage();
+        }
+        boolean encrypting = "encrypt".equals(args[0]);
+        if (!encrypting && !"decrypt".equals(args[0])) {
+            usage();
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean force = false;
+        int i = 1;
+        for (; i < args.length && args[i].startsWith("-"); ++i) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-force".equals(args[i])) {
+                force = true;
+            } else {
+                usage();
+            }
+        }
+        if (args.length - i != 3 || threads < 1) {
+            usage();
+        }
+
+        PublicKey publicKey = null;
+        PrivateKey privateKey = null;
+        if (encrypting) {
+            publicKey = new PublicKey(args[i]);
+            if (publicKey.getCurve() == null) {
+                System.err.println("Cannot read the public key " + args[i]);
+                System.exit(1);
+            }
+        } else {
+            privateKey = new PrivateKey(args[i]);
+            if (privateKey.getCurve() == null) {
+                System.err.println("Cannot read the private key " + args[i]);
+                System.exit(1);
+            }
+        }
+        Path input = Paths.get(args[i + 1]);
+        Path output = Paths.get(args[i + 2]);
+
+        ECCTool tool = new ECCTool(encrypting, publicKey, privateKey, threads, force);
+        long start = System.nanoTime();
+        tool.run(input, output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%d files processed, %d unchanged, %d failed in %.2f s",
+                tool.processed.get(), tool.skipped.get(), tool.failed.get(), seconds));
+        System.out.println(String.format("%.1f files/s, %.2f MB/s read, %.2f MB/s written",
+                tool.processed.get() / seconds,
+                tool.bytesRead.get() / seconds / 1e6,
+                tool.bytesWritten.get() / seconds / 1e6));
+        System.exit(tool.failed.get() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,263 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements Elliptic Curve Diffie-Hellman key agreement.
+ * 
+ * The shared secret Z of a private key d and a peer public key Q is the
+ * x-coordinate of dQ, written in as many bytes as p needs. It is turned into
+ * key material with the ANSI X9.63 key derivation function over SHA-256.
+ * 
+ * An instance of this class remembers the key material it derived, keyed by
+ * the local private key, the peer point and the requested length, for a
+ * limited time and up to a limited number of entries (least recently used
+ * entries are evicted first). Talking to the same peer again then costs a
+ * lookup instead of a scalar multiplication. Instances are thread-safe.
+ */
+public class ECDH {
+
+    private final int capacity;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<CacheKey, CachedKey> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Identifies one derivation: the curve, the local private key, the peer
+     * point, the length and the shared info.
+     */
+    private static final class CacheKey {
+        private final BigInteger p;
+        private final BigInteger a;
+        private final BigInteger b;
+        private final BigInteger d;
+        private final BigInteger x;
+        private final BigInteger y;
+        private final int length;
+        private final byte[] info;
+        private final int hash;
+
+        CacheKey(EllipticCurve c, BigInteger d, ECPoint q, int length, byte[] info) {
+            this.p = c.getP();
+            this.a = c.getA().mod(p);
+            this.b = c.getB().mod(p);
+            this.d = d;
+            this.x = q.x.mod(p);
+            this.y = q.y.mod(p);
+            this.length = length;
+            this.info = info.clone();
+            this.hash = Arrays.hashCode(new Object[] {p, a, b, d, x, y, length, Arrays.hashCode(info)});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey e = (CacheKey) o;
+            return hash == e.hash && length == e.length
+                    && p.equals(e.p) && a.equals(e.a) && b.equals(e.b)
+                    && d.equals(e.d) && x.equals(e.x) && y.equals(e.y)
+                    && Arrays.equals(info, e.info);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedKey {
+        final byte[] key;
+        final long expiresAt;
+
+        CachedKey(byte[] key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param capacity the maximum number of derived keys to remember
+     * @param timeToLiveMillis how long a derived key is remembered
+     */
+    public ECDH(final int capacity, long timeToLiveMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity should be at least 1");
+        }
+        this.capacity = capacity;
+        this.timeToLiveNanos = timeToLiveMillis * 1000000;
+        this.cache = new LinkedHashMap<CacheKey, CachedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedKey> eldest) {
+                return size() > ECDH.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Derive length bytes of key material shared with the peer, from the
+     * cache if it has been derived recently.
+     * 
+     * @param local
+     * @param peer
+     * @param length
+     * @return 
+     */
+    public byte[] deriveKey(PrivateKey local, PublicKey peer, int length) {
+        return deriveKey(local, peer, length, new byte[0]);
+    }
+
+    /**
+     * Derive length bytes of key material shared with the peer, bound to the
+     * given shared info, from the cache if it has been derived recently.
+     * 
+     * @param local
+     * @param peer
+     * @param length
+     * @param info
+     * @return 
+     */
+    public byte[] deriveKey(PrivateKey local, PublicKey peer, int length, byte[] info) {
+        CacheKey entry = new CacheKey(local.getCurve(), local.getKey(), peer.getKey(), length, info);
+        long now = System.nanoTime();
+        synchronized (cache) {
+            CachedKey cached = cache.get(entry);
+            if (cached != null) {
+                if (cached.expiresAt - now > 0) {
+                    hits.incrementAndGet();
+                    return cached.key.clone();
+                }
+                cache.remove(entry);
+            }
+        }
+
+        // Derive outside of the lock, so one slow multiplication does not
+        // hold up the lookups of other threads.
+        misses.incrementAndGet();
+        byte[] key = deriveKeyUncached(local, peer, length, info);
+        synchronized (cache) {
+            cache.put(entry, new CachedKey(key, now + timeToLiveNanos));
+        }
+        return key.clone();
+    }
+
+    /**
+     * Remove the expired entries. Expired entries are also dropped when they
+     * are looked up, or evicted when the cache is full, so calling this is
+     * only needed to release their memory early.
+     */
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Iterator<CachedKey> it = cache.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expiresAt - now <= 0) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Compute the shared secret Z, the x-coordinate of dQ.
+     * 
+     * @param local
+     * @param peer
+     * @return 
+     */
+    public static byte[] deriveSharedSecret(PrivateKey local, PublicKey peer) {
+        EllipticCurve c = local.getCurve();
+        ECPoint q = peer.getKey();
+        // Refuse points outside the curve, which could leak the private key
+        // through a weaker curve (the invalid curve attack).
+        if (q == null || q.isPointOfInfinity() || !c.isPointInsideCurve(q)) {
+            throw new IllegalArgumentException("The peer public key is not a point of the curve");
+        }
+        ECPoint z = c.multiplyJacobian(q, local.getKey());
+        if (z.isPointOfInfinity()) {
+            throw new IllegalArgumentException("The shared secret is the point of infinity");
+        }
+        int length = (c.getP().bitLength() + 7) / 8;
+        byte[] bytes = z.x.toByteArray();
+        byte[] secret = new byte[length];
+        int count = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - count, secret, length - count, count);
+        return secret;
+    }
+
+    /**
+     * Derive length bytes of key material shared with the peer, without any
+     * caching.
+     * 
+     * @param local
+     * @param peer
+     * @param length
+     * @param info
+     * @return 
+     */
+    public static byte[] deriveKeyUncached(PrivateKey local, PublicKey peer, int length, byte[] info) {
+        return kdf(deriveSharedSecret(local, peer), length, info);
+    }
+
+    /**
+     * The ANSI X9.63 key derivation function with SHA-256:
+     * K = H(Z || 1 || info) || H(Z || 2 || info) || ..., cut to length bytes,
+     * with the counter written in 4 bytes.
+     * 
+     * @param z
+     * @param length
+     * @param info
+     * @return 
+     */
+    public static byte[] kdf(byte[] z, int length, byte[] info) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] key = new byte[length];
+            int counter = 1;
+            for (int offset = 0; offset < length; offset += sha.getDigestLength(), ++counter) {
+                sha.update(z);
+                sha.update(new byte[] {(byte) (counter >>> 24), (byte) (counter >>> 16), (byte) (counter >>> 8), (byte) counter});
+                sha.update(info);
+                byte[] block = sha.digest();
+                System.arraycopy(block, 0, key, offset, Math.min(block.length, length - offset));
+            }
+            return key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * This class implements the Elliptic Curve Digital Signature Algorithm
+ * (FIPS 186-4) on top of EllipticCurve, PublicKey and PrivateKey.
+ * 
+ * The message is hashed with SHA-256, SHA-384 or SHA-512, depending on the
+ * size of the order n of the base point (at most 256, at most 384, or more
+ * bits). By default the nonces are derived from the private key and the hash
+ * as in RFC 6979, so signing needs no randomness at all.
+ * 
+ * kG is computed with the fixed-base table of the curve, and the u1 * G +
+ * u2 * Q of the verification in one combined multiplication. Both need the
+ * order of the base point, so only curves with a known order can be used.
+ */
+public class ECDSA {
+
+    private static final NonceSource DEFAULT_NONCE_SOURCE = new DeterministicNonceSource();
+
+    /**
+     * Sign the message with deterministic nonces.
+     * 
+     * @param message
+     * @param key
+     * @return 
+     */
+    public static ECDSASignature sign(byte[] message, PrivateKey key) {
+        return sign(message, key, DEFAULT_NONCE_SOURCE);
+    }
+
+    /**
+     * Sign the message with nonces drawn from the given source.
+     * 
+     * @param message
+     * @param key
+     * @param source
+     * @return 
+     */
+    public static ECDSASignature sign(byte[] message, PrivateKey key, NonceSource source) {
+        EllipticCurve c = key.getCurve();
+        BigInteger n = getOrder(c);
+        BigInteger d = key.getKey();
+        byte[] hash = hash(message, n);
+        BigInteger e = HmacDrbg.bits2int(hash, n.bitLength());
+        FixedBaseTable table = c.getFixedBaseTable();
+
+        while (true) {
+            BigInteger k = source.nextNonce(n, d, hash);
+            // r = (kG).x mod n
+            BigInteger r = table.multiply(k).x.mod(n);
+            if (r.signum() == 0) {
+                continue;
+            }
+            // s = k^-1 (e + rd) mod n
+            BigInteger s = k.modInverse(n).multiply(e.add(r.multiply(d))).mod(n);
+            if (s.signum() == 0) {
+                continue;
+            }
+            return new ECDSASignature(r, s);
+        }
+    }
+
+    /**
+     * Verify the signature of the message.
+     * 
+     * @param message
+     * @param signature
+     * @param key
+     * @return 
+     */
+    public static boolean verify(byte[] message, ECDSASignature signature, PublicKey key) {
+        EllipticCurve c = key.getCurve();
+        BigInteger n = getOrder(c);
+        BigInteger r = signature.getR();
+        BigInteger s = signature.getS();
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(n) >= 0) {
+            return false;
+        }
+        ECPoint q = key.getKey();
+        if (q == null || q.isPointOfInfinity() || !c.isPointInsideCurve(q)) {
+            return false;
+        }
+
+        BigInteger e = HmacDrbg.bits2int(hash(message, n), n.bitLength());
+        BigInteger w = s.modInverse(n);
+        BigInteger u1 = e.multiply(w).mod(n);
+        BigInteger u2 = r.multiply(w).mod(n);
+        // X = u1 * G + u2 * Q
+        ECPoint x = c.getFixedBaseTable().multiplyAdd(u1, u2, q);
+        if (x.isPointOfInfinity()) {
+            return false;
+        }
+        return x.x.mod(n).equals(r);
+    }
+
+    /**
+     * Sign all the messages with deterministic nonces, on the workers of
+     * ECC.getParallelEngine().
+     * 
+     * @param messages
+     * @param key
+     * @return the signatures, in the order of the messages
+     */
+    public static ECDSASignature[] signAll(List<byte[]> messages, PrivateKey key) {
+        return signAll(ECC.getParallelEngine(), messages, key, DEFAULT_NONCE_SOURCE);
+    }
+
+    /**
+     * Sign all the messages with nonces from the given source, on the
+     * workers of ECC.getParallelEngine().
+     * 
+     * @param messages
+     * @param key
+     * @param source
+     * @return the signatures, in the order of the messages
+     */
+    public static ECDSASignature[] signAll(List<byte[]> messages, PrivateKey key, NonceSource source) {
+        return signAll(ECC.getParallelEngine(), messages, key, source);
+    }
+
+    /**
+     * Sign all the messages with nonces from the given source, split among
+     * the workers of the given engine.
+     * 
+     * @param engine
+     * @param messages
+     * @param key
+     * @param source
+     * @return the signatures, in the order of the messages
+     */
+    public static ECDSASignature[] signAll(ECCEngine engine, final List<byte[]> messages, final PrivateKey key, final NonceSource source) {
+        // Build the table once, rather than racing for it in every worker.
+        key.getCurve().getFixedBaseTable();
+        final ECDSASignature[] signatures = new ECDSASignature[messages.size()];
+        engine.runInParallel(signatures.length, 1, new ECCEngine.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    signatures[i] = sign(messages.get(i), key, source);
+                }
+            }
+        });
+        return signatures;
+    }
+
+    /**
+     * Verify the signatures of all the messages, on the workers of
+     * ECC.getParallelEngine().
+     * 
+     * @param messages
+     * @param signatures
+     * @param key
+     * @return for each message whether its signature is valid
+     */
+    public static boolean[] verifyAll(List<byte[]> messages, List<ECDSASignature> signatures, PublicKey key) {
+        return verifyAll(ECC.getParallelEngine(), messages, signatures, key);
+    }
+
+    /**
+     * Verify the signatures of all the messages, split among the workers of
+     * the given engine.
+     * 
+     * @param engine
+     * @param messages
+     * @param signatures
+     * @param key
+     * @return for each message whether its signature is valid
+     */
+    public static boolean[] verifyAll(ECCEngine engine, final List<byte[]> messages, final List<ECDSASignature> signatures, final PublicKey key) {
+        if (messages.size() != signatures.size()) {
+            throw new IllegalArgumentException("There should be exactly one signature per message");
+        }
+        key.getCurve().getFixedBaseTable();
+        final boolean[] valid = new boolean[messages.size()];
+        engine.runInParallel(valid.length, 1, new ECCEngine.RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    valid[i] = verify(messages.get(i), signatures.get(i), key);
+                }
+            }
+        });
+        return valid;
+    }
+
+    static BigInteger getOrder(EllipticCurve c) {
+        BigInteger n = c.getOrder();
+        if (n == null) {
+            throw new IllegalArgumentException("The order of the base point of the curve is not known");
+        }
+        return n;
+    }
+
+    static byte[] hash(byte[] message, BigInteger n) {
+        String algorithm;
+        if (n.bitLength() <= 256) {
+            algorithm = "SHA-256";
+        } else if (n.bitLength() <= 384) {
+            algorithm = "SHA-384";
+        } else {
+            algorithm = "SHA-512";
+        }
+        try {
+            return MessageDigest.getInstance(algorithm).digest(message);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * An ECDSA signature, the pair of integers (r, s) modulo the order n of the
+ * base point.
+ */
+public class ECDSASignature {
+    private final BigInteger r;
+    private final BigInteger s;
+
+    public ECDSASignature(BigInteger r, BigInteger s) {
+        this.r = r;
+        this.s = s;
+    }
+
+    public BigInteger getR() {
+        return r;
+    }
+
+    public BigInteger getS() {
+        return s;
+    }
+
+    /**
+     * Represent the signature as r || s, each written big-endian in exactly
+     * as many bytes as n needs.
+     * 
+     * @param c
+     * @return 
+     */
+    public byte[] toByteArray(EllipticCurve c) {
+        int length = (c.getOrder().bitLength() + 7) / 8;
+        byte[] result = new byte[length * 2];
+        write(r, result, 0, length);
+        write(s, result, length, length);
+        return result;
+    }
+
+    /**
+     * Read a signature written by toByteArray.
+     * 
+     * @param bytes
+     * @param c
+     * @return 
+     */
+    public static ECDSASignature fromByteArray(byte[] bytes, EllipticCurve c) {
+        int length = (c.getOrder().bitLength() + 7) / 8;
+        if (bytes.length != length * 2) {
+            throw new IllegalArgumentException("The length of the signature is not valid");
+        }
+        byte[] r = new byte[length];
+        byte[] s = new byte[length];
+        System.arraycopy(bytes, 0, r, 0, length);
+        System.arraycopy(bytes, length, s, 0, length);
+        return new ECDSASignature(new BigInteger(1, r), new BigInteger(1, s));
+    }
+
+    private static void write(BigInteger value, byte[] out, int offset, int length) {
+        byte[] bytes = value.toByteArray();
+        int count = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - count, out, offset + length - count, count);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + r.toString(16) + ", " + s.toString(16) + ")";
+    }
+}
@@ -0,0 +1,427 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class represents a twisted Edwards curve, a x^2 + y^2 = 1 + d x^2 y^2
+ * over the prime field F_p, with its points in extended coordinates (see
+ * EdwardsPoint).
+ *
+ * When a is a square and d is not (as on Ed25519), the addition law of Hisil,
+ * Wong, Carter and Dawson is complete: the same formula adds any two points,
+ * equal, opposite or neutral, so there is none of the case analysis of
+ * EllipticCurve.add. It costs 8 multiplications when a = -1, and 9 plus one by
+ * a otherwise. A dedicated doubling, 4 multiplications and 4 squarings, is
+ * used where the scalar multiplications know they double; add would give the
+ * same result.
+ *
+ * Since no addition needs a branch, the scalar multiplications add a table
+ * entry for every window of the scalar, the neutral element for a zero digit,
+ * and the multiples of the base point are precomputed like in
+ * FixedBaseTable, so that k * G takes additions only.
+ *
+ * Only the scalars of the base point are reduced modulo n. The other points
+ * are multiplied by the whole scalar, since they need not lie in the subgroup
+ * of order n: with a cofactor of 8, n * P is only the neutral element for the
+ * points of that subgroup, which is what a subgroup check relies on.
+ */
+public class EdwardsCurve {
+
+    private final String name;
+    private final BigInteger a;
+    private final BigInteger d;
+    private final BigInteger p;
+    private final ECPoint g;
+    private final BigInteger n;
+    private final BigInteger h;
+
+    // 2d, used by the addition for a = -1.
+    private final BigInteger d2;
+    private final boolean aIsMinusOne;
+
+    // The width of the windows of the scalar multiplications.
+    private static final int WINDOW_WIDTH = 4;
+
+    // baseTable[i][j] = j * 2^(WINDOW_WIDTH * i) * g, built on first use.
+    private volatile EdwardsPoint[][] baseTable = null;
+
+    /**
+     * Create the curve a x^2 + y^2 = 1 + d x^2 y^2 over F_p.
+     *
+     * @param name
+     * @param a
+     * @param d
+     * @param p
+     * @param g the base point, in affine coordinates
+     * @param n the order of the base point
+     * @param h the cofactor
+     */
+    public EdwardsCurve(String name, BigInteger a, BigInteger d, BigInteger p, ECPoint g, BigInteger n, BigInteger h) {
+        this.name = name;
+        this.a = a.mod(p);
+        this.d = d.mod(p);
+        this.p = p;
+        if (this.a.signum() == 0 || this.d.signum() == 0 || this.a.equals(this.d)) {
+            throw new IllegalArgumentException("a and d should be distinct and non-zero");
+        }
+        this.g = new ECPoint(g.x.mod(p), g.y.mod(p));
+        this.n = n;
+        this.h = h;
+        this.d2 = this.d.shiftLeft(1).mod(p);
+        this.aIsMinusOne = this.a.equals(p.subtract(BigInteger.ONE));
+        if (!isPointInsideCurve(this.g)) {
+            throw new IllegalArgumentException("The base point is not on the curve");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigInteger getA() {
+        return a;
+    }
+
+    public BigInteger getD() {
+        return d;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public ECPoint getBasePoint() {
+        return g;
+    }
+
+    public BigInteger getOrder() {
+        return n;
+    }
+
+    public BigInteger getCofactor() {
+        return h;
+    }
+
+    /**
+     * Return whether the affine point satisfies the equation of the curve.
+     *
+     * @param point
+     * @return
+     */
+    public boolean isPointInsideCurve(ECPoint point) {
+        BigInteger xx = point.x.multiply(point.x).mod(p);
+        BigInteger yy = point.y.multiply(point.y).mod(p);
+        BigInteger left = a.multiply(xx).add(yy);
+        BigInteger right = BigInteger.ONE.add(d.multiply(xx).multiply(yy));
+        return left.subtract(right).mod(p).signum() == 0;
+    }
+
+    public EdwardsPoint toExtended(ECPoint point) {
+        BigInteger x = point.x.mod(p);
+        BigInteger y = point.y.mod(p);
+        return new EdwardsPoint(x, y, BigInteger.ONE, x.multiply(y).mod(p));
+    }
+
+    public ECPoint toAffine(EdwardsPoint point) {
+        BigInteger zInverse = point.Z.modInverse(p);
+        return new ECPoint(point.X.multiply(zInverse).mod(p), point.Y.multiply(zInverse).mod(p));
+    }
+
+    /**
+     * Convert the points to affine coordinates with a single modular
+     * inversion (Montgomery's trick).
+     *
+     * @param points
+     * @return
+     */
+    public ECPoint[] toAffine(EdwardsPoint[] points) {
+        ECPoint[] result = new ECPoint[points.length];
+        if (points.length == 0) {
+            return result;
+        }
+        // prefix[i] = Z_0 * ... * Z_i
+        BigInteger[] prefix = new BigInteger[points.length];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < points.length; ++i) {
+            product = product.multiply(points[i].Z).mod(p);
+            prefix[i] = product;
+        }
+        BigInteger inverse = product.modInverse(p);
+        for (int i = points.length - 1; i >= 0; --i) {
+            BigInteger zInverse = i > 0 ? inverse.multiply(prefix[i - 1]).mod(p) : inverse;
+            inverse = inverse.multiply(points[i].Z).mod(p);
+            result[i] = new ECPoint(points[i].X.multiply(zInverse).mod(p), points[i].Y.multiply(zInverse).mod(p));
+        }
+        return result;
+    }
+
+    /**
+     * Return whether the two points are the same affine point.
+     *
+     * @param p1
+     * @param p2
+     * @return
+     */
+    public boolean equals(EdwardsPoint p1, EdwardsPoint p2) {
+        return p1.X.multiply(p2.Z).subtract(p2.X.multiply(p1.Z)).mod(p).signum() == 0
+                && p1.Y.multiply(p2.Z).subtract(p2.Y.multiply(p1.Z)).mod(p).signum() == 0;
+    }
+
+    public EdwardsPoint negate(EdwardsPoint point) {
+        return new EdwardsPoint(p.subtract(point.X).mod(p), point.Y, point.Z, p.subtract(point.T).mod(p));
+    }
+
+    /**
+     * Return p1 + p2, for any two points.
+     *
+     * @param p1
+     * @param p2
+     * @return
+     */
+    public EdwardsPoint add(EdwardsPoint p1, EdwardsPoint p2) {
+        if (aIsMinusOne) {
+            // add-2008-hwcd-3: 8M.
+            BigInteger A = p1.Y.subtract(p1.X).multiply(p2.Y.subtract(p2.X)).mod(p);
+            BigInteger B = p1.Y.add(p1.X).multiply(p2.Y.add(p2.X)).mod(p);
+            BigInteger C = p1.T.multiply(d2).mod(p).multiply(p2.T).mod(p);
+            BigInteger D = p1.Z.multiply(p2.Z).shiftLeft(1).mod(p);
+            BigInteger E = B.subtract(A);
+            BigInteger F = D.subtract(C);
+            BigInteger G = D.add(C);
+            BigInteger H = B.add(A);
+            return product(E, F, G, H);
+        }
+        // add-2008-hwcd: 9M and one multiplication by a.
+        BigInteger A = p1.X.multiply(p2.X).mod(p);
+        BigInteger B = p1.Y.multiply(p2.Y).mod(p);
+        BigInteger C = p1.T.multiply(d).mod(p).multiply(p2.T).mod(p);
+        BigInteger D = p1.Z.multiply(p2.Z).mod(p);
+        BigInteger E = p1.X.add(p1.Y).multiply(p2.X.add(p2.Y)).subtract(A).subtract(B);
+        BigInteger F = D.subtract(C);
+        BigInteger G = D.add(C);
+        BigInteger H = B.subtract(a.multiply(A));
+        return product(E, F, G, H);
+    }
+
+    /**
+     * Return 2 * p1, with dbl-2008-hwcd: 4M and 4S.
+     *
+     * @param p1
+     * @return
+     */
+    public EdwardsPoint twice(EdwardsPoint p1) {
+        BigInteger A = p1.X.multiply(p1.X).mod(p);
+        BigInteger B = p1.Y.multiply(p1.Y).mod(p);
+        BigInteger C = p1.Z.multiply(p1.Z).shiftLeft(1).mod(p);
+        BigInteger D = aIsMinusOne ? p.subtract(A) : a.multiply(A).mod(p);
+        BigInteger sum = p1.X.add(p1.Y);
+        BigInteger E = sum.multiply(sum).subtract(A).subtract(B);
+        BigInteger G = D.add(B);
+        BigInteger F = G.subtract(C);
+        BigInteger H = D.subtract(B);
+        return product(E, F, G, H);
+    }
+
+    /**
+     * The last step shared by the formulas: (EF, GH, FG, EH).
+     */
+    private EdwardsPoint product(BigInteger E, BigInteger F, BigInteger G, BigInteger H) {
+        return new EdwardsPoint(
+                E.multiply(F).mod(p),
+                G.multiply(H).mod(p),
+                F.multiply(G).mod(p),
+                E.multiply(H).mod(p));
+    }
+
+    /**
+     * Return k * point, with windows of WINDOW_WIDTH bits. The scalar is not
+     * reduced, so that the result is right for any point of the curve.
+     *
+     * @param point
+     * @param k
+     * @return
+     */
+    public EdwardsPoint multiply(EdwardsPoint point, BigInteger k) {
+        if (k.signum() < 0) {
+            return multiply(negate(point), k.negate());
+        }
+        EdwardsPoint[] table = multiples(point);
+        EdwardsPoint result = EdwardsPoint.IDENTITY;
+        for (int i = windows(k.bitLength()) - 1; i >= 0; --i) {
+            for (int j = 0; j < WINDOW_WIDTH; ++j) {
+                result = twice(result);
+            }
+            result = add(result, table[digit(k, i)]);
+        }
+        return result;
+    }
+
+    public ECPoint multiply(ECPoint point, BigInteger k) {
+        return toAffine(multiply(toExtended(point), k));
+    }
+
+    /**
+     * Return k * G with the precomputed multiples of G: one addition per
+     * window of the scalar, and no doubling.
+     *
+     * @param k
+     * @return
+     */
+    public EdwardsPoint multiplyBase(BigInteger k) {
+        k = reduce(k);
+        EdwardsPoint[][] table = getBaseTable();
+        if (k.bitLength() > table.length * WINDOW_WIDTH) {
+            return multiply(toExtended(g), k);
+        }
+        EdwardsPoint result = EdwardsPoint.IDENTITY;
+        for (int i = 0; i < table.length; ++i) {
+            result = add(result, table[i][digit(k, i)]);
+        }
+        return result;
+    }
+
+    /**
+     * Return k * G + l * Q, sharing the doublings between the two scalars
+     * (Straus' method), as signature verification needs. Only k is reduced,
+     * as Q need not lie in the subgroup of G.
+     *
+     * @param k
+     * @param l
+     * @param q
+     * @return
+     */
+    public EdwardsPoint multiplyAdd(BigInteger k, BigInteger l, EdwardsPoint q) {
+        k = reduce(k);
+        if (l.signum() < 0) {
+            q = negate(q);
+            l = l.negate();
+        }
+        EdwardsPoint[] gTable = getBaseTable()[0];
+        EdwardsPoint[] qTable = multiples(q);
+        EdwardsPoint result = EdwardsPoint.IDENTITY;
+        for (int i = windows(Math.max(k.bitLength(), l.bitLength())) - 1; i >= 0; --i) {
+            for (int j = 0; j < WINDOW_WIDTH; ++j) {
+                result = twice(result);
+            }
+            result = add(result, gTable[digit(k, i)]);
+            result = add(result, qTable[digit(l, i)]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the Montgomery curve birationally equivalent to this one,
+     * B v^2 = u^3 + A u^2 + u with A = 2 (a + d) / (a - d) and
+     * B = 4 / (a - d), where u = (1 + y) / (1 - y). For Ed25519 it has the
+     * same A and base u-coordinate as MontgomeryCurve.CURVE_25519.
+     *
+     * @return
+     */
+    public MontgomeryCurve toMontgomery() {
+        BigInteger inverse = a.subtract(d).modInverse(p);
+        BigInteger A = a.add(d).shiftLeft(1).multiply(inverse).mod(p);
+        BigInteger B = inverse.shiftLeft(2).mod(p);
+        return new MontgomeryCurve(name, A, B, p, toMontgomeryU(g), n, h);
+    }
+
+    /**
+     * Return the u-coordinate of the point on the curve of toMontgomery,
+     * (1 + y) / (1 - y); the neutral element maps to 0.
+     *
+     * @param point
+     * @return
+     */
+    public BigInteger toMontgomeryU(ECPoint point) {
+        BigInteger denominator = BigInteger.ONE.subtract(point.y).mod(p);
+        if (denominator.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        return BigInteger.ONE.add(point.y).multiply(denominator.modInverse(p)).mod(p);
+    }
+
+    /**
+     * Reduce a scalar of the base point out of [0, n) modulo n.
+     */
+    private BigInteger reduce(BigInteger k) {
+        if (n != null && (k.signum() < 0 || k.compareTo(n) >= 0)) {
+            return k.mod(n);
+        }
+        if (k.signum() < 0) {
+            throw new IllegalArgumentException("The scalar should not be negative");
+        }
+        return k;
+    }
+
+    /**
+     * Return j * point for 0 <= j < 2^WINDOW_WIDTH.
+     */
+    private EdwardsPoint[] multiples(EdwardsPoint point) {
+        EdwardsPoint[] table = new EdwardsPoint[1 << WINDOW_WIDTH];
+        table[0] = EdwardsPoint.IDENTITY;
+        table[1] = point;
+        for (int j = 2; j < table.length; ++j) {
+            table[j] = (j & 1) == 0 ? twice(table[j / 2]) : add(table[j - 1], point);
+        }
+        return table;
+    }
+
+    private EdwardsPoint[][] getBaseTable() {
+        EdwardsPoint[][] table = baseTable;
+        if (table == null) {
+            synchronized (this) {
+                table = baseTable;
+                if (table == null) {
+                    int bits = n != null ? n.bitLength() : p.bitLength();
+                    table = new EdwardsPoint[windows(bits)][];
+                    EdwardsPoint base = toExtended(g);
+                    for (int i = 0; i < table.length; ++i) {
+                        // Normalized to Z = 1, so that the entries are
+                        // smaller to multiply.
+                        EdwardsPoint[] multiples = multiples(base);
+                        ECPoint[] affine = toAffine(multiples);
+                        for (int j = 0; j < multiples.length; ++j) {
+                            multiples[j] = toExtended(affine[j]);
+                        }
+                        table[i] = multiples;
+                        for (int j = 0; j < WINDOW_WIDTH; ++j) {
+                            base = twice(base);
+                        }
+                    }
+                    baseTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static int windows(int bits) {
+        return (bits + WINDOW_WIDTH - 1) / WINDOW_WIDTH;
+    }
+
+    private static int digit(BigInteger k, int i) {
+        int digit = 0;
+        int offset = i * WINDOW_WIDTH;
+        for (int j = WINDOW_WIDTH - 1; j >= 0; --j) {
+            digit = (digit << 1) | (k.testBit(offset + j) ? 1 : 0);
+        }
+        return digit;
+    }
+
+    /**
+     * Ed25519 of RFC 8032: -x^2 + y^2 = 1 - (121665 / 121666) x^2 y^2 over
+     * 2^255 - 19, with the base point of y = 4 / 5 and even x, of prime order
+     * n, and the cofactor 8.
+     */
+    public static final EdwardsCurve ED25519 = new EdwardsCurve(
+            "Ed25519",
+            BigInteger.ONE.negate(),
+            BigInteger.valueOf(-121665).multiply(BigInteger.valueOf(121666).modInverse(Field25519.P)),
+            Field25519.P,
+            new ECPoint(
+                    new BigInteger("15112221349535400772501151409588531511454012693041857206046113283949847762202"),
+                    new BigInteger("46316835694926478169428394003475163141307993866256225615783033603165251855960")
+            ),
+            BigInteger.ONE.shiftLeft(252).add(new BigInteger("27742317777372353535851937790883648493")),
+            BigInteger.valueOf(8)
+    );
+}
@@ -0,0 +1,33 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class represents a point of a twisted Edwards curve in extended
+ * coordinates. The quadruple (X, Y, Z, T) stands for the affine point
+ * (X / Z, Y / Z), with T = XY / Z.
+ *
+ * Unlike the other models, the neutral element is an ordinary point, (0, 1),
+ * so no point needs a special case. The arithmetic is implemented in
+ * EdwardsCurve, which also converts the points back to ECPoint.
+ */
+public class EdwardsPoint {
+    public final BigInteger X;
+    public final BigInteger Y;
+    public final BigInteger Z;
+    public final BigInteger T;
+
+    public EdwardsPoint(BigInteger X, BigInteger Y, BigInteger Z, BigInteger T) {
+        this.X = X;
+        this.Y = Y;
+        this.Z = Z;
+        this.T = T;
+    }
+
+    public static final EdwardsPoint IDENTITY = new EdwardsPoint(BigInteger.ZERO, BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO);
+
+    @Override
+    public String toString() {
+        return "(" + X.toString() + " : " + Y.toString() + " : " + Z.toString() + " : " + T.toString() + ")";
+    }
+}
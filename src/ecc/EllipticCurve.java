@@ -25,13 +25,47 @@ public class EllipticCurve {
     // Optional attribute, the base point g.
     private ECPoint g = null;
     
+    // Optional attribute, the name of the curve (e.g. "NIST P-192").
+    private String name = null;
+    
+    // Optional attribute, the order n of the base point g.
+    private BigInteger n = null;
+    
+    // Optional attribute, the cofactor h = #E / n.
+    private BigInteger h = null;
+    
+    // The number of points #E of the curve, once counted.
+    private BigInteger pointCount = null;
+    
+    // The standard curve with the same parameters and base point as this
+    // one, if any. It is looked up once, and shares its order and
+    // precomputations with this curve.
+    private EllipticCurve standardEquivalent = null;
+    private boolean standardEquivalentResolved = false;
+    
+    // The precomputed multiples of g, built on first use.
+    private volatile FixedBaseTable fixedBaseTable = null;
+    
+    // The primitive long arithmetic used by add and multiply when p is below
+    // 2^62, null for larger curves.
+    private final SmallEllipticCurve small;
+    
     // some BigInteger constants that might help us in some calculations
     private static BigInteger THREE = new BigInteger("3");
     
+    // The width of the NAF used by multiplyJacobian, and the number of odd
+    // multiples it precomputes.
+    private static final int WNAF_WIDTH = 4;
+    private static final int WNAF_TABLE_SIZE = 1 << (WNAF_WIDTH - 2);
+    
+    // The small primes removed from #E by computeOrder are below this.
+    private static final int COFACTOR_TRIAL_LIMIT = 1 << 16;
+    
     public EllipticCurve(BigInteger a, BigInteger b, BigInteger p) {
         this.a = a;
         this.b = b;
         this.p = p;
+        this.small = createSmall(a, b, p);
     }
     
     public EllipticCurve(BigInteger a, BigInteger b, BigInteger p, ECPoint g) {
@@ -39,19 +73,44 @@ public class EllipticCurve {
         this.b = b;
         this.p = p;
         this.g = g;
+        this.small = createSmall(a, b, p);
+    }
+    
+    public EllipticCurve(String name, BigInteger a, BigInteger b, BigInteger p, ECPoint g, BigInteger n) {
+        this(name, a, b, p, g, n, null);
+    }
+    
+    public EllipticCurve(String name, BigInteger a, BigInteger b, BigInteger p, ECPoint g, BigInteger n, BigInteger h) {
+        this(a, b, p, g);
+        this.name = name;
+        this.n = n;
+        this.h = h;
+        this.standardEquivalentResolved = true;
     }
     
     public EllipticCurve(long a, long b, long p) {
-        this.a = BigInteger.valueOf(a);
-        this.b = BigInteger.valueOf(b);
-        this.p = BigInteger.valueOf(p);
+        this(BigInteger.valueOf(a), BigInteger.valueOf(b), BigInteger.valueOf(p));
     }
 
     public EllipticCurve(long a, long b, long p, ECPoint g) {
-        this.a = BigInteger.valueOf(a);
-        this.b = BigInteger.valueOf(b);
-        this.p = BigInteger.valueOf(p);
-        this.g = g;
+        this(BigInteger.valueOf(a), BigInteger.valueOf(b), BigInteger.valueOf(p), g);
+    }
+    
+    private static SmallEllipticCurve createSmall(BigInteger a, BigInteger b, BigInteger p) {
+        if (!SmallEllipticCurve.isSupported(p)) {
+            return null;
+        }
+        return new SmallEllipticCurve(a.mod(p).longValue(), b.mod(p).longValue(), p.longValue());
+    }
+    
+    /**
+     * Return the primitive long arithmetic of this curve, or null if p is not
+     * below 2^62.
+     * 
+     * @return 
+     */
+    public SmallEllipticCurve getSmallCurve() {
+        return small;
     }
     
     public ECPoint getBasePoint() {
@@ -60,6 +119,13 @@ public class EllipticCurve {
     
     public void setBasePoint(ECPoint g) {
         this.g = g;
+        synchronized (this) {
+            this.n = null;
+            this.h = null;
+            this.fixedBaseTable = null;
+            this.standardEquivalent = null;
+            this.standardEquivalentResolved = false;
+        }
     }
     
     public BigInteger getA() {
@@ -74,68 +140,279 @@ public class EllipticCurve {
         return p;
     }
     
+    /**
+     * Return the name of this curve. A curve without a name is looked up among
+     * the standard curves by its parameters (e.g. a curve read from a key
+     * file), and is otherwise called "custom-<bit length of p>".
+     * 
+     * @return 
+     */
+    public String getName() {
+        if (name == null) {
+            EllipticCurve standard = findStandardCurve(a, b, p);
+            name = standard != null ? standard.name : "custom-" + p.bitLength();
+        }
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Return the order n of the base point, that is the smallest n > 0 with
+     * n * g = INFINITY. It is known for the standard curves, and for curves
+     * with the same parameters and base point as one of them.
+     * 
+     * @return null if the order is not known.
+     */
+    public BigInteger getOrder() {
+        if (n == null) {
+            EllipticCurve standard = getStandardEquivalent();
+            if (standard != null) {
+                return standard.n;
+            }
+        }
+        return n;
+    }
+    
+    public void setOrder(BigInteger n) {
+        this.n = n;
+    }
+    
+    /**
+     * Return the cofactor h of the base point, the number of points of the
+     * curve divided by the order of the base point.
+     * 
+     * @return null if the cofactor is not known.
+     */
+    public BigInteger getCofactor() {
+        if (h == null) {
+            EllipticCurve standard = getStandardEquivalent();
+            if (standard != null) {
+                return standard.h;
+            }
+        }
+        return h;
+    }
+    
+    /**
+     * Return the number of points #E of the curve, the point of infinity
+     * included, counting them with PointCounting on the first call unless
+     * the order and cofactor are already known. The count is kept for later
+     * calls.
+     * 
+     * Counting takes seconds for a curve of 64 bits and minutes for one of
+     * 100 bits, so it is never done implicitly by the other methods.
+     * 
+     * @return
+     * @throws Exception 
+     */
+    public synchronized BigInteger countPoints() throws Exception {
+        if (pointCount == null) {
+            BigInteger order = getOrder();
+            BigInteger cofactor = getCofactor();
+            if (order != null && cofactor != null) {
+                pointCount = order.multiply(cofactor);
+            } else {
+                pointCount = PointCounting.countPoints(a, b, p);
+            }
+        }
+        return pointCount;
+    }
+    
+    /**
+     * Return the order of the base point, computing it from the number of
+     * points of the curve if it is not known yet, and set the order and
+     * cofactor of this curve.
+     * 
+     * The order of g divides #E, so it is found by removing from #E the
+     * small prime factors r for which (#E / r) * g is still the point of
+     * infinity. Unless what is left of #E after removing its small factors
+     * is 1 or a prime, the order cannot be told for sure, and null is
+     * returned.
+     * 
+     * @return null if the order could not be determined.
+     * @throws Exception 
+     */
+    public BigInteger computeOrder() throws Exception {
+        BigInteger order = getOrder();
+        if (order != null) {
+            return order;
+        }
+        if (g == null || g.isPointOfInfinity()) {
+            throw new IllegalStateException("The curve has no base point");
+        }
+        BigInteger count = countPoints();
+        order = count;
+        BigInteger rest = count;
+        for (int r = 2; r < COFACTOR_TRIAL_LIMIT && rest.compareTo(BigInteger.ONE) > 0; r = r == 2 ? 3 : r + 2) {
+            BigInteger prime = BigInteger.valueOf(r);
+            while (rest.mod(prime).signum() == 0) {
+                rest = rest.divide(prime);
+                BigInteger smaller = order.divide(prime);
+                if (multiply(g, smaller).isPointOfInfinity()) {
+                    order = smaller;
+                }
+            }
+        }
+        if (!rest.equals(BigInteger.ONE)) {
+            if (!rest.isProbablePrime(64)) {
+                return null;
+            }
+            BigInteger smaller = order.divide(rest);
+            if (multiply(g, smaller).isPointOfInfinity()) {
+                order = smaller;
+            }
+        }
+        synchronized (this) {
+            this.n = order;
+            this.h = count.divide(order);
+            this.fixedBaseTable = null;
+        }
+        return order;
+    }
+    
+    /**
+     * Return the table of precomputed multiples of the base point, building
+     * it on the first call. A curve equivalent to a standard curve shares the
+     * table of the standard curve.
+     * 
+     * @return 
+     */
+    public FixedBaseTable getFixedBaseTable() {
+        EllipticCurve standard = getStandardEquivalent();
+        if (standard != null && standard != this) {
+            return standard.getFixedBaseTable();
+        }
+        FixedBaseTable table = fixedBaseTable;
+        if (table == null) {
+            synchronized (this) {
+                table = fixedBaseTable;
+                if (table == null) {
+                    BigInteger order = getOrder();
+                    int bits = order != null ? order.bitLength() : p.bitLength() + 1;
+                    table = new FixedBaseTable(this, g, bits);
+                    fixedBaseTable = table;
+                }
+            }
+        }
+        return table;
+    }
+    
+    private synchronized EllipticCurve getStandardEquivalent() {
+        if (!standardEquivalentResolved) {
+            EllipticCurve standard = findStandardCurve(a, b, p);
+            if (standard != null && g != null && !g.isPointOfInfinity()
+                    && standard.g.x.equals(g.x.mod(p)) && standard.g.y.equals(g.y.mod(p))) {
+                standardEquivalent = standard;
+            }
+            standardEquivalentResolved = true;
+        }
+        return standardEquivalent;
+    }
+    
     // We provide some standard curves
     // Source: http://csrc.nist.gov/groups/ST/toolkit/documents/dss/NISTReCur.pdf
     
     public static final EllipticCurve NIST_P_192 = new EllipticCurve(
+            "NIST P-192",
             new BigInteger("-3"),
             new BigInteger("64210519e59c80e70fa7e9ab72243049feb8deecc146b9b1", 16),
             new BigInteger("6277101735386680763835789423207666416083908700390324961279"),
             new ECPoint(
                     new BigInteger("188da80eb03090f67cbf20eb43a18800f4ff0afd82ff1012", 16),
                     new BigInteger("07192b95ffc8da78631011ed6b24cdd573f977a11e794811", 16)
-            )
+            ),
+            new BigInteger("ffffffffffffffffffffffff99def836146bc9b1b4d22831", 16),
+            BigInteger.ONE
     );
 
     /**
      * Warning: p = 1 (mod 4), cannot be used throughout the algorithm.
      */
     public static final EllipticCurve NIST_P_224 = new EllipticCurve(
+            "NIST P-224",
             new BigInteger("-3"),
             new BigInteger("b4050a850c04b3abf54132565044b0b7d7bfd8ba270b39432355ffb4", 16),
             new BigInteger("26959946667150639794667015087019630673557916260026308143510066298881"),
             new ECPoint(
                     new BigInteger("b70e0cbd6bb4bf7f321390b94a03c1d356c21122343280d6115c1d21", 16),
                     new BigInteger("bd376388b5f723fb4c22dfe6cd4375a05a07476444d5819985007e34", 16)
-            )
+            ),
+            new BigInteger("ffffffffffffffffffffffffffff16a2e0b8f03e13dd29455c5c2a3d", 16),
+            BigInteger.ONE
     );
     
     public static final EllipticCurve NIST_P_256 = new EllipticCurve(
+            "NIST P-256",
             new BigInteger("-3"),
             new BigInteger("5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b", 16),
             new BigInteger("115792089210356248762697446949407573530086143415290314195533631308867097853951"),
             new ECPoint(
                     new BigInteger("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296", 16),
                     new BigInteger("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5", 16)
-            )
+            ),
+            new BigInteger("ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551", 16),
+            BigInteger.ONE
     );
     
     public static final EllipticCurve NIST_P_384 = new EllipticCurve(
+            "NIST P-384",
             new BigInteger("-3"),
             new BigInteger("b3312fa7e23ee7e4988e056be3f82d19181d9c6efe8141120314088f5013875ac656398d8a2ed19d2a85c8edd3ec2aef", 16),
             new BigInteger("39402006196394479212279040100143613805079739270465446667948293404245721771496870329047266088258938001861606973112319"),
             new ECPoint(
                     new BigInteger("aa87ca22be8b05378eb1c71ef320ad746e1d3b628ba79b9859f741e082542a385502f25dbf55296c3a545e3872760ab7", 16),
                     new BigInteger("3617de4a96262c6f5d9e98bf9292dc29f8f41dbd289a147ce9da3113b5f0b8c00a60b1ce1d7e819d7a431d7c90ea0e5f", 16)
-            )
+            ),
+            new BigInteger("ffffffffffffffffffffffffffffffffffffffffffffffffc7634d81f4372ddf581a0db248b0a77aecec196accc52973", 16),
+            BigInteger.ONE
     );
     
     public static final EllipticCurve NIST_P_521 = new EllipticCurve(
+            "NIST P-521",
             new BigInteger("-3"),
             new BigInteger("051953eb9618e1c9a1f929a21a0b68540eea2da725b99b315f3b8b489918ef109e156193951ec7e937b1652c0bd3bb1bf073573df883d2c34f1ef451fd46b503f00", 16),
             new BigInteger("6864797660130609714981900799081393217269435300143305409394463459185543183397656052122559640661454554977296311391480858037121987999716643812574028291115057151"),
             new ECPoint(
                     new BigInteger("c6858e06b70404e9cd9e3ecb662395b4429c648139053fb521f828af606b4d3dbaa14b5e77efe75928fe1dc127a2ffa8de3348b3c1856a429bf97e7e31c2e5bd66", 16),
                     new BigInteger("11839296a789a3bc0045c8a5fb42c7d1bd998f54449579b446817afbd17273e662c97ee72995ef42640c550b9013fad0761353c7086a272c24088be94769fd16650", 16)
-            )
+            ),
+            new BigInteger("1fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffa51868783bf2f966b7fcc0148f709a5d03bb5c9b8899c47aebb6fb71e91386409", 16),
+            BigInteger.ONE
     );
     
+    /**
+     * Find the standard curve with the given parameters.
+     * 
+     * @param a
+     * @param b
+     * @param p
+     * @return null if none of the standard curves matches.
+     */
+    public static EllipticCurve findStandardCurve(BigInteger a, BigInteger b, BigInteger p) {
+        EllipticCurve[] standardCurves = {NIST_P_192, NIST_P_224, NIST_P_256, NIST_P_384, NIST_P_521};
+        for (EllipticCurve curve : standardCurves) {
+            if (curve.p.equals(p)
+                    && curve.a.subtract(a).mod(p).signum() == 0
+                    && curve.b.subtract(b).mod(p).signum() == 0) {
+                return curve;
+            }
+        }
+        return null;
+    }
+    
     /**
      * This method will check whether a point belong to this curve or not.
      */
     public boolean isPointInsideCurve(ECPoint point) {
         if (point.isPointOfInfinity()) return true;
         
+        if (small != null) {
+            return small.isPointInsideCurve(small.toPoint(point));
+        }
+        
         return point.x.multiply(point.x).mod(p).add(a).multiply(point.x).add(b)
                 .mod(p).subtract(point.y.multiply(point.y)).mod(p)
                 .compareTo(BigInteger.ZERO) == 0;
@@ -158,6 +435,10 @@ public class EllipticCurve {
     public ECPoint add(ECPoint p1, ECPoint p2) {
         if (p1 == null || p2 == null) return null;
         
+        if (small != null) {
+            return small.toECPoint(small.add(small.toPoint(p1), small.toPoint(p2)));
+        }
+        
         if (p1.isPointOfInfinity()) {
             return new ECPoint(p2);
         } else if (p2.isPointOfInfinity()) {
@@ -168,7 +449,10 @@ public class EllipticCurve {
         // different when the two points are the same.
         BigInteger lambda;
         if (p1.x.subtract(p2.x).mod(p).compareTo(BigInteger.ZERO) == 0) {
-            if (p1.y.subtract(p2.y).mod(p).compareTo(BigInteger.ZERO) == 0) {
+            if (p1.y.mod(p).signum() == 0) {
+                // A point of order 2: the tangent is vertical.
+                return ECPoint.INFINTIY;
+            } else if (p1.y.subtract(p2.y).mod(p).compareTo(BigInteger.ZERO) == 0) {
                 // lambda = (3x1^2 + a) / (2y1)
                 BigInteger nom = p1.x.multiply(p1.x).multiply(THREE).add(a);
                 BigInteger den = p1.y.add(p1.y);
@@ -214,10 +498,325 @@ public class EllipticCurve {
      * @return 
      */
     public ECPoint multiply(ECPoint p1, BigInteger n) {
+        ECCEvents.Multiply event = new ECCEvents.Multiply();
+        event.begin();
+        
+        ECPoint result = multiplyDoubleAndAdd(p1, n);
+        
+        commitMultiplyEvent(event, n);
+        return result;
+    }
+    
+    /**
+     * Multiply p1 to a scalar n, using the width-4 NAF of n and Jacobian
+     * coordinates. The result equals multiply(p1, n), but only a single
+     * modular inversion is needed to get the affine result back (plus one for
+     * the precomputed odd multiples of p1).
+     * 
+     * @param p1
+     * @param n
+     * @return 
+     */
+    public ECPoint multiplyJacobian(ECPoint p1, BigInteger n) {
+        ECCEvents.Multiply event = new ECCEvents.Multiply();
+        event.begin();
+        
+        ECPoint result = toAffine(multiplyWindowNAF(p1, n));
+        
+        commitMultiplyEvent(event, n);
+        return result;
+    }
+    
+    private void commitMultiplyEvent(ECCEvents.Multiply event, BigInteger n) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.curve = getName();
+            event.scalarBits = n.bitLength();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Return n1 * p1 + n2 * p2 with a single chain of doublings (Shamir's
+     * trick), interleaving the width-4 NAFs of the two scalars. This costs
+     * about as much as one multiplication by the longer scalar.
+     * 
+     * @param n1
+     * @param p1
+     * @param n2
+     * @param p2
+     * @return 
+     */
+    public ECPoint multiplyAdd(BigInteger n1, ECPoint p1, BigInteger n2, ECPoint p2) {
+        ECCEvents.Multiply event = new ECCEvents.Multiply();
+        event.begin();
+        
+        if (n1.signum() < 0) {
+            n1 = n1.negate();
+            p1 = p1.negate();
+        }
+        if (n2.signum() < 0) {
+            n2 = n2.negate();
+            p2 = p2.negate();
+        }
+        ECPoint[] table1 = oddMultiples(p1);
+        ECPoint[] table2 = oddMultiples(p2);
+        int[] naf1 = windowNAF(n1, WNAF_WIDTH);
+        int[] naf2 = windowNAF(n2, WNAF_WIDTH);
+        
+        JacobianPoint result = JacobianPoint.INFINITY;
+        for (int i = Math.max(naf1.length, naf2.length) - 1; i >= 0; --i) {
+            result = doubleJacobian(result);
+            if (i < naf1.length && naf1[i] != 0 && table1 != null) {
+                result = addJacobian(result, naf1[i] > 0 ? table1[naf1[i] >> 1] : table1[-naf1[i] >> 1].negate());
+            }
+            if (i < naf2.length && naf2[i] != 0 && table2 != null) {
+                result = addJacobian(result, naf2[i] > 0 ? table2[naf2[i] >> 1] : table2[-naf2[i] >> 1].negate());
+            }
+        }
+        
+        commitMultiplyEvent(event, n1.max(n2));
+        return toAffine(result);
+    }
+    
+    /**
+     * Return p1, 3p1, 5p1, ... in affine form, or null for the point of
+     * infinity.
+     */
+    private ECPoint[] oddMultiples(ECPoint p1) {
+        if (p1.isPointOfInfinity()) {
+            return null;
+        }
+        JacobianPoint[] odd = new JacobianPoint[WNAF_TABLE_SIZE];
+        odd[0] = toJacobian(p1);
+        JacobianPoint twice = doubleJacobian(odd[0]);
+        for (int i = 1; i < odd.length; ++i) {
+            odd[i] = addJacobian(odd[i - 1], twice);
+        }
+        return toAffine(odd);
+    }
+    
+    JacobianPoint multiplyWindowNAF(ECPoint p1, BigInteger n) {
+        if (p1.isPointOfInfinity() || n.signum() == 0) {
+            return JacobianPoint.INFINITY;
+        }
+        if (n.signum() < 0) {
+            return multiplyWindowNAF(p1.negate(), n.negate());
+        }
+        
+        // Precompute the odd multiples p1, 3p1, 5p1, 7p1 in affine form, so
+        // that the main loop only needs mixed additions.
+        ECPoint[] table = oddMultiples(p1);
+        
+        int[] naf = windowNAF(n, WNAF_WIDTH);
+        JacobianPoint result = JacobianPoint.INFINITY;
+        for (int i = naf.length - 1; i >= 0; --i) {
+            result = doubleJacobian(result);
+            if (naf[i] > 0) {
+                result = addJacobian(result, table[naf[i] >> 1]);
+            } else if (naf[i] < 0) {
+                result = addJacobian(result, table[-naf[i] >> 1].negate());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Return the width-w non-adjacent form of a positive n, least significant
+     * digit first. Every non-zero digit is odd and lies in (-2^(w-1), 2^(w-1)).
+     * 
+     * @param n
+     * @param w
+     * @return 
+     */
+    static int[] windowNAF(BigInteger n, int w) {
+        int[] naf = new int[n.bitLength() + 1];
+        int window = 1 << w;
+        int length = 0;
+        BigInteger k = n;
+        while (k.signum() > 0) {
+            int digit = 0;
+            if (k.testBit(0)) {
+                digit = k.intValue() & (window - 1);
+                if (digit >= window >> 1) {
+                    digit -= window;
+                }
+                k = k.subtract(BigInteger.valueOf(digit));
+            }
+            naf[length++] = digit;
+            k = k.shiftRight(1);
+        }
+        int[] result = new int[length];
+        System.arraycopy(naf, 0, result, 0, length);
+        return result;
+    }
+    
+    /**
+     * Convert an affine point into Jacobian coordinates, with Z = 1.
+     * 
+     * @param p1
+     * @return 
+     */
+    public JacobianPoint toJacobian(ECPoint p1) {
+        if (p1.isPointOfInfinity()) {
+            return JacobianPoint.INFINITY;
+        }
+        return new JacobianPoint(p1.x.mod(p), p1.y.mod(p), BigInteger.ONE);
+    }
+    
+    /**
+     * Convert a point in Jacobian coordinates back to affine coordinates.
+     * 
+     * @param p1
+     * @return 
+     */
+    public ECPoint toAffine(JacobianPoint p1) {
+        if (p1.isPointOfInfinity()) {
+            return ECPoint.INFINTIY;
+        }
+        BigInteger zInverse = p1.Z.modInverse(p);
+        BigInteger zInverse2 = zInverse.multiply(zInverse).mod(p);
+        BigInteger x = p1.X.multiply(zInverse2).mod(p);
+        BigInteger y = p1.Y.multiply(zInverse2).mod(p).multiply(zInverse).mod(p);
+        return new ECPoint(x, y);
+    }
+    
+    /**
+     * Convert many points in Jacobian coordinates back to affine coordinates,
+     * sharing a single modular inversion among all of them (Montgomery's
+     * simultaneous inversion).
+     * 
+     * @param points
+     * @return 
+     */
+    public ECPoint[] toAffine(JacobianPoint[] points) {
+        ECPoint[] result = new ECPoint[points.length];
+        
+        // prefix[i] is the product of all the (non-zero) Z up to index i
+        BigInteger[] prefix = new BigInteger[points.length];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < points.length; ++i) {
+            if (!points[i].isPointOfInfinity()) {
+                product = product.multiply(points[i].Z).mod(p);
+            }
+            prefix[i] = product;
+        }
+        
+        BigInteger inverse = product.modInverse(p);
+        for (int i = points.length - 1; i >= 0; --i) {
+            if (points[i].isPointOfInfinity()) {
+                result[i] = ECPoint.INFINTIY;
+                continue;
+            }
+            // inverse is the inverse of prefix[i], so the inverse of Z_i is
+            // inverse * prefix[i - 1]
+            BigInteger zInverse = i > 0 ? inverse.multiply(prefix[i - 1]).mod(p) : inverse;
+            inverse = inverse.multiply(points[i].Z).mod(p);
+            
+            BigInteger zInverse2 = zInverse.multiply(zInverse).mod(p);
+            BigInteger x = points[i].X.multiply(zInverse2).mod(p);
+            BigInteger y = points[i].Y.multiply(zInverse2).mod(p).multiply(zInverse).mod(p);
+            result[i] = new ECPoint(x, y);
+        }
+        return result;
+    }
+    
+    /**
+     * Double a point in Jacobian coordinates (dbl-2007-bl, for any a).
+     * 
+     * @param p1
+     * @return 
+     */
+    public JacobianPoint doubleJacobian(JacobianPoint p1) {
+        if (p1.isPointOfInfinity() || p1.Y.signum() == 0) {
+            return JacobianPoint.INFINITY;
+        }
+        BigInteger xx = p1.X.multiply(p1.X).mod(p);
+        BigInteger yy = p1.Y.multiply(p1.Y).mod(p);
+        BigInteger yyyy = yy.multiply(yy).mod(p);
+        BigInteger zz = p1.Z.multiply(p1.Z).mod(p);
+        // S = 4 * X * YY
+        BigInteger s = p1.X.multiply(yy).shiftLeft(2).mod(p);
+        // M = 3 * XX + a * ZZ^2
+        BigInteger m = xx.multiply(THREE).add(a.multiply(zz.multiply(zz).mod(p))).mod(p);
+        BigInteger x3 = m.multiply(m).subtract(s.shiftLeft(1)).mod(p);
+        BigInteger y3 = m.multiply(s.subtract(x3)).subtract(yyyy.shiftLeft(3)).mod(p);
+        BigInteger z3 = p1.Y.multiply(p1.Z).shiftLeft(1).mod(p);
+        return new JacobianPoint(x3, y3, z3);
+    }
+    
+    /**
+     * Add two points in Jacobian coordinates (add-2007-bl).
+     * 
+     * @param p1
+     * @param p2
+     * @return 
+     */
+    public JacobianPoint addJacobian(JacobianPoint p1, JacobianPoint p2) {
+        if (p1.isPointOfInfinity()) {
+            return p2;
+        } else if (p2.isPointOfInfinity()) {
+            return p1;
+        }
+        BigInteger z1z1 = p1.Z.multiply(p1.Z).mod(p);
+        BigInteger z2z2 = p2.Z.multiply(p2.Z).mod(p);
+        BigInteger u1 = p1.X.multiply(z2z2).mod(p);
+        BigInteger u2 = p2.X.multiply(z1z1).mod(p);
+        BigInteger s1 = p1.Y.multiply(p2.Z).mod(p).multiply(z2z2).mod(p);
+        BigInteger s2 = p2.Y.multiply(p1.Z).mod(p).multiply(z1z1).mod(p);
+        return addJacobian(p1.Z.multiply(p2.Z).mod(p), u1, u2, s1, s2, p1);
+    }
+    
+    /**
+     * Add a point in Jacobian coordinates and an affine point (madd-2007-bl).
+     * 
+     * @param p1
+     * @param p2
+     * @return 
+     */
+    public JacobianPoint addJacobian(JacobianPoint p1, ECPoint p2) {
+        if (p2.isPointOfInfinity()) {
+            return p1;
+        } else if (p1.isPointOfInfinity()) {
+            return toJacobian(p2);
+        }
+        BigInteger z1z1 = p1.Z.multiply(p1.Z).mod(p);
+        BigInteger u2 = p2.x.multiply(z1z1).mod(p);
+        BigInteger s2 = p2.y.multiply(p1.Z).mod(p).multiply(z1z1).mod(p);
+        return addJacobian(p1.Z, p1.X, u2, p1.Y, s2, p1);
+    }
+    
+    // The common part of the two additions above, where the two points are
+    // (U1, S1) and (U2, S2) after bringing them to the same Z, and z1z2 is the
+    // product of their Z.
+    private JacobianPoint addJacobian(BigInteger z1z2, BigInteger u1, BigInteger u2, BigInteger s1, BigInteger s2, JacobianPoint p1) {
+        BigInteger h = u2.subtract(u1).mod(p);
+        BigInteger r = s2.subtract(s1).mod(p);
+        if (h.signum() == 0) {
+            if (r.signum() == 0) {
+                return doubleJacobian(p1);
+            } else {
+                return JacobianPoint.INFINITY;
+            }
+        }
+        BigInteger hh = h.multiply(h).mod(p);
+        BigInteger hhh = h.multiply(hh).mod(p);
+        BigInteger v = u1.multiply(hh).mod(p);
+        BigInteger x3 = r.multiply(r).subtract(hhh).subtract(v.shiftLeft(1)).mod(p);
+        BigInteger y3 = r.multiply(v.subtract(x3)).subtract(s1.multiply(hhh)).mod(p);
+        BigInteger z3 = z1z2.multiply(h).mod(p);
+        return new JacobianPoint(x3, y3, z3);
+    }
+    
+    private ECPoint multiplyDoubleAndAdd(ECPoint p1, BigInteger n) {
         if (p1.isPointOfInfinity()) {
             return ECPoint.INFINTIY;
         }
         
+        if (small != null) {
+            return small.toECPoint(small.multiply(small.toPoint(p1), n));
+        }
+        
         ECPoint result = ECPoint.INFINTIY;
         int bitLength = n.bitLength();
         for (int i = bitLength - 1; i >= 0; --i) {
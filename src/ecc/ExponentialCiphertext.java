@@ -0,0 +1,88 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * A cipher text of exponential El Gamal, the pair of points
+ * (C_1, C_2) = (kG, mG + kQ); see ExponentialElGamal.
+ */
+public class ExponentialCiphertext {
+    private final ECPoint c1;
+    private final ECPoint c2;
+
+    public ExponentialCiphertext(ECPoint c1, ECPoint c2) {
+        this.c1 = c1;
+        this.c2 = c2;
+    }
+
+    public ECPoint getC1() {
+        return c1;
+    }
+
+    public ECPoint getC2() {
+        return c2;
+    }
+
+    /**
+     * Represent the cipher text as C_1.x || C_1.y || C_2.x || C_2.y, each
+     * written big-endian in exactly as many bytes as p needs. The point of
+     * infinity, which a sum may yield, is written as (0, 0).
+     *
+     * @param c
+     * @return
+     */
+    public byte[] toByteArray(EllipticCurve c) {
+        int length = (c.getP().bitLength() + 7) / 8;
+        byte[] result = new byte[length * 4];
+        write(c1, result, 0, length);
+        write(c2, result, length * 2, length);
+        return result;
+    }
+
+    /**
+     * Read a cipher text written by toByteArray.
+     *
+     * @param bytes
+     * @param c
+     * @return
+     */
+    public static ExponentialCiphertext fromByteArray(byte[] bytes, EllipticCurve c) {
+        int length = (c.getP().bitLength() + 7) / 8;
+        if (bytes.length != length * 4) {
+            throw new IllegalArgumentException("The length of the cipher text is not valid");
+        }
+        return new ExponentialCiphertext(read(bytes, 0, length), read(bytes, length * 2, length));
+    }
+
+    private static void write(ECPoint point, byte[] out, int offset, int length) {
+        if (point.isPointOfInfinity()) {
+            return;
+        }
+        write(point.x, out, offset, length);
+        write(point.y, out, offset + length, length);
+    }
+
+    private static void write(BigInteger value, byte[] out, int offset, int length) {
+        byte[] bytes = value.toByteArray();
+        int count = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - count, out, offset + length - count, count);
+    }
+
+    private static ECPoint read(byte[] bytes, int offset, int length) {
+        byte[] x = new byte[length];
+        byte[] y = new byte[length];
+        System.arraycopy(bytes, offset, x, 0, length);
+        System.arraycopy(bytes, offset + length, y, 0, length);
+        BigInteger bx = new BigInteger(1, x);
+        BigInteger by = new BigInteger(1, y);
+        if (bx.signum() == 0 && by.signum() == 0) {
+            return ECPoint.INFINTIY;
+        }
+        return new ECPoint(bx, by);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + c1.toString(16) + ", " + c2.toString(16) + ")";
+    }
+}
@@ -0,0 +1,158 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * This class implements exponential El Gamal, an additively homomorphic
+ * encryption of small non-negative integers with the keys of ECC.
+ *
+ * The integer m is encrypted under Q = dG as (C_1, C_2) = (kG, mG + kQ).
+ * Adding two cipher texts point by point gives a cipher text of the sum of
+ * their integers, under the same key, so counters can be summed up without
+ * decrypting them. Decryption computes mG = C_2 - dC_1, then has to solve a
+ * discrete logarithm to get m back, which is only practical for m up to 2^40
+ * or so, with a BabyStepTable.
+ */
+public class ExponentialElGamal {
+
+    private static final NonceSource DEFAULT_NONCE_SOURCE = new DrbgNonceSource();
+
+    // The number of cipher texts each task of sum adds up.
+    private static final int CHUNK_SIZE = 1024;
+
+    public static ExponentialCiphertext encrypt(long m, PublicKey key) {
+        return encrypt(m, key, DEFAULT_NONCE_SOURCE);
+    }
+
+    /**
+     * Encrypt m, with the nonce k drawn from the given source.
+     *
+     * @param m a non-negative integer
+     * @param key
+     * @param source
+     * @return
+     */
+    public static ExponentialCiphertext encrypt(long m, PublicKey key, NonceSource source) {
+        if (m < 0) {
+            throw new IllegalArgumentException("m should not be negative");
+        }
+        EllipticCurve c = key.getCurve();
+        FixedBaseTable table = c.getFixedBaseTable();
+        BigInteger k = source.nextNonce(ECCEngine.scalarBound(c), null, null);
+        ECPoint c1 = table.multiply(k);
+        ECPoint c2 = table.multiplyAdd(BigInteger.valueOf(m), k, key.getKey());
+        return new ExponentialCiphertext(c1, c2);
+    }
+
+    /**
+     * Return a cipher text of the sum of the integers of a and b.
+     *
+     * @param c
+     * @param a
+     * @param b
+     * @return
+     */
+    public static ExponentialCiphertext add(EllipticCurve c, ExponentialCiphertext a, ExponentialCiphertext b) {
+        return new ExponentialCiphertext(c.add(a.getC1(), b.getC1()), c.add(a.getC2(), b.getC2()));
+    }
+
+    /**
+     * Return a cipher text of the sum of the integers of all the cipher
+     * texts, summed on the workers of ECC.getParallelEngine().
+     *
+     * @param c
+     * @param cipherTexts
+     * @return
+     */
+    public static ExponentialCiphertext sum(EllipticCurve c, List<ExponentialCiphertext> cipherTexts) {
+        return sum(ECC.getParallelEngine(), c, cipherTexts);
+    }
+
+    /**
+     * Return a cipher text of the sum of the integers of all the cipher
+     * texts.
+     *
+     * The cipher texts are split into chunks summed up by the workers of the
+     * engine, in Jacobian coordinates, then the sums of the chunks are added
+     * together; only the final sum is brought back to affine coordinates, so
+     * there are two modular inversions in all.
+     *
+     * @param engine
+     * @param c
+     * @param cipherTexts
+     * @return
+     */
+    public static ExponentialCiphertext sum(ECCEngine engine, final EllipticCurve c, final List<ExponentialCiphertext> cipherTexts) {
+        int chunks = (cipherTexts.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final JacobianPoint[][] sums = new JacobianPoint[chunks][];
+        engine.runInParallel(chunks, 1, new ECCEngine.RangeTask() {
+            @Override
+            public void run(int fromChunk, int toChunk) {
+                for (int chunk = fromChunk; chunk < toChunk; ++chunk) {
+                    int from = chunk * CHUNK_SIZE;
+                    int to = Math.min(cipherTexts.size(), from + CHUNK_SIZE);
+                    JacobianPoint c1 = JacobianPoint.INFINITY;
+                    JacobianPoint c2 = JacobianPoint.INFINITY;
+                    for (ExponentialCiphertext cipherText : cipherTexts.subList(from, to)) {
+                        c1 = c.addJacobian(c1, cipherText.getC1());
+                        c2 = c.addJacobian(c2, cipherText.getC2());
+                    }
+                    sums[chunk] = new JacobianPoint[] {c1, c2};
+                }
+            }
+        });
+        JacobianPoint[] total = {JacobianPoint.INFINITY, JacobianPoint.INFINITY};
+        for (JacobianPoint[] chunkSum : sums) {
+            total[0] = c.addJacobian(total[0], chunkSum[0]);
+            total[1] = c.addJacobian(total[1], chunkSum[1]);
+        }
+        ECPoint[] affine = c.toAffine(total);
+        return new ExponentialCiphertext(affine[0], affine[1]);
+    }
+
+    /**
+     * Return mG, the point the cipher text hides.
+     *
+     * The points of the cipher text are checked to be on the curve first, as
+     * multiplying a point of another curve by the private key would leak it.
+     *
+     * @param cipherText
+     * @param key
+     * @return
+     * @throws IllegalArgumentException if a point is not on the curve of the
+     *         key
+     */
+    public static ECPoint decryptToPoint(ExponentialCiphertext cipherText, PrivateKey key) {
+        EllipticCurve c = key.getCurve();
+        checkPoint(c, cipherText.getC1());
+        checkPoint(c, cipherText.getC2());
+        return c.subtract(cipherText.getC2(), c.multiplyJacobian(cipherText.getC1(), key.getKey()));
+    }
+
+    /**
+     * Decrypt the cipher text of an integer between 0 and max, looking mG up
+     * with the table.
+     *
+     * @param cipherText
+     * @param key
+     * @param table a table of the curve of the key
+     * @param max
+     * @return -1 if the integer is not between 0 and max.
+     */
+    public static long decrypt(ExponentialCiphertext cipherText, PrivateKey key, BabyStepTable table, long max) {
+        return table.log(decryptToPoint(cipherText, key), max);
+    }
+
+    private static void checkPoint(EllipticCurve c, ECPoint point) {
+        if (point.isPointOfInfinity()) {
+            return;
+        }
+        BigInteger p = c.getP();
+        if (point.x.signum() < 0 || point.x.compareTo(p) >= 0
+                || point.y.signum() < 0 || point.y.compareTo(p) >= 0
+                || !c.isPointInsideCurve(point)) {
+            throw new IllegalArgumentException("The cipher text is not valid");
+        }
+    }
+}
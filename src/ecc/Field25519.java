@@ -0,0 +1,226 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in the field of p = 2^255 - 19, for the Montgomery ladder of
+ * Curve25519 (see MontgomeryCurve).
+ *
+ * An element is a long[10] of limbs of alternately 26 and 25 bits, the limb i
+ * standing for limb[i] * 2^ceil(25.5 i). Products of limbs fit in a long, so
+ * a multiplication is 100 long products, with no BigInteger. The limbs above
+ * 2^255 are folded back multiplied by 19, since 2^255 = 19 (mod p), which
+ * replaces the division of a generic reduction. The product of two odd limbs
+ * lands one bit above the offset of its limb, so it is doubled.
+ *
+ * Every operation carries its result, leaving each limb non-negative and at
+ * most a few bits over its width; the results are reduced modulo p only by
+ * toBigInteger. The operations may write their result into one of their
+ * operands.
+ */
+final class Field25519 {
+
+    static final BigInteger P = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+
+    static final int LIMBS = 10;
+
+    // The offset of every limb, ceil(25.5 i).
+    private static final int[] OFFSETS = {0, 26, 51, 77, 102, 128, 153, 179, 204, 230};
+
+    // 2p, added before subtracting so that no limb gets negative.
+    private static final long TWO_P_0 = 2 * ((1L << 26) - 19);
+    private static final long TWO_P_EVEN = 2 * ((1L << 26) - 1);
+    private static final long TWO_P_ODD = 2 * ((1L << 25) - 1);
+
+    static long[] create() {
+        return new long[LIMBS];
+    }
+
+    static long[] fromBigInteger(BigInteger x) {
+        x = x.mod(P);
+        long[] h = new long[LIMBS];
+        for (int i = 0; i < LIMBS; ++i) {
+            int width = (i & 1) == 0 ? 26 : 25;
+            h[i] = x.shiftRight(OFFSETS[i]).longValue() & ((1L << width) - 1);
+        }
+        return h;
+    }
+
+    static BigInteger toBigInteger(long[] f) {
+        BigInteger x = BigInteger.ZERO;
+        for (int i = LIMBS - 1; i >= 0; --i) {
+            x = x.add(BigInteger.valueOf(f[i]).shiftLeft(OFFSETS[i]));
+        }
+        return x.mod(P);
+    }
+
+    static void one(long[] h) {
+        h[0] = 1;
+        for (int i = 1; i < LIMBS; ++i) {
+            h[i] = 0;
+        }
+    }
+
+    static void zero(long[] h) {
+        for (int i = 0; i < LIMBS; ++i) {
+            h[i] = 0;
+        }
+    }
+
+    static void copy(long[] h, long[] f) {
+        System.arraycopy(f, 0, h, 0, LIMBS);
+    }
+
+    static void add(long[] h, long[] f, long[] g) {
+        for (int i = 0; i < LIMBS; ++i) {
+            h[i] = f[i] + g[i];
+        }
+        carry(h);
+    }
+
+    static void subtract(long[] h, long[] f, long[] g) {
+        h[0] = f[0] - g[0] + TWO_P_0;
+        for (int i = 1; i < LIMBS; ++i) {
+            h[i] = f[i] - g[i] + ((i & 1) == 0 ? TWO_P_EVEN : TWO_P_ODD);
+        }
+        carry(h);
+    }
+
+    /**
+     * h = f * s, for 0 <= s < 2^32.
+     */
+    static void multiply(long[] h, long[] f, long s) {
+        for (int i = 0; i < LIMBS; ++i) {
+            h[i] = f[i] * s;
+        }
+        carry(h);
+    }
+
+    static void multiply(long[] h, long[] f, long[] g) {
+        long f0 = f[0], f1 = f[1], f2 = f[2], f3 = f[3], f4 = f[4];
+        long f5 = f[5], f6 = f[6], f7 = f[7], f8 = f[8], f9 = f[9];
+        long g0 = g[0], g1 = g[1], g2 = g[2], g3 = g[3], g4 = g[4];
+        long g5 = g[5], g6 = g[6], g7 = g[7], g8 = g[8], g9 = g[9];
+        long f1_2 = 2 * f1, f3_2 = 2 * f3, f5_2 = 2 * f5, f7_2 = 2 * f7, f9_2 = 2 * f9;
+        long g1_19 = 19 * g1, g2_19 = 19 * g2, g3_19 = 19 * g3, g4_19 = 19 * g4;
+        long g5_19 = 19 * g5, g6_19 = 19 * g6, g7_19 = 19 * g7, g8_19 = 19 * g8, g9_19 = 19 * g9;
+
+        long h0 = f0 * g0 + f1_2 * g9_19 + f2 * g8_19 + f3_2 * g7_19 + f4 * g6_19
+                + f5_2 * g5_19 + f6 * g4_19 + f7_2 * g3_19 + f8 * g2_19 + f9_2 * g1_19;
+        long h1 = f0 * g1 + f1 * g0 + f2 * g9_19 + f3 * g8_19 + f4 * g7_19
+                + f5 * g6_19 + f6 * g5_19 + f7 * g4_19 + f8 * g3_19 + f9 * g2_19;
+        long h2 = f0 * g2 + f1_2 * g1 + f2 * g0 + f3_2 * g9_19 + f4 * g8_19
+                + f5_2 * g7_19 + f6 * g6_19 + f7_2 * g5_19 + f8 * g4_19 + f9_2 * g3_19;
+        long h3 = f0 * g3 + f1 * g2 + f2 * g1 + f3 * g0 + f4 * g9_19
+                + f5 * g8_19 + f6 * g7_19 + f7 * g6_19 + f8 * g5_19 + f9 * g4_19;
+        long h4 = f0 * g4 + f1_2 * g3 + f2 * g2 + f3_2 * g1 + f4 * g0
+                + f5_2 * g9_19 + f6 * g8_19 + f7_2 * g7_19 + f8 * g6_19 + f9_2 * g5_19;
+        long h5 = f0 * g5 + f1 * g4 + f2 * g3 + f3 * g2 + f4 * g1
+                + f5 * g0 + f6 * g9_19 + f7 * g8_19 + f8 * g7_19 + f9 * g6_19;
+        long h6 = f0 * g6 + f1_2 * g5 + f2 * g4 + f3_2 * g3 + f4 * g2
+                + f5_2 * g1 + f6 * g0 + f7_2 * g9_19 + f8 * g8_19 + f9_2 * g7_19;
+        long h7 = f0 * g7 + f1 * g6 + f2 * g5 + f3 * g4 + f4 * g3
+                + f5 * g2 + f6 * g1 + f7 * g0 + f8 * g9_19 + f9 * g8_19;
+        long h8 = f0 * g8 + f1_2 * g7 + f2 * g6 + f3_2 * g5 + f4 * g4
+                + f5_2 * g3 + f6 * g2 + f7_2 * g1 + f8 * g0 + f9_2 * g9_19;
+        long h9 = f0 * g9 + f1 * g8 + f2 * g7 + f3 * g6 + f4 * g5
+                + f5 * g4 + f6 * g3 + f7 * g2 + f8 * g1 + f9 * g0;
+        h[0] = h0;
+        h[1] = h1;
+        h[2] = h2;
+        h[3] = h3;
+        h[4] = h4;
+        h[5] = h5;
+        h[6] = h6;
+        h[7] = h7;
+        h[8] = h8;
+        h[9] = h9;
+        carry(h);
+    }
+
+    static void square(long[] h, long[] f) {
+        multiply(h, f, f);
+    }
+
+    /**
+     * h = f^(2^n).
+     */
+    private static void square(long[] h, long[] f, int n) {
+        multiply(h, f, f);
+        for (int i = 1; i < n; ++i) {
+            multiply(h, h, h);
+        }
+    }
+
+    /**
+     * h = 1 / f = f^(p - 2), with the addition chain of 254 squarings and 11
+     * multiplications of Curve25519.
+     */
+    static void invert(long[] h, long[] f) {
+        long[] z2 = create();
+        long[] z9 = create();
+        long[] z11 = create();
+        long[] z2_5_0 = create();
+        long[] z2_10_0 = create();
+        long[] z2_20_0 = create();
+        long[] z2_50_0 = create();
+        long[] z2_100_0 = create();
+        long[] t = create();
+
+        square(z2, f);
+        square(t, z2, 2);
+        multiply(z9, t, f);
+        multiply(z11, z9, z2);
+        square(t, z11);
+        multiply(z2_5_0, t, z9);
+        square(t, z2_5_0, 5);
+        multiply(z2_10_0, t, z2_5_0);
+        square(t, z2_10_0, 10);
+        multiply(z2_20_0, t, z2_10_0);
+        square(t, z2_20_0, 20);
+        multiply(t, t, z2_20_0);
+        square(t, t, 10);
+        multiply(z2_50_0, t, z2_10_0);
+        square(t, z2_50_0, 50);
+        multiply(z2_100_0, t, z2_50_0);
+        square(t, z2_100_0, 100);
+        multiply(t, t, z2_100_0);
+        square(t, t, 50);
+        multiply(t, t, z2_50_0);
+        square(t, t, 5);
+        multiply(h, t, z11);
+    }
+
+    /**
+     * Swap f and g if swap is 1, leave them if it is 0, with the same
+     * operations either way.
+     */
+    static void conditionalSwap(long[] f, long[] g, int swap) {
+        long mask = -swap;
+        for (int i = 0; i < LIMBS; ++i) {
+            long t = mask & (f[i] ^ g[i]);
+            f[i] ^= t;
+            g[i] ^= t;
+        }
+    }
+
+    /**
+     * Carry the excess of every limb into the next one, and of the last one,
+     * times 19, into the first one.
+     */
+    private static void carry(long[] h) {
+        long c;
+        for (int i = 0; i < LIMBS - 1; ++i) {
+            int width = (i & 1) == 0 ? 26 : 25;
+            c = h[i] >> width;
+            h[i + 1] += c;
+            h[i] -= c << width;
+        }
+        c = h[9] >> 25;
+        h[0] += c * 19;
+        h[9] -= c << 25;
+        c = h[0] >> 26;
+        h[1] += c;
+        h[0] -= c << 26;
+    }
+}
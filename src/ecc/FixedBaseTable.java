@@ -0,0 +1,165 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class holds precomputed multiples of one fixed point P of a curve, so
+ * that k * P can be computed with additions only.
+ *
+ * The scalar is cut into windows of w bits, k = sum of d_i * 2^(w * i), and
+ * the table keeps d * 2^(w * i) * P for every window i and every digit
+ * 1 <= d < 2^w, in affine form. k * P is then the sum of one entry per
+ * non-zero digit: about bits / w mixed additions and no doubling at all,
+ * against bits doublings plus bits / 5 additions for the width-4 NAF.
+ *
+ * Scalars out of the range of the table are reduced modulo the order of the
+ * base point of the curve, so P should lie in the group generated by it (as
+ * any point does on the standard curves, which have a cofactor of 1).
+ *
+ * The table is immutable once built and can be shared by any number of
+ * threads.
+ */
+public class FixedBaseTable {
+
+    public static final int DEFAULT_WINDOW_WIDTH = 6;
+
+    private final EllipticCurve c;
+    private final ECPoint base;
+    private final int windowWidth;
+
+    // table[i][d] = d * 2^(windowWidth * i) * base, table[i][0] is unused.
+    private final ECPoint[][] table;
+
+    public FixedBaseTable(EllipticCurve c, ECPoint base, int bits) {
+        this(c, base, bits, DEFAULT_WINDOW_WIDTH);
+    }
+
+    /**
+     * Precompute the multiples of base for scalars of at most the given number
+     * of bits.
+     *
+     * @param c
+     * @param base
+     * @param bits
+     * @param windowWidth
+     */
+    public FixedBaseTable(EllipticCurve c, ECPoint base, int bits, int windowWidth) {
+        if (windowWidth < 1 || windowWidth > 16) {
+            throw new IllegalArgumentException("The window width should be between 1 and 16");
+        }
+        this.c = c;
+        this.base = base;
+        this.windowWidth = windowWidth;
+
+        int windows = (bits + windowWidth - 1) / windowWidth;
+        int digits = 1 << windowWidth;
+        JacobianPoint[] points = new JacobianPoint[windows * (digits - 1)];
+        JacobianPoint windowBase = c.toJacobian(base);
+        for (int i = 0; i < windows; ++i) {
+            JacobianPoint multiple = windowBase;
+            for (int d = 1; d < digits; ++d) {
+                points[i * (digits - 1) + d - 1] = multiple;
+                multiple = c.addJacobian(multiple, windowBase);
+            }
+            // multiple is now 2^windowWidth times the base of this window
+            windowBase = multiple;
+        }
+
+        // Bring the whole table to affine form with a single inversion.
+        ECPoint[] affine = c.toAffine(points);
+        table = new ECPoint[windows][digits];
+        for (int i = 0; i < windows; ++i) {
+            System.arraycopy(affine, i * (digits - 1), table[i], 1, digits - 1);
+        }
+    }
+
+    public EllipticCurve getCurve() {
+        return c;
+    }
+
+    public ECPoint getBase() {
+        return base;
+    }
+
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * The largest bit length of a scalar the table covers.
+     *
+     * @return
+     */
+    public int getBits() {
+        return windows() * windowWidth;
+    }
+
+    /**
+     * Return k * P.
+     *
+     * @param k
+     * @return
+     */
+    public ECPoint multiply(BigInteger k) {
+        return c.toAffine(multiplyJacobian(k));
+    }
+
+    /**
+     * Return k * P in Jacobian coordinates, leaving the normalization (and
+     * its inversion) to the caller, e.g. to normalize many results at once.
+     *
+     * @param k
+     * @return
+     */
+    public JacobianPoint multiplyJacobian(BigInteger k) {
+        return accumulate(JacobianPoint.INFINITY, k);
+    }
+
+    /**
+     * Return k * P + l * Q. The multiple of Q is computed with the width-4 NAF,
+     * then the multiple of P is added into the same Jacobian accumulator, so
+     * only one inversion is done at the end.
+     *
+     * @param k
+     * @param l
+     * @param q
+     * @return
+     */
+    public ECPoint multiplyAdd(BigInteger k, BigInteger l, ECPoint q) {
+        return c.toAffine(accumulate(c.multiplyWindowNAF(q, l), k));
+    }
+
+    /**
+     * Add k * P into the accumulator.
+     */
+    private JacobianPoint accumulate(JacobianPoint accumulator, BigInteger k) {
+        if (k.signum() < 0 || k.bitLength() > getBits()) {
+            BigInteger order = c.getOrder();
+            if (order == null) {
+                return c.addJacobian(accumulator, c.multiplyWindowNAF(base, k));
+            }
+            k = k.mod(order);
+            if (k.bitLength() > getBits()) {
+                return c.addJacobian(accumulator, c.multiplyWindowNAF(base, k));
+            }
+        }
+
+        JacobianPoint result = accumulator;
+        int windows = (k.bitLength() + windowWidth - 1) / windowWidth;
+        for (int i = 0; i < windows; ++i) {
+            int digit = 0;
+            int offset = i * windowWidth;
+            for (int j = windowWidth - 1; j >= 0; --j) {
+                digit = (digit << 1) | (k.testBit(offset + j) ? 1 : 0);
+            }
+            if (digit != 0) {
+                result = c.addJacobian(result, table[i][digit]);
+            }
+        }
+        return result;
+    }
+
+    private int windows() {
+        return table.length;
+    }
+}
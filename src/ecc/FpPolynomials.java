@@ -0,0 +1,362 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Arithmetic of polynomials over the prime field F_p, used by PointCounting.
+ *
+ * A polynomial is a BigInteger[] of coefficients in [0, p), lowest degree
+ * first, without leading zeros; the zero polynomial is the empty array.
+ *
+ * Large products are computed with Kronecker substitution: the coefficients
+ * are packed into one BigInteger, far enough apart for the coefficients of
+ * the product not to overlap, so that a single BigInteger multiplication
+ * (Karatsuba or Toom-Cook for such sizes) does all the work. Remainders
+ * modulo a fixed polynomial use the precomputed inverse of its reversal, so
+ * they cost two more products instead of a quadratic long division.
+ */
+final class FpPolynomials {
+
+    static final BigInteger[] ZERO = new BigInteger[0];
+
+    // Below this length, products are computed coefficient by coefficient.
+    private static final int KRONECKER_THRESHOLD = 24;
+
+    final BigInteger p;
+
+    FpPolynomials(BigInteger p) {
+        this.p = p;
+    }
+
+    static BigInteger[] normalize(BigInteger[] a) {
+        int length = a.length;
+        while (length > 0 && a[length - 1].signum() == 0) {
+            --length;
+        }
+        return length == a.length ? a : Arrays.copyOf(a, length);
+    }
+
+    static int degree(BigInteger[] a) {
+        return a.length - 1;
+    }
+
+    static boolean isZero(BigInteger[] a) {
+        return a.length == 0;
+    }
+
+    BigInteger[] constant(BigInteger c) {
+        c = c.mod(p);
+        return c.signum() == 0 ? ZERO : new BigInteger[]{c};
+    }
+
+    /**
+     * Return the polynomial x^n.
+     */
+    static BigInteger[] monomial(int n) {
+        BigInteger[] result = new BigInteger[n + 1];
+        Arrays.fill(result, BigInteger.ZERO);
+        result[n] = BigInteger.ONE;
+        return result;
+    }
+
+    BigInteger[] add(BigInteger[] a, BigInteger[] b) {
+        if (a.length < b.length) {
+            BigInteger[] t = a;
+            a = b;
+            b = t;
+        }
+        BigInteger[] result = a.clone();
+        for (int i = 0; i < b.length; ++i) {
+            BigInteger s = result[i].add(b[i]);
+            result[i] = s.compareTo(p) >= 0 ? s.subtract(p) : s;
+        }
+        return normalize(result);
+    }
+
+    BigInteger[] subtract(BigInteger[] a, BigInteger[] b) {
+        BigInteger[] result = Arrays.copyOf(a, Math.max(a.length, b.length));
+        for (int i = a.length; i < result.length; ++i) {
+            result[i] = BigInteger.ZERO;
+        }
+        for (int i = 0; i < b.length; ++i) {
+            BigInteger d = result[i].subtract(b[i]);
+            result[i] = d.signum() < 0 ? d.add(p) : d;
+        }
+        return normalize(result);
+    }
+
+    BigInteger[] scale(BigInteger[] a, BigInteger c) {
+        c = c.mod(p);
+        if (c.signum() == 0) {
+            return ZERO;
+        }
+        BigInteger[] result = new BigInteger[a.length];
+        for (int i = 0; i < a.length; ++i) {
+            result[i] = a[i].multiply(c).mod(p);
+        }
+        return result;
+    }
+
+    BigInteger[] multiply(BigInteger[] a, BigInteger[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return ZERO;
+        }
+        if (Math.min(a.length, b.length) < KRONECKER_THRESHOLD) {
+            return multiplySchoolbook(a, b);
+        }
+        return multiplyKronecker(a, b);
+    }
+
+    private BigInteger[] multiplySchoolbook(BigInteger[] a, BigInteger[] b) {
+        // The sums are reduced once at the end rather than after every term.
+        BigInteger[] result = new BigInteger[a.length + b.length - 1];
+        Arrays.fill(result, BigInteger.ZERO);
+        for (int i = 0; i < a.length; ++i) {
+            if (a[i].signum() == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; ++j) {
+                result[i + j] = result[i + j].add(a[i].multiply(b[j]));
+            }
+        }
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = result[i].mod(p);
+        }
+        return normalize(result);
+    }
+
+    private BigInteger[] multiplyKronecker(BigInteger[] a, BigInteger[] b) {
+        // Every coefficient of the product is below min(len) * p^2.
+        int bits = 2 * p.bitLength() + 32 - Integer.numberOfLeadingZeros(Math.min(a.length, b.length)) + 1;
+        int slot = (bits + 7) / 8;
+        BigInteger product = pack(a, slot).multiply(pack(b, slot));
+        return unpack(product, slot, a.length + b.length - 1);
+    }
+
+    private static BigInteger pack(BigInteger[] a, int slot) {
+        byte[] bytes = new byte[a.length * slot + 1];
+        for (int i = 0; i < a.length; ++i) {
+            byte[] c = a[i].toByteArray();
+            int length = Math.min(c.length, slot);
+            // Big-endian: the coefficient of x^i ends slot * i bytes before
+            // the end of the array.
+            int end = bytes.length - slot * i;
+            System.arraycopy(c, c.length - length, bytes, end - length, length);
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    private BigInteger[] unpack(BigInteger packed, int slot, int length) {
+        byte[] bytes = packed.toByteArray();
+        BigInteger[] result = new BigInteger[length];
+        byte[] c = new byte[slot + 1];
+        for (int i = 0; i < length; ++i) {
+            int end = bytes.length - slot * i;
+            int start = Math.max(end - slot, 0);
+            Arrays.fill(c, (byte) 0);
+            if (end > 0) {
+                System.arraycopy(bytes, start, c, c.length - (end - start), end - start);
+            }
+            result[i] = new BigInteger(c).mod(p);
+        }
+        return normalize(result);
+    }
+
+    /**
+     * Return the coefficients of a below x^n.
+     */
+    static BigInteger[] truncate(BigInteger[] a, int n) {
+        return a.length <= n ? a : normalize(Arrays.copyOf(a, n));
+    }
+
+    /**
+     * Return x^n a(1/x), for n at least the degree of a.
+     */
+    static BigInteger[] reverse(BigInteger[] a, int n) {
+        BigInteger[] result = new BigInteger[n + 1];
+        for (int i = 0; i <= n; ++i) {
+            result[n - i] = i < a.length ? a[i] : BigInteger.ZERO;
+        }
+        return normalize(result);
+    }
+
+    /**
+     * Return the remainder of a divided by b, by long division.
+     */
+    BigInteger[] remainder(BigInteger[] a, BigInteger[] b) {
+        return divide(a, b)[1];
+    }
+
+    /**
+     * Return the quotient and the remainder of a divided by a non-zero b, by
+     * long division.
+     */
+    BigInteger[][] divide(BigInteger[] a, BigInteger[] b) {
+        int db = degree(b);
+        if (a.length <= db) {
+            return new BigInteger[][]{ZERO, a};
+        }
+        BigInteger leadInverse = b[db].modInverse(p);
+        BigInteger[] r = a.clone();
+        BigInteger[] q = new BigInteger[a.length - db];
+        for (int i = degree(a); i >= db; --i) {
+            BigInteger c = r[i].multiply(leadInverse).mod(p);
+            q[i - db] = c;
+            if (c.signum() == 0) {
+                continue;
+            }
+            for (int j = 0; j <= db; ++j) {
+                r[i - db + j] = r[i - db + j].subtract(c.multiply(b[j])).mod(p);
+            }
+        }
+        return new BigInteger[][]{normalize(q), normalize(Arrays.copyOf(r, db))};
+    }
+
+    BigInteger[] monic(BigInteger[] a) {
+        if (a.length == 0 || a[a.length - 1].equals(BigInteger.ONE)) {
+            return a;
+        }
+        return scale(a, a[a.length - 1].modInverse(p));
+    }
+
+    /**
+     * Return the monic greatest common divisor of a and b.
+     */
+    BigInteger[] gcd(BigInteger[] a, BigInteger[] b) {
+        while (b.length > 0) {
+            BigInteger[] r = remainder(a, b);
+            a = b;
+            b = r;
+        }
+        return monic(a);
+    }
+
+    /**
+     * Return the inverse of a modulo m, or throw NotInvertibleException
+     * carrying the monic gcd of a and m when it is not 1.
+     */
+    BigInteger[] inverse(BigInteger[] a, BigInteger[] m) throws NotInvertibleException {
+        BigInteger[] r0 = m;
+        BigInteger[] r1 = remainder(a, m);
+        BigInteger[] t0 = ZERO;
+        BigInteger[] t1 = new BigInteger[]{BigInteger.ONE};
+        while (r1.length > 0) {
+            BigInteger[][] qr = divide(r0, r1);
+            BigInteger[] t2 = subtract(t0, multiply(qr[0], t1));
+            r0 = r1;
+            r1 = qr[1];
+            t0 = t1;
+            t1 = t2;
+        }
+        if (degree(r0) > 0 || r0.length == 0) {
+            throw new NotInvertibleException(monic(r0.length == 0 ? m : r0));
+        }
+        return remainder(scale(t0, r0[0].modInverse(p)), m);
+    }
+
+    /**
+     * Thrown when a polynomial has a common factor with the modulus.
+     */
+    static class NotInvertibleException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final BigInteger[] gcd;
+
+        NotInvertibleException(BigInteger[] gcd) {
+            super("The polynomial is not invertible");
+            this.gcd = gcd;
+        }
+    }
+
+    /**
+     * A fixed monic modulus h, with what is needed to reduce modulo it
+     * quickly.
+     */
+    final class Modulus {
+        final BigInteger[] h;
+        private final BigInteger[] reversed;
+        private BigInteger[] inverseReversed = new BigInteger[]{BigInteger.ONE};
+        private int precision = 1;
+
+        Modulus(BigInteger[] h) {
+            this.h = monic(h);
+            this.reversed = reverse(this.h, FpPolynomials.degree(this.h));
+        }
+
+        int degree() {
+            return FpPolynomials.degree(h);
+        }
+
+        /**
+         * Return a mod h.
+         */
+        BigInteger[] reduce(BigInteger[] a) {
+            int m = degree();
+            int n = FpPolynomials.degree(a);
+            if (n < m) {
+                return a;
+            }
+            if (m < KRONECKER_THRESHOLD) {
+                return remainder(a, h);
+            }
+            // The reversal of the quotient is the reversal of a divided by
+            // the reversal of h, as a power series to n - m + 1 terms.
+            int k = n - m + 1;
+            BigInteger[] q = truncate(FpPolynomials.this.multiply(truncate(reverse(a, n), k), inverseReversed(k)), k);
+            q = reverse(q, k - 1);
+            return truncate(subtract(a, FpPolynomials.this.multiply(q, h)), m);
+        }
+
+        /**
+         * Return the inverse of the reversal of h as a power series, to k
+         * terms, by Newton's iteration: g <- g (2 - f g).
+         */
+        private BigInteger[] inverseReversed(int k) {
+            while (precision < k) {
+                int next = precision * 2;
+                BigInteger[] fg = truncate(FpPolynomials.this.multiply(truncate(reversed, next), inverseReversed), next);
+                BigInteger[] correction = subtract(constant(BigInteger.valueOf(2)), fg);
+                inverseReversed = truncate(FpPolynomials.this.multiply(inverseReversed, correction), next);
+                precision = next;
+            }
+            return truncate(inverseReversed, k);
+        }
+
+        BigInteger[] multiply(BigInteger[] a, BigInteger[] b) {
+            return reduce(FpPolynomials.this.multiply(a, b));
+        }
+
+        BigInteger[] power(BigInteger[] a, BigInteger e) {
+            BigInteger[] result = constant(BigInteger.ONE);
+            for (int i = e.bitLength() - 1; i >= 0; --i) {
+                result = multiply(result, result);
+                if (e.testBit(i)) {
+                    result = multiply(result, a);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Return x^e mod h, where multiplying by x is a shift.
+         */
+        BigInteger[] powerOfX(BigInteger e) {
+            BigInteger[] result = constant(BigInteger.ONE);
+            for (int i = e.bitLength() - 1; i >= 0; --i) {
+                result = multiply(result, result);
+                if (e.testBit(i)) {
+                    BigInteger[] shifted = new BigInteger[result.length + 1];
+                    shifted[0] = BigInteger.ZERO;
+                    System.arraycopy(result, 0, shifted, 1, result.length);
+                    result = reduce(normalize(shifted));
+                }
+            }
+            return result;
+        }
+
+        BigInteger[] inverse(BigInteger[] a) throws NotInvertibleException {
+            return FpPolynomials.this.inverse(a, h);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ecc;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table model showing a byte array as a hex dump, with one row per 16 bytes:
+ * the offset, the bytes in hexadecimal and the printable ASCII characters.
+ *
+ * The rows are formatted on demand, straight from the array, when the table
+ * asks for their cells. A JTable only asks for the rows it paints, so the
+ * cost of showing the data depends on the size of the window, not on the
+ * size of the data.
+ */
+public class HexTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int BYTES_PER_ROW = 16;
+
+    private static final String[] COLUMN_NAMES = {"Offset", "Hex", "Text"};
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private byte[] data = new byte[0];
+
+    public HexTableModel() {
+    }
+
+    public HexTableModel(byte[] data) {
+        this.data = data;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Show the given bytes. The array is not copied, and should not be
+     * changed while it is shown.
+     *
+     * @param data
+     */
+    public void setData(byte[] data) {
+        this.data = data;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return (data.length + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int offset = row * BYTES_PER_ROW;
+        int length = Math.min(BYTES_PER_ROW, data.length - offset);
+        switch (column) {
+            case 0:
+                return formatOffset(offset);
+            case 1:
+                return formatHex(data, offset, length);
+            default:
+                return formatText(data, offset, length);
+        }
+    }
+
+    /**
+     * Return the offset as 8 hexadecimal digits.
+     */
+    static String formatOffset(int offset) {
+        char[] out = new char[8];
+        for (int i = 7; i >= 0; --i) {
+            out[i] = HEX_DIGITS[offset & 0xf];
+            offset >>>= 4;
+        }
+        return new String(out);
+    }
+
+    /**
+     * Return the bytes as pairs of hexadecimal digits separated by spaces,
+     * with an extra space in the middle of a full row.
+     */
+    static String formatHex(byte[] b, int offset, int length) {
+        char[] out = new char[BYTES_PER_ROW * 3];
+        int j = 0;
+        for (int i = 0; i < length; ++i) {
+            if (i > 0) {
+                out[j++] = ' ';
+                if (i == BYTES_PER_ROW / 2) {
+                    out[j++] = ' ';
+                }
+            }
+            int v = b[offset + i] & 0xff;
+            out[j++] = HEX_DIGITS[v >>> 4];
+            out[j++] = HEX_DIGITS[v & 0xf];
+        }
+        return new String(out, 0, j);
+    }
+
+    /**
+     * Return the bytes as ASCII characters, with a dot for the bytes that are
+     * not printable.
+     */
+    static String formatText(byte[] b, int offset, int length) {
+        char[] out = new char[length];
+        for (int i = 0; i < length; ++i) {
+            int v = b[offset + i] & 0xff;
+            out[i] = v >= 0x20 && v < 0x7f ? (char) v : '.';
+        }
+        return new String(out);
+    }
+}
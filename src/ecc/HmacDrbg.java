@@ -0,0 +1,163 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC_DRBG of NIST SP 800-90A with HMAC-SHA256, without prediction
+ * resistance. This is also the generator of deterministic nonces in
+ * RFC 6979, section 3.2.
+ * 
+ * Instances are not thread-safe.
+ */
+class HmacDrbg {
+    static final String ALGORITHM = "HmacSHA256";
+    static final int OUTPUT_LENGTH = 32;
+
+    private final Mac mac;
+    private final byte[] k = new byte[OUTPUT_LENGTH];
+    private final byte[] v = new byte[OUTPUT_LENGTH];
+    private long generateCount;
+
+    HmacDrbg(byte[] seed) throws GeneralSecurityException {
+        this(Mac.getInstance(ALGORITHM), seed);
+    }
+
+    HmacDrbg(Mac mac, byte[] seed) throws InvalidKeyException {
+        this.mac = mac;
+        instantiate(seed);
+    }
+
+    /**
+     * Start over from the given seed material, i.e. entropy || nonce ||
+     * personalization string, or int2octets(x) || bits2octets(h1) in RFC 6979.
+     * 
+     * @param seed
+     */
+    final void instantiate(byte[] seed) throws InvalidKeyException {
+        for (int i = 0; i < OUTPUT_LENGTH; ++i) {
+            k[i] = 0x00;
+            v[i] = 0x01;
+        }
+        update(seed);
+        generateCount = 0;
+    }
+
+    /**
+     * Mix fresh entropy into the state.
+     * 
+     * @param entropy
+     */
+    void reseed(byte[] entropy) throws InvalidKeyException {
+        update(entropy);
+        generateCount = 0;
+    }
+
+    /**
+     * Fill out with pseudorandom bytes, then update the state.
+     * 
+     * @param out
+     */
+    void nextBytes(byte[] out) throws InvalidKeyException {
+        mac.init(new SecretKeySpec(k, ALGORITHM));
+        for (int offset = 0; offset < out.length; offset += OUTPUT_LENGTH) {
+            mac.update(v);
+            macInto(v);
+            System.arraycopy(v, 0, out, offset, Math.min(OUTPUT_LENGTH, out.length - offset));
+        }
+        update(null);
+        generateCount++;
+    }
+
+    /**
+     * Return a scalar k such that 1 <= k < bound, drawing candidates of the
+     * bit length of bound until one fits (RFC 6979, section 3.2, step h).
+     * 
+     * @param bound
+     * @return 
+     */
+    BigInteger nextScalar(BigInteger bound) throws InvalidKeyException {
+        int qlen = bound.bitLength();
+        byte[] t = new byte[(qlen + 7) / 8];
+        while (true) {
+            nextBytes(t);
+            BigInteger k = bits2int(t, qlen);
+            if (k.signum() > 0 && k.compareTo(bound) < 0) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Interpret the leftmost qlen bits of b as an integer (RFC 6979,
+     * section 2.3.2).
+     * 
+     * @param b
+     * @param qlen
+     * @return 
+     */
+    static BigInteger bits2int(byte[] b, int qlen) {
+        BigInteger v = new BigInteger(1, b);
+        int blen = b.length * 8;
+        return blen > qlen ? v.shiftRight(blen - qlen) : v;
+    }
+
+    /**
+     * Write x as a big-endian array of exactly ceil(qlen / 8) bytes
+     * (RFC 6979, section 2.3.3).
+     * 
+     * @param x
+     * @param qlen
+     * @return 
+     */
+    static byte[] int2octets(BigInteger x, int qlen) {
+        int rlen = (qlen + 7) / 8;
+        byte[] bytes = x.toByteArray();
+        byte[] result = new byte[rlen];
+        int length = Math.min(bytes.length, rlen);
+        System.arraycopy(bytes, bytes.length - length, result, rlen - length, length);
+        return result;
+    }
+
+    /**
+     * The number of calls to nextBytes since the last (re)seeding.
+     * 
+     * @return 
+     */
+    long getGenerateCount() {
+        return generateCount;
+    }
+
+    private void update(byte[] data) throws InvalidKeyException {
+        // K = HMAC(K, V || 0x00 || data), V = HMAC(K, V)
+        step((byte) 0x00, data);
+        if (data != null && data.length > 0) {
+            // K = HMAC(K, V || 0x01 || data), V = HMAC(K, V)
+            step((byte) 0x01, data);
+        }
+    }
+
+    private void step(byte separator, byte[] data) throws InvalidKeyException {
+        mac.init(new SecretKeySpec(k, ALGORITHM));
+        mac.update(v);
+        mac.update(separator);
+        if (data != null) {
+            mac.update(data);
+        }
+        macInto(k);
+        mac.init(new SecretKeySpec(k, ALGORITHM));
+        mac.update(v);
+        macInto(v);
+    }
+
+    private void macInto(byte[] out) {
+        try {
+            mac.doFinal(out, 0);
+        } catch (javax.crypto.ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
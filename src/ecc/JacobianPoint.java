@@ -0,0 +1,39 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class represents a point of an elliptic curve in Jacobian projective
+ * coordinates. The triple (X, Y, Z) stands for the affine point
+ * (X / Z^2, Y / Z^3), and any triple with Z = 0 is the point of infinity.
+ *
+ * Working in these coordinates avoids the modular inversion that every affine
+ * addition needs. The arithmetic is implemented in EllipticCurve, which also
+ * converts the points back to ECPoint.
+ */
+public class JacobianPoint {
+    public final BigInteger X;
+    public final BigInteger Y;
+    public final BigInteger Z;
+
+    public JacobianPoint(BigInteger X, BigInteger Y, BigInteger Z) {
+        this.X = X;
+        this.Y = Y;
+        this.Z = Z;
+    }
+
+    public boolean isPointOfInfinity() {
+        return Z.signum() == 0;
+    }
+
+    public static final JacobianPoint INFINITY = new JacobianPoint(BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO);
+
+    @Override
+    public String toString() {
+        if (isPointOfInfinity()) {
+            return "INFINITY";
+        } else {
+            return "(" + X.toString() + " : " + Y.toString() + " : " + Z.toString() + ")";
+        }
+    }
+}
@@ -5,14 +5,23 @@
  */
 package ecc;
 
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JButton;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.JTable;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 /**
  *
@@ -25,6 +34,27 @@ public class MainFrame extends javax.swing.JFrame {
      */
     public MainFrame() {
         initComponents();
+        installCipherTextViewer();
+    }
+
+    /**
+     * Replace the text area showing the cipher text by a hex table, which
+     * only formats the rows on screen. The text area had to format and lay
+     * out the whole cipher text, which took longer than encrypting it.
+     */
+    private void installCipherTextViewer() {
+        JTable table = new JTable(cipherTextModel);
+        table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, jTextArea2.getFont().getSize()));
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.setShowGrid(false);
+        table.setFillsViewportHeight(true);
+        FontMetrics metrics = table.getFontMetrics(table.getFont());
+        int[] widths = {8, HexTableModel.BYTES_PER_ROW * 3, HexTableModel.BYTES_PER_ROW};
+        for (int i = 0; i < widths.length; ++i) {
+            table.getColumnModel().getColumn(i).setPreferredWidth(metrics.charWidth('0') * (widths[i] + 2));
+        }
+        table.setPreferredScrollableViewportSize(jTextArea2.getPreferredScrollableViewportSize());
+        jScrollPane2.setViewportView(table);
     }
 
     /**
@@ -671,33 +701,46 @@ public class MainFrame extends javax.swing.JFrame {
    // Do Encrypt Button
     private void jButton6ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton6ActionPerformed
         
-        String inputFile = jTextField4.getText();
-        String publicKeyFile = jTextField5.getText();
+        final String inputFile = jTextField4.getText();
+        final String publicKeyFile = jTextField5.getText();
         try {
-            Path path = Paths.get(inputFile);
-            
-            byte[] plainText = Files.readAllBytes(path);
-            jTextArea1.setText(new String(plainText));
             if (publicKeyFile.length() > 1){
                 // Use File
                 
-                PublicKey publicKey = new PublicKey(publicKeyFile);
-
-                byte[] byteFile = ECC.encrypt(plainText,publicKey);
-                jTextArea2.setText(new BigInteger(byteFile).toString(16));
-                JFileChooser chooser = new JFileChooser();
-                int returnVal = chooser.showSaveDialog(this);
-                if(returnVal == JFileChooser.APPROVE_OPTION) {
-                    String savePath = chooser.getSelectedFile().getAbsolutePath();
-                    FileOutputStream fos = new FileOutputStream(savePath);
-                    fos.write(byteFile);
-                    fos.close();
-                    File f = new File(savePath);
-                    jLabel20.setText("Time : " + ECC.getLastExecutionTime() + " ms");
-                    jLabel21.setText("Size(After) : " + f.getTotalSpace() + " B");
-                }
+                new CryptoWorker<ECCResult<byte[]>>("Encrypting " + inputFile, jButton6) {
+                    private byte[] plainText;
+
+                    @Override
+                    protected ECCResult<byte[]> doInBackground() throws Exception {
+                        plainText = Files.readAllBytes(Paths.get(inputFile));
+                        PublicKey publicKey = new PublicKey(publicKeyFile);
+                        return ECC.encryptWithTimings(plainText, publicKey, this);
+                    }
+
+                    @Override
+                    protected void finished(ECCResult<byte[]> encrypted) throws Exception {
+                        jTextArea1.setText(new String(plainText));
+                        byte[] byteFile = encrypted.getResult();
+                        cipherTextModel.setData(byteFile);
+                        JFileChooser chooser = new JFileChooser();
+                        int returnVal = chooser.showSaveDialog(MainFrame.this);
+                        if(returnVal == JFileChooser.APPROVE_OPTION) {
+                            String savePath = chooser.getSelectedFile().getAbsolutePath();
+                            FileOutputStream fos = new FileOutputStream(savePath);
+                            fos.write(byteFile);
+                            fos.close();
+                            File f = new File(savePath);
+                            jLabel20.setText("Time : " + encrypted.getTimings());
+                            jLabel21.setText("Size(After) : " + f.getTotalSpace() + " B");
+                        }
+                    }
+                }.execute();
             }
             else {
+                Path path = Paths.get(inputFile);
+                byte[] plainText = Files.readAllBytes(path);
+                jTextArea1.setText(new String(plainText));
+
                 BigInteger parA = new BigInteger(jTextField7.getText());
                 BigInteger parB = new BigInteger(jTextField8.getText());
                 BigInteger parC = new BigInteger(jTextField9.getText());
@@ -733,31 +776,37 @@ public class MainFrame extends javax.swing.JFrame {
    
     // Do Decrypt Button
     private void jButton10ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton10ActionPerformed
-        String inputFile = jTextField11.getText();
-        String privateKeyFile = jTextField13.getText();
+        final String inputFile = jTextField11.getText();
+        final String privateKeyFile = jTextField13.getText();
         try {
-            Path path = Paths.get(inputFile);
-            byte[] cipherText = Files.readAllBytes(path);
-
             if ( privateKeyFile.length() > 1){
                 // Use File
 
-                PrivateKey privateKey = new PrivateKey(privateKeyFile);
-
-                
-                byte[] byteFile = ECC.decrypt(cipherText, privateKey);
-                JFileChooser chooser = new JFileChooser();
-                int returnVal = chooser.showSaveDialog(this);
-                if(returnVal == JFileChooser.APPROVE_OPTION) {
-                    String savePath = chooser.getSelectedFile().getAbsolutePath();
-                    FileOutputStream fos = new FileOutputStream(savePath);
-                    fos.write(byteFile);
-                    fos.close();
-                    
-                    File f = new File(savePath);
-                    jLabel22.setText("Time : " + ECC.getLastExecutionTime() + " ms");
-                    jLabel23.setText("Size(After) : " + f.getTotalSpace() + " B");
-                }
+                new CryptoWorker<ECCResult<byte[]>>("Decrypting " + inputFile, jButton10) {
+                    @Override
+                    protected ECCResult<byte[]> doInBackground() throws Exception {
+                        byte[] cipherText = Files.readAllBytes(Paths.get(inputFile));
+                        PrivateKey privateKey = new PrivateKey(privateKeyFile);
+                        return ECC.decryptWithTimings(cipherText, privateKey, this);
+                    }
+
+                    @Override
+                    protected void finished(ECCResult<byte[]> decrypted) throws Exception {
+                        byte[] byteFile = decrypted.getResult();
+                        JFileChooser chooser = new JFileChooser();
+                        int returnVal = chooser.showSaveDialog(MainFrame.this);
+                        if(returnVal == JFileChooser.APPROVE_OPTION) {
+                            String savePath = chooser.getSelectedFile().getAbsolutePath();
+                            FileOutputStream fos = new FileOutputStream(savePath);
+                            fos.write(byteFile);
+                            fos.close();
+
+                            File f = new File(savePath);
+                            jLabel22.setText("Time : " + decrypted.getTimings());
+                            jLabel23.setText("Size(After) : " + f.getTotalSpace() + " B");
+                        }
+                    }
+                }.execute();
             }
             else {
                 BigInteger parA = new BigInteger(jTextField14.getText());
@@ -773,16 +822,23 @@ public class MainFrame extends javax.swing.JFrame {
     }//GEN-LAST:event_jButton10ActionPerformed
     // Process Generation
     private void jButton11ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton11ActionPerformed
-        BigInteger parA = new BigInteger(jTextField1.getText());
-        BigInteger parB = new BigInteger(jTextField2.getText());
-        BigInteger parC = new BigInteger(jTextField3.getText());
-        try {
-            kP = ECC.generateKeyPair(new EllipticCurve(parA,parB,parC), new Random(System.currentTimeMillis()));
-            jLabel24.setText("Time : " + ECC.getLastExecutionTime() + " ms");
-        }
-        catch (Exception e){
-            
-        }
+        final BigInteger parA = new BigInteger(jTextField1.getText());
+        final BigInteger parB = new BigInteger(jTextField2.getText());
+        final BigInteger parC = new BigInteger(jTextField3.getText());
+        // A single key pair has no blocks to report, so the dialog only
+        // offers to cancel, which drops the result.
+        new CryptoWorker<ECCResult<KeyPair>>("Generating a key pair", jButton11) {
+            @Override
+            protected ECCResult<KeyPair> doInBackground() throws Exception {
+                return ECC.generateKeyPairWithTimings(new EllipticCurve(parA,parB,parC), NONCE_SOURCE);
+            }
+
+            @Override
+            protected void finished(ECCResult<KeyPair> generated) {
+                kP = generated.getResult();
+                jLabel24.setText("Time : " + generated.getTimings());
+            }
+        }.execute();
     }//GEN-LAST:event_jButton11ActionPerformed
 
     private void jComboBox1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jComboBox1ActionPerformed
@@ -816,6 +872,92 @@ public class MainFrame extends javax.swing.JFrame {
     
     KeyPair kP;
     
+    private final HexTableModel cipherTextModel = new HexTableModel();
+    
+    private static final NonceSource NONCE_SOURCE = new DrbgNonceSource();
+    
+    /**
+     * Runs one operation away from the event dispatch thread, so the window
+     * stays responsive. While it runs, its button is disabled and a progress
+     * dialog shows the blocks done and the throughput; the Cancel button of
+     * the dialog cancels the operation between two blocks.
+     */
+    private abstract class CryptoWorker<T> extends SwingWorker<T, Void> implements ProgressListener {
+        private final JButton button;
+        private final ProgressMonitor monitor;
+        private final Timer timer;
+        private final long start = System.nanoTime();
+        private volatile int completed;
+        private volatile int total;
+
+        CryptoWorker(String title, JButton button) {
+            this.button = button;
+            button.setEnabled(false);
+            monitor = new ProgressMonitor(MainFrame.this, title, "Starting", 0, 1);
+            monitor.setMillisToDecideToPopup(250);
+            monitor.setMillisToPopup(250);
+            // The engine reports from its own threads, so the dialog is
+            // refreshed by polling from the event dispatch thread.
+            timer = new Timer(100, new java.awt.event.ActionListener() {
+                @Override
+                public void actionPerformed(java.awt.event.ActionEvent e) {
+                    refresh();
+                }
+            });
+            timer.start();
+        }
+
+        @Override
+        public void progress(int completed, int total) {
+            this.completed = completed;
+            this.total = total;
+        }
+
+        private void refresh() {
+            if (monitor.isCanceled()) {
+                cancel(false);
+                return;
+            }
+            int completed = this.completed;
+            int total = this.total;
+            if (total > 0) {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                monitor.setMaximum(total);
+                monitor.setProgress(Math.min(completed, total - 1));
+                monitor.setNote(String.format("%d of %d blocks, %.0f blocks/s", completed, total, completed / seconds));
+            } else {
+                monitor.setProgress(0);
+            }
+        }
+
+        /**
+         * Called on the event dispatch thread with the result of the
+         * operation, unless it failed or was cancelled.
+         */
+        protected abstract void finished(T result) throws Exception;
+
+        @Override
+        protected void done() {
+            timer.stop();
+            monitor.close();
+            button.setEnabled(true);
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                finished(get());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof CancellationException)) {
+                    e.getCause().printStackTrace();
+                    JOptionPane.showMessageDialog(MainFrame.this, String.valueOf(e.getCause().getMessage()),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
     /**
      * @param args the command line arguments
      */
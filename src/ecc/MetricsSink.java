@@ -0,0 +1,39 @@
+package ecc;
+
+/**
+ * Receives the timings of every operation executed by an ECCEngine.
+ * 
+ * Implementations are called from whichever thread executed the operation, so
+ * they have to be thread-safe.
+ */
+public interface MetricsSink {
+
+    /**
+     * The operations reported to a sink.
+     */
+    public enum Operation {
+        ENCRYPT,
+        ENCRYPT_FOR_RECIPIENTS,
+        DECRYPT,
+        GENERATE_KEY_PAIR,
+        GENERATE_KEY_PAIRS
+    }
+
+    /**
+     * Called once after each successful operation.
+     * 
+     * @param operation
+     * @param c the curve the operation used
+     * @param timings
+     */
+    void record(Operation operation, EllipticCurve c, PhaseTimings timings);
+
+    /**
+     * A sink that ignores everything.
+     */
+    public static final MetricsSink NONE = new MetricsSink() {
+        @Override
+        public void record(Operation operation, EllipticCurve c, PhaseTimings timings) {
+        }
+    };
+}
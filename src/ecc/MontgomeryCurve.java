@@ -0,0 +1,244 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class represents an elliptic curve in Montgomery form,
+ * B v^2 = u^3 + A u^2 + u over the prime field F_p, with the x-only
+ * Montgomery ladder on it.
+ *
+ * The ladder computes the u-coordinate of kP from the u-coordinate of P
+ * alone, with one differential addition and one doubling per bit of k, the
+ * same for every bit. This is what X25519 key agreement needs. The ladder
+ * works for any curve in this form over BigInteger; on Curve25519 it runs
+ * over Field25519 instead, with the limbs in longs and the reduction
+ * specialized to 2^255 - 19.
+ *
+ * Every u-coordinate is that of a point of this curve or of its twist, so
+ * there is nothing to check about it; keys are protected from small-order
+ * points by their cofactor (see X25519).
+ */
+public class MontgomeryCurve {
+
+    private final String name;
+    private final BigInteger A;
+    private final BigInteger B;
+    private final BigInteger p;
+    private final BigInteger baseU;
+    private final BigInteger n;
+    private final BigInteger h;
+
+    // (A - 2) / 4, the constant of the doubling formula.
+    private final BigInteger a24;
+
+    /**
+     * Create the curve B v^2 = u^3 + A u^2 + u over F_p.
+     *
+     * @param name
+     * @param A
+     * @param B
+     * @param p
+     * @param baseU the u-coordinate of the base point
+     * @param n the order of the base point, or null if it is not known
+     * @param h the cofactor, or null if it is not known
+     */
+    public MontgomeryCurve(String name, BigInteger A, BigInteger B, BigInteger p, BigInteger baseU, BigInteger n, BigInteger h) {
+        if (B.multiply(A.multiply(A).subtract(BigInteger.valueOf(4))).mod(p).signum() == 0) {
+            throw new IllegalArgumentException("B (A^2 - 4) should not be 0");
+        }
+        this.name = name;
+        this.A = A.mod(p);
+        this.B = B.mod(p);
+        this.p = p;
+        this.baseU = baseU.mod(p);
+        this.n = n;
+        this.h = h;
+        this.a24 = this.A.subtract(BigInteger.valueOf(2)).multiply(BigInteger.valueOf(4).modInverse(p)).mod(p);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigInteger getA() {
+        return A;
+    }
+
+    public BigInteger getB() {
+        return B;
+    }
+
+    public BigInteger getP() {
+        return p;
+    }
+
+    public BigInteger getBaseU() {
+        return baseU;
+    }
+
+    /**
+     * @return null if the order is not known.
+     */
+    public BigInteger getOrder() {
+        return n;
+    }
+
+    /**
+     * @return null if the cofactor is not known.
+     */
+    public BigInteger getCofactor() {
+        return h;
+    }
+
+    /**
+     * Return the u-coordinate of k times the base point.
+     *
+     * @param k
+     * @return
+     */
+    public BigInteger multiplyBase(BigInteger k) {
+        return multiply(baseU, k);
+    }
+
+    /**
+     * Return the u-coordinate of kP, where u is the u-coordinate of P. The
+     * point of infinity, and the result that is the point of infinity, have
+     * the u-coordinate 0.
+     *
+     * @param u
+     * @param k a non-negative scalar
+     * @return
+     */
+    public BigInteger multiply(BigInteger u, BigInteger k) {
+        if (k.signum() < 0) {
+            throw new IllegalArgumentException("The scalar should not be negative");
+        }
+        if (this == CURVE_25519 && k.bitLength() <= 255) {
+            return ladder25519(u, k);
+        }
+        return ladder(u, k);
+    }
+
+    /**
+     * The Montgomery ladder of RFC 7748, section 5, over BigInteger.
+     */
+    private BigInteger ladder(BigInteger u, BigInteger k) {
+        BigInteger x1 = u.mod(p);
+        BigInteger x2 = BigInteger.ONE;
+        BigInteger z2 = BigInteger.ZERO;
+        BigInteger x3 = x1;
+        BigInteger z3 = BigInteger.ONE;
+        boolean swap = false;
+        for (int t = k.bitLength() - 1; t >= 0; --t) {
+            boolean bit = k.testBit(t);
+            if (swap != bit) {
+                BigInteger s = x2;
+                x2 = x3;
+                x3 = s;
+                s = z2;
+                z2 = z3;
+                z3 = s;
+            }
+            swap = bit;
+
+            BigInteger a = x2.add(z2).mod(p);
+            BigInteger aa = a.multiply(a).mod(p);
+            BigInteger b = x2.subtract(z2).mod(p);
+            BigInteger bb = b.multiply(b).mod(p);
+            BigInteger e = aa.subtract(bb).mod(p);
+            BigInteger c = x3.add(z3).mod(p);
+            BigInteger d = x3.subtract(z3).mod(p);
+            BigInteger da = d.multiply(a).mod(p);
+            BigInteger cb = c.multiply(b).mod(p);
+            BigInteger sum = da.add(cb).mod(p);
+            BigInteger difference = da.subtract(cb).mod(p);
+            x3 = sum.multiply(sum).mod(p);
+            z3 = x1.multiply(difference).multiply(difference).mod(p);
+            x2 = aa.multiply(bb).mod(p);
+            z2 = e.multiply(aa.add(a24.multiply(e))).mod(p);
+        }
+        if (swap) {
+            x2 = x3;
+            z2 = z3;
+        }
+        if (z2.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        return x2.multiply(z2.modInverse(p)).mod(p);
+    }
+
+    /**
+     * The same ladder over Field25519, always going through the 255 bits of
+     * k and swapping with masks, so that it takes the same time for every
+     * scalar of that size.
+     */
+    private static BigInteger ladder25519(BigInteger u, BigInteger k) {
+        long[] x1 = Field25519.fromBigInteger(u);
+        long[] x2 = Field25519.create();
+        long[] z2 = Field25519.create();
+        long[] x3 = Field25519.create();
+        long[] z3 = Field25519.create();
+        long[] a = Field25519.create();
+        long[] aa = Field25519.create();
+        long[] b = Field25519.create();
+        long[] bb = Field25519.create();
+        long[] e = Field25519.create();
+        long[] c = Field25519.create();
+        long[] d = Field25519.create();
+        Field25519.one(x2);
+        Field25519.copy(x3, x1);
+        Field25519.one(z3);
+
+        int swap = 0;
+        for (int t = 254; t >= 0; --t) {
+            int bit = k.testBit(t) ? 1 : 0;
+            swap ^= bit;
+            Field25519.conditionalSwap(x2, x3, swap);
+            Field25519.conditionalSwap(z2, z3, swap);
+            swap = bit;
+
+            Field25519.add(a, x2, z2);
+            Field25519.square(aa, a);
+            Field25519.subtract(b, x2, z2);
+            Field25519.square(bb, b);
+            Field25519.subtract(e, aa, bb);
+            Field25519.add(c, x3, z3);
+            Field25519.subtract(d, x3, z3);
+            // d = DA and c = CB.
+            Field25519.multiply(d, d, a);
+            Field25519.multiply(c, c, b);
+            Field25519.add(x3, d, c);
+            Field25519.square(x3, x3);
+            Field25519.subtract(z3, d, c);
+            Field25519.square(z3, z3);
+            Field25519.multiply(z3, z3, x1);
+            Field25519.multiply(x2, aa, bb);
+            Field25519.multiply(z2, e, A24_25519);
+            Field25519.add(z2, z2, aa);
+            Field25519.multiply(z2, z2, e);
+        }
+        Field25519.conditionalSwap(x2, x3, swap);
+        Field25519.conditionalSwap(z2, z3, swap);
+
+        // 1 / 0 comes out as 0, the u-coordinate of the point of infinity.
+        Field25519.invert(z2, z2);
+        Field25519.multiply(x2, x2, z2);
+        return Field25519.toBigInteger(x2);
+    }
+
+    private static final long A24_25519 = 121665;
+
+    /**
+     * Curve25519 of RFC 7748: v^2 = u^3 + 486662 u^2 + u over 2^255 - 19,
+     * with the base point u = 9 of prime order n and the cofactor 8.
+     */
+    public static final MontgomeryCurve CURVE_25519 = new MontgomeryCurve(
+            "Curve25519",
+            BigInteger.valueOf(486662),
+            BigInteger.ONE,
+            Field25519.P,
+            BigInteger.valueOf(9),
+            BigInteger.ONE.shiftLeft(252).add(new BigInteger("27742317777372353535851937790883648493")),
+            BigInteger.valueOf(8)
+    );
+}
@@ -0,0 +1,106 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class computes sums of many scalar multiples, k_1 * P_1 + ... +
+ * k_m * P_m, with Pippenger's bucket method.
+ * 
+ * The scalars are cut into windows of c bits. For each window, every point is
+ * added into the bucket of its digit, and the buckets are summed up with a
+ * running sum, which weights bucket d by d. The windows are then combined
+ * with c doublings each. In total this costs about (bits / c) * (m + 2^c)
+ * additions, against m full multiplications for the naive sum, so it pays
+ * off more and more as m grows.
+ */
+public class MultiScalarMultiplication {
+
+    private MultiScalarMultiplication() {
+    }
+
+    /**
+     * Return the sum of scalars[i] * points[i]. The scalars should not be
+     * negative.
+     * 
+     * @param c
+     * @param points
+     * @param scalars
+     * @return 
+     */
+    public static ECPoint multiply(EllipticCurve c, ECPoint[] points, BigInteger[] scalars) {
+        return c.toAffine(multiplyJacobian(c, points, scalars));
+    }
+
+    /**
+     * Same as multiply, but leaves the result in Jacobian coordinates.
+     * 
+     * @param c
+     * @param points
+     * @param scalars
+     * @return 
+     */
+    public static JacobianPoint multiplyJacobian(EllipticCurve c, ECPoint[] points, BigInteger[] scalars) {
+        if (points.length != scalars.length) {
+            throw new IllegalArgumentException("There should be exactly one scalar per point");
+        }
+        int bits = 0;
+        for (BigInteger scalar : scalars) {
+            if (scalar.signum() < 0) {
+                throw new IllegalArgumentException("The scalars should not be negative");
+            }
+            bits = Math.max(bits, scalar.bitLength());
+        }
+        if (bits == 0) {
+            return JacobianPoint.INFINITY;
+        }
+
+        int width = getWindowWidth(points.length);
+        int windows = (bits + width - 1) / width;
+        JacobianPoint[] buckets = new JacobianPoint[1 << width];
+
+        JacobianPoint result = JacobianPoint.INFINITY;
+        for (int w = windows - 1; w >= 0; --w) {
+            for (int i = 0; i < width; ++i) {
+                result = c.doubleJacobian(result);
+            }
+
+            for (int d = 1; d < buckets.length; ++d) {
+                buckets[d] = JacobianPoint.INFINITY;
+            }
+            int offset = w * width;
+            for (int i = 0; i < points.length; ++i) {
+                int digit = 0;
+                for (int j = width - 1; j >= 0; --j) {
+                    digit = (digit << 1) | (scalars[i].testBit(offset + j) ? 1 : 0);
+                }
+                if (digit != 0) {
+                    buckets[digit] = c.addJacobian(buckets[digit], points[i]);
+                }
+            }
+
+            // sum of d * buckets[d] = sum over d of (buckets[d] + ... + buckets[max])
+            JacobianPoint running = JacobianPoint.INFINITY;
+            JacobianPoint window = JacobianPoint.INFINITY;
+            for (int d = buckets.length - 1; d >= 1; --d) {
+                running = c.addJacobian(running, buckets[d]);
+                window = c.addJacobian(window, running);
+            }
+            result = c.addJacobian(result, window);
+        }
+        return result;
+    }
+
+    /**
+     * Choose the window width c for m points, minimizing the number of
+     * additions per bit, (m + 2^(c + 1)) / c.
+     */
+    static int getWindowWidth(int m) {
+        int best = 1;
+        for (int width = 2; width <= 16; ++width) {
+            if ((double) (m + (2L << width)) / width < (double) (m + (2L << best)) / best) {
+                best = width;
+            }
+        }
+        return best;
+    }
+}
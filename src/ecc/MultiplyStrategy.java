@@ -0,0 +1,41 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * The algorithm used by an ECCEngine to multiply a point by a scalar.
+ */
+public interface MultiplyStrategy {
+
+    /**
+     * Return n * p1 on the curve c.
+     * 
+     * @param c
+     * @param p1
+     * @param n
+     * @return 
+     */
+    ECPoint multiply(EllipticCurve c, ECPoint p1, BigInteger n);
+
+    /**
+     * The affine double-and-add of EllipticCurve.multiply. Every addition
+     * costs a modular inversion.
+     */
+    public static final MultiplyStrategy DOUBLE_AND_ADD = new MultiplyStrategy() {
+        @Override
+        public ECPoint multiply(EllipticCurve c, ECPoint p1, BigInteger n) {
+            return c.multiply(p1, n);
+        }
+    };
+
+    /**
+     * The width-4 NAF method of EllipticCurve.multiplyJacobian, working in
+     * Jacobian coordinates.
+     */
+    public static final MultiplyStrategy WINDOW_NAF_JACOBIAN = new MultiplyStrategy() {
+        @Override
+        public ECPoint multiply(EllipticCurve c, ECPoint p1, BigInteger n) {
+            return c.multiplyJacobian(p1, n);
+        }
+    };
+}
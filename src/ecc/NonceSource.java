@@ -0,0 +1,34 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * A source of the secret scalars used by ECC: the per-block nonces k of the
+ * encryption, the private keys of key-pair generation and, later on, the
+ * nonces of signatures.
+ * 
+ * Implementations must be safe to call from many threads at once.
+ */
+public interface NonceSource {
+
+    /**
+     * Return a scalar k such that 1 <= k < bound.
+     * 
+     * @param bound
+     * @param secret the private scalar the nonce is used with, or null if
+     *        there is none (e.g. when encrypting with a public key)
+     * @param digest a digest identifying the message and the position inside
+     *        it, or null if there is no message (e.g. key-pair generation)
+     * @return 
+     */
+    BigInteger nextNonce(BigInteger bound, BigInteger secret, byte[] digest);
+
+    /**
+     * Whether the nonces depend only on the secret and the digest. Callers
+     * only spend time computing a digest for a deterministic source; other
+     * sources get null.
+     * 
+     * @return 
+     */
+    boolean isDeterministic();
+}
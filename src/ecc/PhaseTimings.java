@@ -0,0 +1,122 @@
+package ecc;
+
+/**
+ * This class holds the execution time of a single call to one of the public
+ * operations in ECC, broken down into its phases.
+ *
+ * All times are measured with System.nanoTime() and stored in nanoseconds.
+ * A phase that is not part of an operation (e.g. padding in key-pair
+ * generation) simply stays at zero.
+ */
+public class PhaseTimings {
+
+    /**
+     * The phases an ECC operation is made of.
+     */
+    public enum Phase {
+        PADDING("padding"),
+        CHUNKING("chunking"),
+        ENCODING("encoding"),
+        MULTIPLICATION("multiplication"),
+        SERIALIZATION("serialization");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] nanos = new long[Phase.values().length];
+    private long start;
+    private long lap;
+    private long total;
+
+    /**
+     * Start measuring. Both the total time and the first phase start here.
+     */
+    public void begin() {
+        start = lap = System.nanoTime();
+    }
+
+    /**
+     * Attribute the time elapsed since the previous lap (or since begin) to
+     * the given phase, and start the next lap.
+     *
+     * @param phase
+     */
+    public void lap(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - lap;
+        lap = now;
+    }
+
+    /**
+     * Skip the time elapsed since the previous lap, so it is not attributed to
+     * any phase. It is still part of the total time.
+     */
+    public void skip() {
+        lap = System.nanoTime();
+    }
+
+    /**
+     * Stop measuring the total time.
+     */
+    public void end() {
+        total = System.nanoTime() - start;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return total;
+    }
+
+    public long getTotalMillis() {
+        return total / 1000000;
+    }
+
+    /**
+     * Add all the times of another measurement into this one.
+     *
+     * @param other
+     */
+    public void add(PhaseTimings other) {
+        for (int i = 0; i < nanos.length; ++i) {
+            nanos[i] += other.nanos[i];
+        }
+        total += other.total;
+    }
+
+    private static String format(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Return the breakdown in the form
+     * "12.345 ms (padding 0.010, ..., serialization 0.100)", omitting the
+     * phases that took no time at all.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(format(total)).append(" ms");
+        String separator = " (";
+        for (Phase phase : Phase.values()) {
+            if (nanos[phase.ordinal()] > 0) {
+                sb.append(separator).append(phase.getLabel()).append(' ').append(format(nanos[phase.ordinal()]));
+                separator = ", ";
+            }
+        }
+        if (!separator.equals(" (")) {
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,386 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class counts the points of an elliptic curve y^2 = x^3 + ax + b over
+ * F_p, with Schoof's algorithm.
+ *
+ * The number of points is p + 1 - t, where the trace t of the Frobenius map
+ * phi(x, y) = (x^p, y^p) satisfies |t| <= 2 sqrt(p) (Hasse) and
+ * phi^2 - t phi + p = 0 on every point. Schoof's algorithm finds t modulo
+ * small primes l, working on the l-torsion points symbolically, modulo the
+ * division polynomial psi_l, until the product of the primes exceeds
+ * 4 sqrt(p); t follows by the Chinese remainder theorem.
+ *
+ * The primes are independent of each other, so each is computed as a task of
+ * the common ForkJoinPool.
+ *
+ * The cost grows like log(p)^5 or so even with the fast polynomial products
+ * of FpPolynomials: curves up to about 100 bits are counted in seconds to
+ * minutes, the size of the standard curves takes far longer (their order is
+ * published anyway). Tiny fields are counted directly.
+ */
+public final class PointCounting {
+
+    // Below this prime, the points are counted one x at a time.
+    private static final long NAIVE_LIMIT = 1 << 16;
+
+    private PointCounting() {
+    }
+
+    /**
+     * Return the number of points of y^2 = x^3 + ax + b over F_p, the point
+     * of infinity included.
+     *
+     * @param a
+     * @param b
+     * @param p a prime larger than 3
+     * @return
+     */
+    public static BigInteger countPoints(BigInteger a, BigInteger b, BigInteger p) throws Exception {
+        a = a.mod(p);
+        b = b.mod(p);
+        if (p.compareTo(BigInteger.valueOf(3)) <= 0) {
+            throw new IllegalArgumentException("p should be larger than 3");
+        }
+        BigInteger discriminant = a.pow(3).shiftLeft(2).add(b.pow(2).multiply(BigInteger.valueOf(27))).mod(p);
+        if (discriminant.signum() == 0) {
+            throw new IllegalArgumentException("The curve is singular");
+        }
+        if (p.compareTo(BigInteger.valueOf(NAIVE_LIMIT)) < 0) {
+            return countNaive(a.longValue(), b.longValue(), p.longValue());
+        }
+        return p.add(BigInteger.ONE).subtract(trace(a, b, p));
+    }
+
+    /**
+     * Count the points with the Legendre symbol of x^3 + ax + b, for every x.
+     */
+    private static BigInteger countNaive(long a, long b, long p) {
+        long count = 1;
+        for (long x = 0; x < p; ++x) {
+            long rhs = ((x * x % p + a) % p * x % p + b) % p;
+            if (rhs == 0) {
+                count += 1;
+            } else if (BigInteger.valueOf(rhs).modPow(BigInteger.valueOf((p - 1) / 2), BigInteger.valueOf(p)).equals(BigInteger.ONE)) {
+                count += 2;
+            }
+        }
+        return BigInteger.valueOf(count);
+    }
+
+    /**
+     * Return the trace of the Frobenius map.
+     */
+    private static BigInteger trace(final BigInteger a, final BigInteger b, final BigInteger p) throws Exception {
+        // The primes l, until their product exceeds 4 sqrt(p), i.e. its
+        // square exceeds 16p.
+        List<Integer> primes = new ArrayList<Integer>();
+        BigInteger product = BigInteger.ONE;
+        BigInteger bound = p.shiftLeft(4);
+        for (int l = 2; product.pow(2).compareTo(bound) <= 0; ++l) {
+            if (BigInteger.valueOf(l).isProbablePrime(30) && !p.equals(BigInteger.valueOf(l))) {
+                primes.add(l);
+                product = product.multiply(BigInteger.valueOf(l));
+            }
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (final int l : primes) {
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return new Schoof(a, b, p).traceModulo(l);
+                }
+            });
+        }
+        List<Future<Integer>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+
+        // Chinese remainder theorem
+        BigInteger t = BigInteger.ZERO;
+        BigInteger modulus = BigInteger.ONE;
+        for (int i = 0; i < primes.size(); ++i) {
+            BigInteger l = BigInteger.valueOf(primes.get(i));
+            BigInteger r;
+            try {
+                r = BigInteger.valueOf(results.get(i).get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            // t' = t + modulus * ((r - t) / modulus mod l)
+            BigInteger k = r.subtract(t).multiply(modulus.modInverse(l)).mod(l);
+            t = t.add(modulus.multiply(k));
+            modulus = modulus.multiply(l);
+        }
+        // Take the representative closest to 0.
+        if (t.shiftLeft(1).compareTo(modulus) > 0) {
+            t = t.subtract(modulus);
+        }
+        return t;
+    }
+
+    /**
+     * The computation of the trace modulo one prime l.
+     */
+    private static final class Schoof {
+        private final BigInteger a;
+        private final BigInteger b;
+        private final BigInteger p;
+        private final FpPolynomials fp;
+        // x^3 + ax + b
+        private final BigInteger[] f;
+
+        // The division polynomials computed so far; the even ones without
+        // their factor y.
+        private final List<BigInteger[]> psi = new ArrayList<BigInteger[]>();
+
+        Schoof(BigInteger a, BigInteger b, BigInteger p) {
+            this.a = a;
+            this.b = b;
+            this.p = p;
+            this.fp = new FpPolynomials(p);
+            this.f = FpPolynomials.normalize(new BigInteger[]{b, a, BigInteger.ZERO, BigInteger.ONE});
+        }
+
+        int traceModulo(int l) throws Exception {
+            if (l == 2) {
+                // t is even if and only if the curve has a point of order 2,
+                // that is f has a root, that is gcd(x^p - x, f) is not 1.
+                FpPolynomials.Modulus m = fp.new Modulus(f);
+                BigInteger[] xp = fp.subtract(m.powerOfX(p), FpPolynomials.monomial(1));
+                return FpPolynomials.degree(fp.gcd(f, xp)) > 0 ? 0 : 1;
+            }
+
+            FpPolynomials.Modulus m = fp.new Modulus(divisionPolynomial(l));
+            // phi(x, y) = (x^p, y^p) = (x^p, y f^((p - 1) / 2)), and
+            // phi^2(x, y) = (x^(p^2), y f^((p - 1) / 2) (f^((p - 1) / 2))^p).
+            BigInteger[] x1 = m.powerOfX(p);
+            BigInteger[] y1 = m.power(m.reduce(f), p.shiftRight(1));
+            BigInteger[] x2 = m.power(x1, p);
+            BigInteger[] y2 = m.multiply(y1, m.power(y1, p));
+
+            while (true) {
+                try {
+                    return traceModulo(l, m, x1, y1, x2, y2);
+                } catch (FpPolynomials.NotInvertibleException e) {
+                    // A proper factor of the modulus was found: the l-torsion
+                    // points whose x is a root of it are enough, and the
+                    // smaller modulus speeds up the rest.
+                    BigInteger[] g = e.gcd;
+                    if (FpPolynomials.degree(g) <= 0 || FpPolynomials.degree(g) >= m.degree()) {
+                        throw new ArithmeticException("No proper factor found modulo " + l + ", is p prime?");
+                    }
+                    BigInteger[] cofactor = fp.divide(m.h, g)[0];
+                    if (FpPolynomials.degree(cofactor) < FpPolynomials.degree(g)) {
+                        g = cofactor;
+                    }
+                    m = fp.new Modulus(g);
+                    x1 = m.reduce(x1);
+                    y1 = m.reduce(y1);
+                    x2 = m.reduce(x2);
+                    y2 = m.reduce(y2);
+                }
+            }
+        }
+
+        /**
+         * Find t modulo l from phi^2(P) + (p mod l) P = t phi(P), for the
+         * l-torsion points P whose x is a root of the modulus.
+         */
+        private int traceModulo(int l, FpPolynomials.Modulus m, BigInteger[] x1, BigInteger[] y1,
+                BigInteger[] x2, BigInteger[] y2) throws FpPolynomials.NotInvertibleException {
+            Curve curve = new Curve(m);
+            int q = p.mod(BigInteger.valueOf(l)).intValue();
+            Point sum = curve.add(new Point(x2, y2),
+                    curve.multiply(new Point(FpPolynomials.monomial(1), fp.constant(BigInteger.ONE)), q));
+            if (sum == null) {
+                return 0;
+            }
+            Point phi = new Point(x1, y1);
+            Point multiple = phi;
+            for (int tau = 1; tau <= (l - 1) / 2; ++tau) {
+                if (curve.equalX(sum, multiple)) {
+                    if (curve.equal(sum.y, multiple.y)) {
+                        return tau;
+                    }
+                    // Then sum = -multiple on all points.
+                    curve.requireEqual(sum.y, fp.subtract(FpPolynomials.ZERO, multiple.y));
+                    return l - tau;
+                }
+                multiple = curve.add(multiple, phi);
+            }
+            throw new ArithmeticException("No trace found modulo " + l + ", is p prime?");
+        }
+
+        /**
+         * Return psi_n, without its factor y when n is even.
+         */
+        private BigInteger[] divisionPolynomial(int n) {
+            if (psi.isEmpty()) {
+                BigInteger three = BigInteger.valueOf(3);
+                psi.add(FpPolynomials.ZERO);
+                psi.add(fp.constant(BigInteger.ONE));
+                psi.add(fp.constant(BigInteger.valueOf(2)));
+                // 3x^4 + 6ax^2 + 12bx - a^2
+                psi.add(FpPolynomials.normalize(new BigInteger[]{
+                    a.pow(2).negate().mod(p), b.multiply(BigInteger.valueOf(12)).mod(p),
+                    a.multiply(BigInteger.valueOf(6)).mod(p), BigInteger.ZERO, three}));
+                // 4(x^6 + 5ax^4 + 20bx^3 - 5a^2x^2 - 4abx - 8b^2 - a^3)
+                psi.add(fp.scale(FpPolynomials.normalize(new BigInteger[]{
+                    b.pow(2).multiply(BigInteger.valueOf(-8)).subtract(a.pow(3)).mod(p),
+                    a.multiply(b).multiply(BigInteger.valueOf(-4)).mod(p),
+                    a.pow(2).multiply(BigInteger.valueOf(-5)).mod(p),
+                    b.multiply(BigInteger.valueOf(20)).mod(p),
+                    a.multiply(BigInteger.valueOf(5)).mod(p), BigInteger.ZERO, BigInteger.ONE}), BigInteger.valueOf(4)));
+            }
+            while (psi.size() <= n) {
+                int k = psi.size();
+                int h = k / 2;
+                BigInteger[] result;
+                if (k % 2 == 1) {
+                    // psi_2h+1 = psi_h+2 psi_h^3 - psi_h-1 psi_h+1^3, where
+                    // the product of the two even ones carries y^4 = f^2.
+                    BigInteger[] first = fp.multiply(psi.get(h + 2), cube(psi.get(h)));
+                    BigInteger[] second = fp.multiply(psi.get(h - 1), cube(psi.get(h + 1)));
+                    BigInteger[] ff = fp.multiply(f, f);
+                    if (h % 2 == 0) {
+                        first = fp.multiply(first, ff);
+                    } else {
+                        second = fp.multiply(second, ff);
+                    }
+                    result = fp.subtract(first, second);
+                } else {
+                    // psi_2h = psi_h (psi_h+2 psi_h-1^2 - psi_h-2 psi_h+1^2) / 2y
+                    BigInteger[] first = fp.multiply(psi.get(h + 2), square(psi.get(h - 1)));
+                    BigInteger[] second = fp.multiply(psi.get(h - 2), square(psi.get(h + 1)));
+                    result = fp.multiply(psi.get(h), fp.subtract(first, second));
+                    result = fp.scale(result, BigInteger.valueOf(2).modInverse(p));
+                }
+                psi.add(result);
+            }
+            return psi.get(n);
+        }
+
+        private BigInteger[] square(BigInteger[] a) {
+            return fp.multiply(a, a);
+        }
+
+        private BigInteger[] cube(BigInteger[] a) {
+            return fp.multiply(a, square(a));
+        }
+
+        /**
+         * The point (x, y Y) of the curve over F_p[x, y] / (h, y^2 - f), where
+         * both x and Y are polynomials in x.
+         */
+        private static final class Point {
+            final BigInteger[] x;
+            final BigInteger[] y;
+
+            Point(BigInteger[] x, BigInteger[] y) {
+                this.x = x;
+                this.y = y;
+            }
+        }
+
+        /**
+         * The curve arithmetic modulo h, with null for the point of infinity.
+         * Whenever two values are equal for some roots of h but not for all
+         * of them, NotInvertibleException reports the factor of h they split
+         * it into.
+         */
+        private final class Curve {
+            private final FpPolynomials.Modulus m;
+            private final BigInteger[] f;
+
+            Curve(FpPolynomials.Modulus m) {
+                this.m = m;
+                this.f = m.reduce(Schoof.this.f);
+            }
+
+            boolean equal(BigInteger[] u, BigInteger[] v) throws FpPolynomials.NotInvertibleException {
+                BigInteger[] d = m.reduce(fp.subtract(u, v));
+                if (FpPolynomials.isZero(d)) {
+                    return true;
+                }
+                BigInteger[] g = fp.gcd(m.h, d);
+                if (FpPolynomials.degree(g) > 0) {
+                    throw new FpPolynomials.NotInvertibleException(g);
+                }
+                return false;
+            }
+
+            boolean equalX(Point p1, Point p2) throws FpPolynomials.NotInvertibleException {
+                return equal(p1.x, p2.x);
+            }
+
+            void requireEqual(BigInteger[] u, BigInteger[] v) throws FpPolynomials.NotInvertibleException {
+                if (!equal(u, v)) {
+                    throw new ArithmeticException("Inconsistent point, is p prime?");
+                }
+            }
+
+            Point add(Point p1, Point p2) throws FpPolynomials.NotInvertibleException {
+                if (p1 == null) {
+                    return p2;
+                } else if (p2 == null) {
+                    return p1;
+                }
+                if (equalX(p1, p2)) {
+                    if (equal(p1.y, fp.subtract(FpPolynomials.ZERO, p2.y))) {
+                        return null;
+                    }
+                    requireEqual(p1.y, p2.y);
+                    return twice(p1);
+                }
+                // lambda = y (Y2 - Y1) / (x2 - x1)
+                BigInteger[] lambda = m.multiply(fp.subtract(p2.y, p1.y), m.inverse(fp.subtract(p2.x, p1.x)));
+                return chord(p1, p2.x, lambda);
+            }
+
+            Point twice(Point p1) throws FpPolynomials.NotInvertibleException {
+                if (p1 == null) {
+                    return null;
+                }
+                // lambda = (3x^2 + a) / (2 y Y) = y (3x^2 + a) / (2 f Y)
+                BigInteger[] numerator = fp.add(fp.scale(m.multiply(p1.x, p1.x), BigInteger.valueOf(3)), fp.constant(a));
+                BigInteger[] denominator = fp.scale(m.multiply(f, p1.y), BigInteger.valueOf(2));
+                BigInteger[] lambda = m.multiply(numerator, m.inverse(denominator));
+                return chord(p1, p1.x, lambda);
+            }
+
+            /**
+             * Return the third point on the line of slope y lambda through p1
+             * and the point with the given x, reflected.
+             */
+            private Point chord(Point p1, BigInteger[] x2, BigInteger[] lambda) {
+                // x3 = lambda^2 y^2 - x1 - x2 = f lambda^2 - x1 - x2
+                BigInteger[] x3 = fp.subtract(fp.subtract(m.multiply(f, m.multiply(lambda, lambda)), p1.x), x2);
+                // y3 = lambda (x1 - x3) - Y1, all times y
+                BigInteger[] y3 = fp.subtract(m.multiply(lambda, fp.subtract(p1.x, x3)), p1.y);
+                return new Point(m.reduce(x3), m.reduce(y3));
+            }
+
+            Point multiply(Point p1, int k) throws FpPolynomials.NotInvertibleException {
+                Point result = null;
+                for (int i = 31 - Integer.numberOfLeadingZeros(k); i >= 0; --i) {
+                    result = twice(result);
+                    if (((k >>> i) & 1) != 0) {
+                        result = add(result, p1);
+                    }
+                }
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * Maps the blocks of a plain text to points of a curve and back, for the
+ * El Gamal encryption of ECCEngine.
+ *
+ * A block of getBlockSize(c) bytes is handed over as the non-negative integer
+ * m it represents, big-endian, so m < 2^(8 * getBlockSize(c)). Both sides of
+ * an encryption must use the same encoder: it is chosen per engine, see
+ * ECCEngine.getPointEncoder, and is not part of the keys.
+ *
+ * Implementations must be safe to call from many threads at once.
+ */
+public interface PointEncoder {
+
+    /**
+     * Return the number of plain text bytes encoded into one point.
+     *
+     * @param c
+     * @return
+     */
+    int getBlockSize(EllipticCurve c);
+
+    /**
+     * Return the point encoding m.
+     *
+     * @param c
+     * @param m
+     * @return
+     * @throws Exception if m cannot be encoded
+     */
+    ECPoint encode(EllipticCurve c, BigInteger m) throws Exception;
+
+    /**
+     * Return the integer encoded by a point returned by encode.
+     *
+     * @param c
+     * @param point
+     * @return
+     * @throws Exception if the point is not an encoding
+     */
+    BigInteger decode(EllipticCurve c, ECPoint point) throws Exception;
+
+    /**
+     * The encoding of Koblitz: the x-coordinate of the point is
+     * m * AUXILIARY_CONSTANT + k, with the smallest k for which the curve has
+     * such a point. This needs p = 3 (mod 4), and a varying number of
+     * attempts; see ECC.koblitzProbabilistic.
+     */
+    public static final PointEncoder KOBLITZ = new PointEncoder() {
+        @Override
+        public int getBlockSize(EllipticCurve c) {
+            // Leaves room for the multiplication by AUXILIARY_CONSTANT.
+            return Math.max(c.getP().bitLength() / 8 - 5, 1);
+        }
+
+        @Override
+        public ECPoint encode(EllipticCurve c, BigInteger m) throws Exception {
+            return ECC.koblitzProbabilistic(c, m);
+        }
+
+        @Override
+        public BigInteger decode(EllipticCurve c, ECPoint point) {
+            return point.x.divide(ECC.AUXILIARY_CONSTANT);
+        }
+    };
+
+    /**
+     * The encoding of Koblitz with a power-of-two auxiliary space, which
+     * fits more bytes into a point; see PackedEncoder.
+     */
+    public static final PackedEncoder PACKED = new PackedEncoder();
+}
@@ -1,6 +1,9 @@
 package ecc;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -15,11 +18,17 @@ import java.util.List;
  * c, the elliptic curve used in the calculations,
  * k is the private key, a randomly-generated integer, satisfying 1 <= k < p-1.
  * 
+ * It is also the key of the ECElGamal algorithm of ECCProvider. Unlike the
+ * keys of java.security, it cannot be serialized, since EllipticCurve and
+ * ECPoint are not Serializable: save it with saveToFile instead.
+ * 
  * @author Ahmad Zaky & Alif Raditya Rochman
  */
-public class PrivateKey {
-    private EllipticCurve c;
-    private BigInteger k;
+public class PrivateKey implements java.security.PrivateKey {
+    private static final long serialVersionUID = 1L;
+
+    private transient EllipticCurve c;
+    private transient BigInteger k;
     
     public PrivateKey(EllipticCurve c, BigInteger k) {
         this.c = c;
@@ -63,6 +72,32 @@ public class PrivateKey {
         return c.getBasePoint();
     }
     
+    /**
+     * Return the name of the algorithm of ECCProvider using this key.
+     * 
+     * @return 
+     */
+    @Override
+    public String getAlgorithm() {
+        return ECCProvider.ALGORITHM;
+    }
+    
+    /**
+     * The key has no standard encoding; ECCKeyFactorySpi converts it to and
+     * from a key specification instead.
+     * 
+     * @return null
+     */
+    @Override
+    public String getFormat() {
+        return null;
+    }
+    
+    @Override
+    public byte[] getEncoded() {
+        return null;
+    }
+    
     /**
      * Save the current key to a *.pri file.
      * TODO: design the representation of the key inside a binary file
@@ -89,4 +124,12 @@ public class PrivateKey {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Refuse to serialize the key, instead of writing it without its curve
+     * and scalar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
 }
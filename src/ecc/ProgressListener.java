@@ -0,0 +1,38 @@
+package ecc;
+
+/**
+ * This interface receives the progress of a long operation of ECCEngine, and
+ * can cancel it.
+ *
+ * The engine calls progress once per processed block, from whichever thread
+ * processed it, so implementations must be thread-safe and cheap; a GUI
+ * should hand the values over to its own thread rather than update
+ * components here. Between blocks the engine checks isCancelled, and throws
+ * a java.util.concurrent.CancellationException once it returns true.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called after each block.
+     *
+     * @param completed the number of blocks done so far, in any order
+     * @param total the number of blocks of the operation
+     */
+    void progress(int completed, int total);
+
+    boolean isCancelled();
+
+    /**
+     * A listener ignoring the progress and never cancelling.
+     */
+    ProgressListener NONE = new ProgressListener() {
+        @Override
+        public void progress(int completed, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+}
@@ -2,6 +2,9 @@ package ecc;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -17,11 +20,17 @@ import java.util.List;
  * P_K, the point obtained from k * G, where k is the corresponding private key
  * and G is the base point of c.
  * 
+ * It is also the key of the ECElGamal algorithm of ECCProvider. Unlike the
+ * keys of java.security, it cannot be serialized, since EllipticCurve and
+ * ECPoint are not Serializable: save it with saveToFile instead.
+ * 
  * @author Ahmad Zaky
  */
-public class PublicKey {
-    private EllipticCurve c;
-    private ECPoint P_K;
+public class PublicKey implements java.security.PublicKey {
+    private static final long serialVersionUID = 1L;
+
+    private transient EllipticCurve c;
+    private transient ECPoint P_K;
 
     public PublicKey(EllipticCurve c, ECPoint P_K) {
         this.c = c;
@@ -67,6 +76,32 @@ public class PublicKey {
         return c.getBasePoint();
     }
     
+    /**
+     * Return the name of the algorithm of ECCProvider using this key.
+     * 
+     * @return 
+     */
+    @Override
+    public String getAlgorithm() {
+        return ECCProvider.ALGORITHM;
+    }
+    
+    /**
+     * The key has no standard encoding; ECCKeyFactorySpi converts it to and
+     * from a key specification instead.
+     * 
+     * @return null
+     */
+    @Override
+    public String getFormat() {
+        return null;
+    }
+    
+    @Override
+    public byte[] getEncoded() {
+        return null;
+    }
+    
     /**
      * Save the current key to a *.pub file.
      * TODO: design the representation of the key inside a binary file
@@ -96,4 +131,12 @@ public class PublicKey {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Refuse to serialize the key, instead of writing it without its curve
+     * and point.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
 }
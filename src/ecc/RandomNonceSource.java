@@ -0,0 +1,39 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * A nonce source drawing from a java.util.Random (or SecureRandom), for
+ * callers that bring their own generator, such as
+ * ECC.generateKeyPair(EllipticCurve, Random).
+ * 
+ * Every call goes to the same generator, so it is only as thread-safe, and
+ * as contended, as that generator.
+ */
+public class RandomNonceSource implements NonceSource {
+
+    private final Random random;
+
+    public RandomNonceSource(Random random) {
+        this.random = random;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    @Override
+    public BigInteger nextNonce(BigInteger bound, BigInteger secret, byte[] digest) {
+        BigInteger k;
+        do {
+            k = new BigInteger(bound.bitLength(), random);
+        } while (k.signum() == 0 || k.compareTo(bound) >= 0);
+        return k;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return false;
+    }
+}
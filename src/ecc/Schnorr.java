@@ -0,0 +1,253 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements Schnorr signatures over EllipticCurve, with batch
+ * verification.
+ * 
+ * A signature of m under the key pair (d, Q = dG) is (R, s), where R = kG for
+ * a nonce k, e = H(R || Q || m) mod n, and s = k + e * d mod n. It is valid if
+ * sG = R + eQ. The hash H is SHA-256, SHA-384 or SHA-512 as in ECDSA.
+ * 
+ * A batch of signatures is verified at once by checking
+ * (sum of a_i * s_i) G - sum of a_i * R_i - sum of a_i * e_i * Q_i = 0
+ * for random 128-bit a_i (with a_1 = 1), using a single multi-scalar
+ * multiplication. The coefficients of signatures under the same key are
+ * summed up first, so a batch under one key needs only n + 1 points. If any
+ * signature is invalid the batch fails, except with probability 2^-128.
+ */
+public class Schnorr {
+
+    private static final NonceSource DEFAULT_NONCE_SOURCE = new DeterministicNonceSource();
+
+    // The source of the random coefficients of batch verification.
+    private static final NonceSource BATCH_SOURCE = new DrbgNonceSource();
+    private static final BigInteger BATCH_BOUND = BigInteger.ONE.shiftLeft(128);
+
+    // The size of the batches verifyAll hands to the workers.
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * Sign the message with deterministic nonces (RFC 6979, with the private
+     * key and the hash of the message).
+     * 
+     * @param message
+     * @param key
+     * @return 
+     */
+    public static SchnorrSignature sign(byte[] message, PrivateKey key) {
+        return sign(message, key, DEFAULT_NONCE_SOURCE);
+    }
+
+    public static SchnorrSignature sign(byte[] message, PrivateKey key, NonceSource source) {
+        EllipticCurve c = key.getCurve();
+        BigInteger n = ECDSA.getOrder(c);
+        BigInteger d = key.getKey();
+        FixedBaseTable table = c.getFixedBaseTable();
+        ECPoint q = table.multiply(d);
+
+        BigInteger k = source.nextNonce(n, d, ECDSA.hash(message, n));
+        ECPoint r = table.multiply(k);
+        BigInteger e = challenge(c, r, q, message, n);
+        BigInteger s = k.add(e.multiply(d)).mod(n);
+        return new SchnorrSignature(r, s);
+    }
+
+    /**
+     * Verify one signature, checking sG - eQ = R.
+     * 
+     * @param message
+     * @param signature
+     * @param key
+     * @return 
+     */
+    public static boolean verify(byte[] message, SchnorrSignature signature, PublicKey key) {
+        EllipticCurve c = key.getCurve();
+        BigInteger n = ECDSA.getOrder(c);
+        if (!isWellFormed(c, n, signature, key)) {
+            return false;
+        }
+        BigInteger e = challenge(c, signature.getR(), key.getKey(), message, n);
+        ECPoint r = c.getFixedBaseTable().multiplyAdd(signature.getS(), n.subtract(e), key.getKey());
+        return !r.isPointOfInfinity()
+                && r.x.equals(signature.getR().x.mod(c.getP()))
+                && r.y.equals(signature.getR().y.mod(c.getP()));
+    }
+
+    /**
+     * Verify a batch of signatures under one key at once.
+     * 
+     * @param messages
+     * @param signatures
+     * @param key
+     * @return whether all the signatures are valid
+     */
+    public static boolean verifyBatch(List<byte[]> messages, List<SchnorrSignature> signatures, PublicKey key) {
+        return verifyBatch(messages, signatures, Collections.nCopies(messages.size(), key));
+    }
+
+    /**
+     * Verify a batch of signatures at once. All keys must be on the same
+     * curve.
+     * 
+     * @param messages
+     * @param signatures
+     * @param keys the key of each signature
+     * @return whether all the signatures are valid
+     */
+    public static boolean verifyBatch(List<byte[]> messages, List<SchnorrSignature> signatures, List<PublicKey> keys) {
+        if (messages.size() != signatures.size() || messages.size() != keys.size()) {
+            throw new IllegalArgumentException("There should be exactly one signature and one key per message");
+        }
+        if (messages.isEmpty()) {
+            return true;
+        }
+        EllipticCurve c = keys.get(0).getCurve();
+        BigInteger n = ECDSA.getOrder(c);
+
+        int count = messages.size();
+        List<ECPoint> points = new ArrayList<ECPoint>(count + 1);
+        List<BigInteger> scalars = new ArrayList<BigInteger>(count + 1);
+        // The coefficient of each distinct key, and its index in the lists.
+        Map<List<BigInteger>, Integer> keyIndex = new HashMap<List<BigInteger>, Integer>();
+        BigInteger gScalar = BigInteger.ZERO;
+
+        for (int i = 0; i < count; ++i) {
+            SchnorrSignature signature = signatures.get(i);
+            PublicKey key = keys.get(i);
+            if (!isWellFormed(c, n, signature, key)) {
+                return false;
+            }
+            BigInteger a = i == 0 ? BigInteger.ONE : BATCH_SOURCE.nextNonce(BATCH_BOUND, null, null);
+            BigInteger e = challenge(c, signature.getR(), key.getKey(), messages.get(i), n);
+
+            gScalar = gScalar.add(a.multiply(signature.getS()));
+            // - a_i * R_i
+            points.add(signature.getR().negate());
+            scalars.add(a);
+            // - a_i * e_i * Q_i, merged with the other signatures under Q_i
+            ECPoint q = key.getKey();
+            List<BigInteger> id = Arrays.asList(q.x.mod(c.getP()), q.y.mod(c.getP()));
+            Integer index = keyIndex.get(id);
+            if (index == null) {
+                keyIndex.put(id, points.size());
+                points.add(q.negate());
+                scalars.add(a.multiply(e).mod(n));
+            } else {
+                scalars.set(index, scalars.get(index).add(a.multiply(e)).mod(n));
+            }
+        }
+
+        JacobianPoint sum = MultiScalarMultiplication.multiplyJacobian(c,
+                points.toArray(new ECPoint[points.size()]),
+                scalars.toArray(new BigInteger[scalars.size()]));
+        sum = c.addJacobian(sum, c.getFixedBaseTable().multiplyJacobian(gScalar.mod(n)));
+        return sum.isPointOfInfinity();
+    }
+
+    /**
+     * Verify every signature in batches, on the workers of
+     * ECC.getParallelEngine().
+     * 
+     * @param messages
+     * @param signatures
+     * @param keys the key of each signature
+     * @return for each message whether its signature is valid
+     */
+    public static boolean[] verifyAll(List<byte[]> messages, List<SchnorrSignature> signatures, List<PublicKey> keys) {
+        return verifyAll(ECC.getParallelEngine(), messages, signatures, keys);
+    }
+
+    /**
+     * Verify every signature, in batches split among the workers of the
+     * given engine. A batch that fails is split in halves until the invalid
+     * signatures are found, so the cost stays close to batch verification as
+     * long as they are rare.
+     * 
+     * @param engine
+     * @param messages
+     * @param signatures
+     * @param keys the key of each signature
+     * @return for each message whether its signature is valid
+     */
+    public static boolean[] verifyAll(ECCEngine engine, final List<byte[]> messages, final List<SchnorrSignature> signatures, final List<PublicKey> keys) {
+        if (messages.size() != signatures.size() || messages.size() != keys.size()) {
+            throw new IllegalArgumentException("There should be exactly one signature and one key per message");
+        }
+        if (!keys.isEmpty()) {
+            keys.get(0).getCurve().getFixedBaseTable();
+        }
+        final boolean[] valid = new boolean[messages.size()];
+        int chunks = (valid.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        engine.runInParallel(chunks, 1, new ECCEngine.RangeTask() {
+            @Override
+            public void run(int fromChunk, int toChunk) {
+                for (int chunk = fromChunk; chunk < toChunk; ++chunk) {
+                    int from = chunk * CHUNK_SIZE;
+                    int to = Math.min(valid.length, from + CHUNK_SIZE);
+                    verifyRange(messages, signatures, keys, from, to, valid);
+                }
+            }
+        });
+        return valid;
+    }
+
+    public static boolean[] verifyAll(List<byte[]> messages, List<SchnorrSignature> signatures, PublicKey key) {
+        return verifyAll(messages, signatures, Collections.nCopies(messages.size(), key));
+    }
+
+    public static boolean[] verifyAll(ECCEngine engine, List<byte[]> messages, List<SchnorrSignature> signatures, PublicKey key) {
+        return verifyAll(engine, messages, signatures, Collections.nCopies(messages.size(), key));
+    }
+
+    private static void verifyRange(List<byte[]> messages, List<SchnorrSignature> signatures, List<PublicKey> keys, int from, int to, boolean[] valid) {
+        if (to - from == 1) {
+            valid[from] = verify(messages.get(from), signatures.get(from), keys.get(from));
+            return;
+        }
+        if (verifyBatch(messages.subList(from, to), signatures.subList(from, to), keys.subList(from, to))) {
+            Arrays.fill(valid, from, to, true);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        verifyRange(messages, signatures, keys, from, middle, valid);
+        verifyRange(messages, signatures, keys, middle, to, valid);
+    }
+
+    private static boolean isWellFormed(EllipticCurve c, BigInteger n, SchnorrSignature signature, PublicKey key) {
+        ECPoint r = signature.getR();
+        ECPoint q = key.getKey();
+        BigInteger s = signature.getS();
+        return r != null && !r.isPointOfInfinity() && c.isPointInsideCurve(r)
+                && q != null && !q.isPointOfInfinity() && c.isPointInsideCurve(q)
+                && s.signum() >= 0 && s.compareTo(n) < 0;
+    }
+
+    /**
+     * e = H(R || Q || m) mod n, with the coordinates written in as many bytes
+     * as p needs.
+     */
+    private static BigInteger challenge(EllipticCurve c, ECPoint r, ECPoint q, byte[] message, BigInteger n) {
+        int length = (c.getP().bitLength() + 7) / 8;
+        byte[] input = new byte[length * 4 + message.length];
+        write(r.x.mod(c.getP()), input, 0, length);
+        write(r.y.mod(c.getP()), input, length, length);
+        write(q.x.mod(c.getP()), input, length * 2, length);
+        write(q.y.mod(c.getP()), input, length * 3, length);
+        System.arraycopy(message, 0, input, length * 4, message.length);
+        return new BigInteger(1, ECDSA.hash(input, n)).mod(n);
+    }
+
+    private static void write(BigInteger value, byte[] out, int offset, int length) {
+        byte[] bytes = value.toByteArray();
+        int count = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - count, out, offset + length - count, count);
+    }
+}
@@ -0,0 +1,33 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * A Schnorr signature, the commitment point R = kG together with the
+ * response s = k + e * d mod n.
+ * 
+ * R is kept as a full point rather than as a hash or an x-coordinate, which
+ * is what makes batch verification possible.
+ */
+public class SchnorrSignature {
+    private final ECPoint r;
+    private final BigInteger s;
+
+    public SchnorrSignature(ECPoint r, BigInteger s) {
+        this.r = r;
+        this.s = s;
+    }
+
+    public ECPoint getR() {
+        return r;
+    }
+
+    public BigInteger getS() {
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + r.toString(16) + ", " + s.toString(16) + ")";
+    }
+}
@@ -0,0 +1,467 @@
+package ecc;
+
+import java.math.BigInteger;
+
+/**
+ * This class implements the arithmetic of an elliptic curve
+ * y^2 = x^3 + ax + b mod p with an odd prime p below 2^62, using primitive
+ * long values only.
+ *
+ * Products are reduced with Montgomery multiplication (R = 2^64), which only
+ * needs the high and low halves of 64-bit products, and inverses are computed
+ * with the extended Euclidean algorithm. Scalar multiplication works in
+ * Jacobian coordinates kept in Montgomery form, with a single inversion at
+ * the end.
+ *
+ * For such curves this is typically two orders of magnitude faster than the
+ * BigInteger arithmetic of EllipticCurve, which uses it automatically for
+ * add and multiply. The Point class of this one avoids even the conversion
+ * from and to BigInteger, for workloads doing millions of operations on toy
+ * curves.
+ *
+ * Instances are immutable and can be shared by any number of threads.
+ */
+public class SmallEllipticCurve {
+
+    /**
+     * The bound on p.
+     */
+    public static final long MAX_P = 1L << 62;
+
+    /**
+     * A point of a SmallEllipticCurve, with coordinates in [0, p).
+     */
+    public static final class Point {
+        public final long x;
+        public final long y;
+        private final boolean pointOfInfinity;
+
+        public static final Point INFINITY = new Point(0, 0, true);
+
+        public Point(long x, long y) {
+            this(x, y, false);
+        }
+
+        private Point(long x, long y, boolean pointOfInfinity) {
+            this.x = x;
+            this.y = y;
+            this.pointOfInfinity = pointOfInfinity;
+        }
+
+        public boolean isPointOfInfinity() {
+            return pointOfInfinity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Point)) {
+                return false;
+            }
+            Point point = (Point) o;
+            if (pointOfInfinity || point.pointOfInfinity) {
+                return pointOfInfinity == point.pointOfInfinity;
+            }
+            return x == point.x && y == point.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return pointOfInfinity ? -1 : (int) (x * 31 + y);
+        }
+
+        @Override
+        public String toString() {
+            if (pointOfInfinity) {
+                return "INFINITY";
+            } else {
+                return "(" + x + ", " + y + ")";
+            }
+        }
+    }
+
+    private final long a;
+    private final long b;
+    private final long p;
+
+    // -p^-1 mod 2^64, R^2 mod p and R^3 mod p, for the Montgomery arithmetic.
+    private final long pNegInverse;
+    private final long r2;
+    private final long r3;
+
+    // One and a in Montgomery form.
+    private final long oneM;
+    private final long aM;
+
+    /**
+     * Create the curve y^2 = x^3 + ax + b mod p.
+     *
+     * @param a
+     * @param b
+     * @param p an odd prime with 3 <= p < 2^62
+     */
+    public SmallEllipticCurve(long a, long b, long p) {
+        if (p < 3 || p >= MAX_P || (p & 1) == 0) {
+            throw new IllegalArgumentException("p should be an odd prime below 2^62");
+        }
+        this.p = p;
+        this.a = Math.floorMod(a, p);
+        this.b = Math.floorMod(b, p);
+
+        // Newton's iteration doubles the number of correct low bits of the
+        // inverse each step; p is its own inverse modulo 8.
+        long inverse = p;
+        for (int i = 0; i < 5; ++i) {
+            inverse *= 2 - p * inverse;
+        }
+        pNegInverse = -inverse;
+
+        BigInteger bigP = BigInteger.valueOf(p);
+        BigInteger r = BigInteger.ONE.shiftLeft(64).mod(bigP);
+        r2 = r.multiply(r).mod(bigP).longValue();
+        r3 = r.pow(3).mod(bigP).longValue();
+        oneM = r.longValue();
+        aM = toMontgomery(this.a);
+    }
+
+    /**
+     * Whether the arithmetic of a curve with the given prime can be done by
+     * this class.
+     *
+     * @param p
+     * @return
+     */
+    public static boolean isSupported(BigInteger p) {
+        return p.bitLength() <= 62 && p.testBit(0) && p.compareTo(BigInteger.valueOf(3)) >= 0;
+    }
+
+    public long getA() {
+        return a;
+    }
+
+    public long getB() {
+        return b;
+    }
+
+    public long getP() {
+        return p;
+    }
+
+    public boolean isPointInsideCurve(Point point) {
+        if (point.isPointOfInfinity()) return true;
+
+        long x = toMontgomery(point.x);
+        long y = toMontgomery(point.y);
+        long rhs = addMod(multiplyMontgomery(addMod(multiplyMontgomery(x, x), aM), x), toMontgomery(b));
+        return multiplyMontgomery(y, y) == rhs;
+    }
+
+    public Point negate(Point p1) {
+        if (p1.isPointOfInfinity()) {
+            return p1;
+        }
+        return new Point(p1.x, p1.y == 0 ? 0 : p - p1.y);
+    }
+
+    /**
+     * Add two points, with the affine formulas of EllipticCurve.add.
+     *
+     * @param p1
+     * @param p2
+     * @return
+     */
+    public Point add(Point p1, Point p2) {
+        if (p1.isPointOfInfinity()) {
+            return p2;
+        } else if (p2.isPointOfInfinity()) {
+            return p1;
+        }
+
+        long x1 = toMontgomery(p1.x);
+        long y1 = toMontgomery(p1.y);
+        long x2 = toMontgomery(p2.x);
+        long y2 = toMontgomery(p2.y);
+
+        long lambda;
+        if (x1 == x2) {
+            if (y1 != y2 || y1 == 0) {
+                return Point.INFINITY;
+            }
+            // lambda = (3x1^2 + a) / (2y1)
+            long xx = multiplyMontgomery(x1, x1);
+            long nom = addMod(addMod(addMod(xx, xx), xx), aM);
+            lambda = multiplyMontgomery(nom, inverseMontgomery(addMod(y1, y1)));
+        } else {
+            // lambda = (y2 - y1) / (x2 - x1)
+            lambda = multiplyMontgomery(subtractMod(y2, y1), inverseMontgomery(subtractMod(x2, x1)));
+        }
+
+        long xr = subtractMod(subtractMod(multiplyMontgomery(lambda, lambda), x1), x2);
+        long yr = subtractMod(multiplyMontgomery(lambda, subtractMod(x1, xr)), y1);
+        return new Point(fromMontgomery(xr), fromMontgomery(yr));
+    }
+
+    public Point subtract(Point p1, Point p2) {
+        return add(p1, negate(p2));
+    }
+
+    /**
+     * Return n * p1.
+     *
+     * @param p1
+     * @param n
+     * @return
+     */
+    public Point multiply(Point p1, long n) {
+        if (n < 0) {
+            if (n == Long.MIN_VALUE) {
+                return multiply(p1, BigInteger.valueOf(n));
+            }
+            return multiply(negate(p1), -n);
+        }
+        if (p1.isPointOfInfinity() || n == 0) {
+            return Point.INFINITY;
+        }
+
+        Jacobian result = new Jacobian(toMontgomery(p1.x), toMontgomery(p1.y), oneM);
+        long x2 = result.x;
+        long y2 = result.y;
+        for (int i = 62 - Long.numberOfLeadingZeros(n); i >= 0; --i) {
+            doubleJacobian(result);
+            if (((n >>> i) & 1) != 0) {
+                addJacobian(result, x2, y2);
+            }
+        }
+        return toAffine(result);
+    }
+
+    /**
+     * Return n * p1.
+     *
+     * @param p1
+     * @param n
+     * @return
+     */
+    public Point multiply(Point p1, BigInteger n) {
+        if (n.bitLength() < 63) {
+            return multiply(p1, n.longValue());
+        }
+        if (n.signum() < 0) {
+            return multiply(negate(p1), n.negate());
+        }
+        if (p1.isPointOfInfinity()) {
+            return Point.INFINITY;
+        }
+
+        Jacobian result = new Jacobian(toMontgomery(p1.x), toMontgomery(p1.y), oneM);
+        long x2 = result.x;
+        long y2 = result.y;
+        for (int i = n.bitLength() - 2; i >= 0; --i) {
+            doubleJacobian(result);
+            if (n.testBit(i)) {
+                addJacobian(result, x2, y2);
+            }
+        }
+        return toAffine(result);
+    }
+
+    /**
+     * Return the inverse of x modulo p.
+     *
+     * @param x
+     * @return
+     */
+    public long inverse(long x) {
+        x = Math.floorMod(x, p);
+        if (x == 0) {
+            throw new ArithmeticException("0 has no inverse");
+        }
+        long t = 0;
+        long newT = 1;
+        long r = p;
+        long newR = x;
+        while (newR != 0) {
+            long q = r / newR;
+            long tmp = t - q * newT;
+            t = newT;
+            newT = tmp;
+            tmp = r - q * newR;
+            r = newR;
+            newR = tmp;
+        }
+        if (r != 1) {
+            throw new ArithmeticException(x + " has no inverse modulo " + p);
+        }
+        return t < 0 ? t + p : t;
+    }
+
+    public Point toPoint(ECPoint point) {
+        if (point.isPointOfInfinity()) {
+            return Point.INFINITY;
+        }
+        BigInteger bigP = BigInteger.valueOf(p);
+        return new Point(point.x.mod(bigP).longValue(), point.y.mod(bigP).longValue());
+    }
+
+    public ECPoint toECPoint(Point point) {
+        if (point.isPointOfInfinity()) {
+            return ECPoint.INFINTIY;
+        }
+        return new ECPoint(point.x, point.y);
+    }
+
+    /**
+     * A point in Jacobian coordinates (X / Z^2, Y / Z^3), in Montgomery
+     * form, updated in place.
+     */
+    private static final class Jacobian {
+        long x;
+        long y;
+        long z;
+
+        Jacobian(long x, long y, long z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    /**
+     * Double the point in place (dbl-2007-bl).
+     */
+    private void doubleJacobian(Jacobian q) {
+        if (q.z == 0) {
+            return;
+        }
+        if (q.y == 0) {
+            q.z = 0;
+            return;
+        }
+        long xx = multiplyMontgomery(q.x, q.x);
+        long yy = multiplyMontgomery(q.y, q.y);
+        long yyyy = multiplyMontgomery(yy, yy);
+        long zz = multiplyMontgomery(q.z, q.z);
+        long t = addMod(q.x, yy);
+        long s = subtractMod(subtractMod(multiplyMontgomery(t, t), xx), yyyy);
+        s = addMod(s, s);
+        long m = addMod(addMod(addMod(xx, xx), xx), multiplyMontgomery(aM, multiplyMontgomery(zz, zz)));
+        long x3 = subtractMod(multiplyMontgomery(m, m), addMod(s, s));
+        long yyyy8 = addMod(yyyy, yyyy);
+        yyyy8 = addMod(yyyy8, yyyy8);
+        yyyy8 = addMod(yyyy8, yyyy8);
+        long y3 = subtractMod(multiplyMontgomery(m, subtractMod(s, x3)), yyyy8);
+        long yz = addMod(q.y, q.z);
+        long z3 = subtractMod(subtractMod(multiplyMontgomery(yz, yz), yy), zz);
+        q.x = x3;
+        q.y = y3;
+        q.z = z3;
+    }
+
+    /**
+     * Add the affine point (x2, y2) to the point in place (madd-2007-bl).
+     */
+    private void addJacobian(Jacobian q, long x2, long y2) {
+        if (q.z == 0) {
+            q.x = x2;
+            q.y = y2;
+            q.z = oneM;
+            return;
+        }
+        long z1z1 = multiplyMontgomery(q.z, q.z);
+        long u2 = multiplyMontgomery(x2, z1z1);
+        long s2 = multiplyMontgomery(y2, multiplyMontgomery(q.z, z1z1));
+        long h = subtractMod(u2, q.x);
+        long r = subtractMod(s2, q.y);
+        if (h == 0) {
+            if (r == 0) {
+                doubleJacobian(q);
+            } else {
+                q.z = 0;
+            }
+            return;
+        }
+        r = addMod(r, r);
+        long hh = multiplyMontgomery(h, h);
+        long i = addMod(hh, hh);
+        i = addMod(i, i);
+        long j = multiplyMontgomery(h, i);
+        long v = multiplyMontgomery(q.x, i);
+        long x3 = subtractMod(subtractMod(multiplyMontgomery(r, r), j), addMod(v, v));
+        long y1j = multiplyMontgomery(q.y, j);
+        long y3 = subtractMod(multiplyMontgomery(r, subtractMod(v, x3)), addMod(y1j, y1j));
+        long zh = addMod(q.z, h);
+        long z3 = subtractMod(subtractMod(multiplyMontgomery(zh, zh), z1z1), hh);
+        q.x = x3;
+        q.y = y3;
+        q.z = z3;
+    }
+
+    private Point toAffine(Jacobian q) {
+        if (q.z == 0) {
+            return Point.INFINITY;
+        }
+        long zInverse = inverseMontgomery(q.z);
+        long zInverse2 = multiplyMontgomery(zInverse, zInverse);
+        long x = multiplyMontgomery(q.x, zInverse2);
+        long y = multiplyMontgomery(q.y, multiplyMontgomery(zInverse2, zInverse));
+        return new Point(fromMontgomery(x), fromMontgomery(y));
+    }
+
+    private long addMod(long x, long y) {
+        long s = x + y;
+        return s >= p ? s - p : s;
+    }
+
+    private long subtractMod(long x, long y) {
+        long d = x - y;
+        return d < 0 ? d + p : d;
+    }
+
+    private long toMontgomery(long x) {
+        return multiplyMontgomery(x, r2);
+    }
+
+    private long fromMontgomery(long x) {
+        return multiplyMontgomery(x, 1);
+    }
+
+    /**
+     * Return the Montgomery form of the inverse of the number whose
+     * Montgomery form is x: with x = cR, inverse(x) = c^-1 R^-1, and
+     * multiplying it by R^3 gives c^-1 R.
+     */
+    private long inverseMontgomery(long x) {
+        return multiplyMontgomery(inverse(x), r3);
+    }
+
+    /**
+     * Return x * y / 2^64 mod p, for x, y in [0, p).
+     */
+    private long multiplyMontgomery(long x, long y) {
+        long lo = x * y;
+        long hi = multiplyHigh(x, y);
+        long m = lo * pNegInverse;
+        // m * p + x * y is divisible by 2^64; its low half is 0, with a carry
+        // unless lo is 0 too. m is unsigned, hence the correction of its
+        // signed high product.
+        long mpHi = multiplyHigh(m, p) + (m < 0 ? p : 0);
+        long t = hi + mpHi + (lo != 0 ? 1 : 0);
+        return t >= p ? t - p : t;
+    }
+
+    /**
+     * The high half of the signed 128-bit product of x and y, as
+     * Math.multiplyHigh which is not available before Java 9.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
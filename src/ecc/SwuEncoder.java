@@ -0,0 +1,306 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class encodes blocks into points with the simplified Shallue-van de
+ * Woestijne-Ulas map of RFC 9380, section 6.6.2, instead of the retries of
+ * Koblitz's method.
+ *
+ * The map sends a field element u to a point in a fixed number of steps:
+ * with t = u^2,
+ *
+ *     x1 = (-B / A) (1 + 1 / (Z^2 t^2 + Z t)),
+ *     x2 = Z t x1,
+ *
+ * where Z is a fixed non-square. g(x2) = (Z t)^3 g(x1) for g(x) =
+ * x^3 + Ax + B, so exactly one of g(x1) and g(x2) is a square, and the point
+ * is (x1, sqrt(g(x1))) or (x2, sqrt(g(x2))), with the sign of y chosen to
+ * match the parity of u. For p = 3 (mod 4) both square roots come out of one
+ * exponentiation, so every block costs the same.
+ *
+ * The block m is mapped from u = m + 1. Inverting the map gives the
+ * candidates for u in a bounded number of steps too: x is x1 or x2 for the
+ * roots t of two quadratic equations, and y fixes the sign of u. A point has
+ * up to four preimages, so m is kept 8 bytes below the size of p, which
+ * leaves the other preimages a negligible chance to look like a block; the
+ * encoder checks that the decoding is unique, and throws otherwise, as
+ * Koblitz's method does when it runs out of attempts.
+ *
+ * A block is 8 bytes shorter than with Koblitz's method and p must be at
+ * least 73 bits long, but there are no retries, any p works (p = 1 (mod 4)
+ * with a Tonelli-Shanks square root), and the map needs A and B both
+ * non-zero.
+ *
+ * An instance is bound to the parameters of one curve; it can be shared by
+ * the curves with the same parameters (e.g. those read from key files).
+ */
+public class SwuEncoder implements PointEncoder {
+
+    // The number of bytes kept free between a block and p.
+    private static final int REDUNDANCY = 8;
+
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final BigInteger THREE = BigInteger.valueOf(3);
+    private static final BigInteger FOUR = BigInteger.valueOf(4);
+
+    private final BigInteger a;
+    private final BigInteger b;
+    private final BigInteger p;
+    private final BigInteger z;
+    private final int blockSize;
+
+    // Constants of the map, modulo p.
+    private final BigInteger minusBOverA;
+    private final BigInteger bOverZA;
+    private final BigInteger minusAOverB;
+    private final BigInteger inverseZ;
+    private final BigInteger inverseTwoZ;
+    private final BigInteger inverseTwo;
+    // sqrt(-Z^3), only for p = 3 (mod 4).
+    private final BigInteger sqrtMinusZ3;
+    // p - 1 = oddPart 2^twoAdicity, and Z^oddPart, for the square roots
+    // when p = 1 (mod 4).
+    private final BigInteger oddPart;
+    private final int twoAdicity;
+    private final BigInteger rootOfUnity;
+
+    public SwuEncoder(EllipticCurve c) {
+        this.p = c.getP();
+        this.a = c.getA().mod(p);
+        this.b = c.getB().mod(p);
+        if (a.signum() == 0 || b.signum() == 0) {
+            throw new IllegalArgumentException("The SWU map needs a and b both non-zero");
+        }
+        this.blockSize = (p.bitLength() - 1) / 8 - REDUNDANCY;
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("p is too small for the SWU map");
+        }
+        this.z = findZ(p);
+        this.minusBOverA = b.negate().multiply(a.modInverse(p)).mod(p);
+        this.bOverZA = b.multiply(z.multiply(a).modInverse(p)).mod(p);
+        this.minusAOverB = a.negate().multiply(b.modInverse(p)).mod(p);
+        this.inverseZ = z.modInverse(p);
+        this.inverseTwo = TWO.modInverse(p);
+        this.inverseTwoZ = inverseZ.multiply(inverseTwo).mod(p);
+        this.sqrtMinusZ3 = isThreeModFour(p) ? z.pow(3).negate().mod(p).modPow(p.add(BigInteger.ONE).shiftRight(2), p) : null;
+        this.twoAdicity = p.subtract(BigInteger.ONE).getLowestSetBit();
+        this.oddPart = p.subtract(BigInteger.ONE).shiftRight(twoAdicity);
+        this.rootOfUnity = z.modPow(oddPart, p);
+    }
+
+    /**
+     * Return the non-square of smallest absolute value other than -1: -2, 2,
+     * -3, 3, ...
+     */
+    private static BigInteger findZ(BigInteger p) {
+        for (long k = 2; ; ++k) {
+            for (long sign = -1; sign <= 1; sign += 2) {
+                BigInteger candidate = BigInteger.valueOf(sign * k).mod(p);
+                if (!isSquare(candidate, p)) {
+                    return candidate;
+                }
+            }
+        }
+    }
+
+    public BigInteger getZ() {
+        return z;
+    }
+
+    @Override
+    public int getBlockSize(EllipticCurve c) {
+        return blockSize;
+    }
+
+    @Override
+    public ECPoint encode(EllipticCurve c, BigInteger m) throws Exception {
+        checkCurve(c);
+        if (m.signum() < 0 || m.bitLength() > blockSize * 8) {
+            throw new IllegalArgumentException("The block is too large");
+        }
+        ECPoint point = map(m.add(BigInteger.ONE));
+        List<BigInteger> blocks = preimages(point);
+        if (blocks.size() != 1) {
+            throw new Exception("The block has no unique encoding");
+        }
+        return point;
+    }
+
+    @Override
+    public BigInteger decode(EllipticCurve c, ECPoint point) throws Exception {
+        checkCurve(c);
+        List<BigInteger> blocks = preimages(point);
+        if (blocks.size() != 1) {
+            throw new Exception("The point is not an encoding");
+        }
+        return blocks.get(0);
+    }
+
+    private void checkCurve(EllipticCurve c) {
+        if (!c.getP().equals(p) || c.getA().subtract(a).mod(p).signum() != 0
+                || c.getB().subtract(b).mod(p).signum() != 0) {
+            throw new IllegalArgumentException("The encoder belongs to another curve");
+        }
+    }
+
+    /**
+     * Return the point of u under the simplified SWU map.
+     */
+    ECPoint map(BigInteger u) {
+        BigInteger t = u.multiply(u).mod(p);
+        BigInteger zt = z.multiply(t).mod(p);
+        BigInteger x1 = x1(zt);
+        BigInteger gx1 = g(x1);
+        BigInteger x;
+        BigInteger y;
+        if (sqrtMinusZ3 != null) {
+            // y1^2 is gx1 when gx1 is a square, and -gx1 otherwise, in which
+            // case sqrt(g(x2)) = sqrt((Z u^2)^3 gx1) = y1 u^3 sqrt(-Z^3).
+            BigInteger y1 = gx1.modPow(p.add(BigInteger.ONE).shiftRight(2), p);
+            if (y1.multiply(y1).mod(p).equals(gx1)) {
+                x = x1;
+                y = y1;
+            } else {
+                x = zt.multiply(x1).mod(p);
+                y = y1.multiply(u.modPow(THREE, p)).multiply(sqrtMinusZ3).mod(p);
+            }
+        } else {
+            BigInteger y1 = sqrt(gx1);
+            if (y1 != null) {
+                x = x1;
+                y = y1;
+            } else {
+                x = zt.multiply(x1).mod(p);
+                y = sqrt(g(x));
+            }
+        }
+        if (y.testBit(0) != u.mod(p).testBit(0)) {
+            y = p.subtract(y).mod(p);
+        }
+        return new ECPoint(x, y);
+    }
+
+    /**
+     * Return x1 as a function of Z t, with the exceptional value B / (Z A)
+     * where the denominator vanishes.
+     */
+    private BigInteger x1(BigInteger zt) {
+        BigInteger denominator = zt.multiply(zt).add(zt).mod(p);
+        if (denominator.signum() == 0) {
+            return bOverZA;
+        }
+        return minusBOverA.multiply(BigInteger.ONE.add(denominator.modInverse(p))).mod(p);
+    }
+
+    private BigInteger g(BigInteger x) {
+        return x.multiply(x).add(a).multiply(x).add(b).mod(p);
+    }
+
+    /**
+     * Return the blocks m < 2^(8 * blockSize) that map to the point.
+     */
+    private List<BigInteger> preimages(ECPoint point) {
+        BigInteger x = point.x.mod(p);
+        BigInteger y = point.y.mod(p);
+        // v = x / (-B / A), so that x1 = x means 1 / (Z^2 t^2 + Z t) = v - 1
+        // and x2 = x means s - 1 + 1 / s = v, for s = Z t + 1.
+        BigInteger v = x.multiply(minusAOverB).mod(p);
+        List<BigInteger> ts = new ArrayList<BigInteger>(4);
+
+        // x = x1: Z t = (-1 +- sqrt(1 + 4 / (v - 1))) / 2.
+        BigInteger w = v.subtract(BigInteger.ONE).mod(p);
+        if (w.signum() != 0) {
+            BigInteger root = sqrt(BigInteger.ONE.add(FOUR.multiply(w.modInverse(p))).mod(p));
+            if (root != null) {
+                ts.add(root.subtract(BigInteger.ONE).multiply(inverseTwoZ).mod(p));
+                ts.add(root.negate().subtract(BigInteger.ONE).multiply(inverseTwoZ).mod(p));
+            }
+        }
+
+        // x = x2: s = ((v + 1) +- sqrt((v + 1)^2 - 4)) / 2.
+        BigInteger v1 = v.add(BigInteger.ONE);
+        BigInteger root = sqrt(v1.multiply(v1).subtract(FOUR));
+        if (root != null) {
+            for (BigInteger s : new BigInteger[]{v1.add(root), v1.subtract(root)}) {
+                s = s.multiply(inverseTwo).mod(p);
+                ts.add(s.subtract(BigInteger.ONE).multiply(inverseZ).mod(p));
+            }
+        }
+
+        BigInteger limit = BigInteger.ONE.shiftLeft(blockSize * 8);
+        List<BigInteger> blocks = new ArrayList<BigInteger>(1);
+        for (BigInteger t : ts) {
+            BigInteger r = sqrt(t);
+            if (r == null || r.signum() == 0) {
+                continue;
+            }
+            BigInteger u = r.testBit(0) == y.testBit(0) ? r : p.subtract(r);
+            BigInteger m = u.subtract(BigInteger.ONE);
+            if (m.compareTo(limit) >= 0 || blocks.contains(m)) {
+                continue;
+            }
+            // Only the candidates that look like a block are checked, which
+            // also weeds out the roots of the wrong case of the map.
+            ECPoint image = map(u);
+            if (image.x.equals(x) && image.y.equals(y)) {
+                blocks.add(m);
+            }
+        }
+        return blocks;
+    }
+
+    static boolean isThreeModFour(BigInteger p) {
+        return p.testBit(0) && p.testBit(1);
+    }
+
+    static boolean isSquare(BigInteger n, BigInteger p) {
+        return n.signum() == 0 || n.modPow(p.shiftRight(1), p).equals(BigInteger.ONE);
+    }
+
+    /**
+     * Return a square root of n modulo p, or null if n is not a square. It
+     * takes one exponentiation for p = 3 (mod 4), and the algorithm of
+     * Tonelli and Shanks otherwise.
+     */
+    private BigInteger sqrt(BigInteger n) {
+        n = n.mod(p);
+        if (n.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        if (sqrtMinusZ3 != null) {
+            BigInteger r = n.modPow(p.add(BigInteger.ONE).shiftRight(2), p);
+            return r.multiply(r).mod(p).equals(n) ? r : null;
+        }
+        if (!isSquare(n, p)) {
+            return null;
+        }
+        // With p - 1 = q 2^s for q odd, r = n^((q + 1) / 2) is a root of n
+        // times t = n^q, which lies in the subgroup of order 2^s; the powers
+        // of Z^q, a generator of it, make t converge to 1.
+        BigInteger c = rootOfUnity;
+        BigInteger r = n.modPow(oddPart.add(BigInteger.ONE).shiftRight(1), p);
+        BigInteger t = n.modPow(oddPart, p);
+        int m = twoAdicity;
+        while (!t.equals(BigInteger.ONE)) {
+            // Find the least i with t^(2^i) = 1.
+            int i = 0;
+            BigInteger t2 = t;
+            while (!t2.equals(BigInteger.ONE)) {
+                t2 = t2.multiply(t2).mod(p);
+                ++i;
+            }
+            BigInteger factor = c;
+            for (int j = 0; j < m - i - 1; ++j) {
+                factor = factor.multiply(factor).mod(p);
+            }
+            r = r.multiply(factor).mod(p);
+            c = factor.multiply(factor).mod(p);
+            t = t.multiply(c).mod(p);
+            m = i;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,135 @@
+package ecc;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * This class implements the X25519 key agreement of RFC 7748 on
+ * MontgomeryCurve.CURVE_25519.
+ *
+ * Keys and shared secrets are 32-byte strings, little-endian as in the RFC:
+ * a private key is any 32 bytes, clamped when used (the three low bits
+ * cleared, so that it is a multiple of the cofactor, and bit 254 set), and a
+ * public key is the u-coordinate of the private key times the base point.
+ *
+ * deriveKey turns the shared secret into key material with the key
+ * derivation function of ECDH, for encrypting a message with a symmetric
+ * cipher under a key agreed with an ephemeral key pair.
+ */
+public class X25519 {
+
+    /**
+     * The length in bytes of the keys and of the shared secret.
+     */
+    public static final int KEY_SIZE = 32;
+
+    private static final byte[] BASE_POINT = encodeU(MontgomeryCurve.CURVE_25519.getBaseU());
+
+    /**
+     * The function X25519(k, u) of RFC 7748: the u-coordinate of the clamped
+     * scalar k times the point of u-coordinate u.
+     *
+     * @param k
+     * @param u
+     * @return
+     */
+    public static byte[] x25519(byte[] k, byte[] u) {
+        if (k.length != KEY_SIZE || u.length != KEY_SIZE) {
+            throw new IllegalArgumentException("The scalar and the u-coordinate should be " + KEY_SIZE + " bytes");
+        }
+        return encodeU(MontgomeryCurve.CURVE_25519.multiply(decodeU(u), decodeScalar(k)));
+    }
+
+    /**
+     * Generate a random private key.
+     *
+     * @param rnd
+     * @return
+     */
+    public static byte[] generatePrivateKey(Random rnd) {
+        byte[] k = new byte[KEY_SIZE];
+        rnd.nextBytes(k);
+        return k;
+    }
+
+    /**
+     * Return the public key of the private key.
+     *
+     * @param privateKey
+     * @return
+     */
+    public static byte[] publicKey(byte[] privateKey) {
+        return x25519(privateKey, BASE_POINT);
+    }
+
+    /**
+     * Compute the shared secret of the private key and the public key of the
+     * peer.
+     *
+     * @param privateKey
+     * @param peerPublicKey
+     * @return
+     * @throws IllegalArgumentException if the peer key is a point of small
+     *         order, for which the shared secret is 0 whatever the private
+     *         key
+     */
+    public static byte[] sharedSecret(byte[] privateKey, byte[] peerPublicKey) {
+        byte[] secret = x25519(privateKey, peerPublicKey);
+        int or = 0;
+        for (byte b : secret) {
+            or |= b;
+        }
+        if (or == 0) {
+            throw new IllegalArgumentException("The peer public key is a point of small order");
+        }
+        return secret;
+    }
+
+    /**
+     * Derive length bytes of key material shared with the peer, bound to the
+     * given shared info, with ECDH.kdf.
+     *
+     * @param privateKey
+     * @param peerPublicKey
+     * @param length
+     * @param info
+     * @return
+     */
+    public static byte[] deriveKey(byte[] privateKey, byte[] peerPublicKey, int length, byte[] info) {
+        return ECDH.kdf(sharedSecret(privateKey, peerPublicKey), length, info);
+    }
+
+    private static BigInteger decodeScalar(byte[] k) {
+        byte[] clamped = k.clone();
+        clamped[0] &= (byte) 248;
+        clamped[31] &= 127;
+        clamped[31] |= 64;
+        return fromLittleEndian(clamped);
+    }
+
+    /**
+     * Read a u-coordinate, ignoring its top bit as the RFC requires.
+     */
+    private static BigInteger decodeU(byte[] u) {
+        byte[] masked = u.clone();
+        masked[31] &= 127;
+        return fromLittleEndian(masked);
+    }
+
+    private static byte[] encodeU(BigInteger u) {
+        byte[] bytes = u.toByteArray();
+        byte[] encoded = new byte[KEY_SIZE];
+        for (int i = 0; i < KEY_SIZE && i < bytes.length; ++i) {
+            encoded[i] = bytes[bytes.length - 1 - i];
+        }
+        return encoded;
+    }
+
+    private static BigInteger fromLittleEndian(byte[] bytes) {
+        byte[] bigEndian = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; ++i) {
+            bigEndian[i] = bytes[bytes.length - 1 - i];
+        }
+        return new BigInteger(1, bigEndian);
+    }
+}
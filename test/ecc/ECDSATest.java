@@ -0,0 +1,37 @@
+package ecc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Known-answer tests of ECDSA with the deterministic nonces of RFC 6979.
+ */
+public class ECDSATest {
+
+    @Test
+    public void testRfc6979P256Sha256() {
+        // RFC 6979, appendix A.2.5, with SHA-256 and the message "sample"
+        EllipticCurve c = EllipticCurve.NIST_P_256;
+        BigInteger x = new BigInteger("C9AFA9D845BA75166B5C215767B1D6934E50C3DB36E89B127B8A622B120F6721", 16);
+        ECPoint u = new ECPoint(
+                new BigInteger("60FED4BA255A9D31C961EB74C6356D68C049B8923B61FA6CE669622E60F29FB6", 16),
+                new BigInteger("7903FE1008B8BC99A41AE9E95628BC64F2F1B20C2D7E9F5177A3C294D4462299", 16));
+        byte[] message = "sample".getBytes(StandardCharsets.US_ASCII);
+        BigInteger n = ECDSA.getOrder(c);
+
+        assertTrue(u.equals(c.multiply(c.getBasePoint(), x)));
+
+        BigInteger k = new DeterministicNonceSource().nextNonce(n, x, ECDSA.hash(message, n));
+        assertEquals(new BigInteger("A6E3C57DD01ABE90086538398355DD4C3B17AA873382B0F24D6129493D8AAD60", 16), k);
+
+        ECDSASignature signature = ECDSA.sign(message, new PrivateKey(c, x));
+        assertEquals(new BigInteger("EFD48B2AACB6A8FD1140DD9CD45E81D69D2C877B56AAF991C34D0EA84EAF3716", 16), signature.getR());
+        assertEquals(new BigInteger("F7CB1C942D657C41D436C7A1B6E29F65F3E900DBB9AFF4064DC4AB2F843ACDA8", 16), signature.getS());
+        assertTrue(ECDSA.verify(message, signature, new PublicKey(c, u)));
+    }
+}
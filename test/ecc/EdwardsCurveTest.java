@@ -0,0 +1,104 @@
+package ecc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+/**
+ * Tests of the scalar multiplications of EdwardsCurve on Ed25519.
+ */
+public class EdwardsCurveTest {
+
+    private static final EdwardsCurve C = EdwardsCurve.ED25519;
+
+    @Test
+    public void testRfc8032PublicKeys() throws Exception {
+        // RFC 8032, section 7.1, TEST 1 to 3: the public key is the encoding
+        // of s * B, where s is the clamped first half of SHA-512(secret)
+        String[][] vectors = {
+            {"9d61b19deffd5a60ba844af492ec2cc44449c5697b326919703bac031cae7f60",
+                "d75a980182b10ab7d54bfed3c964073a0ee172f3daa62325af021a68f707511a"},
+            {"4ccd089b28ff96da9db6c346ec114e0f5b8a319f35aba624da8cf6ed4fb8a6fb",
+                "3d4017c3e843895a92b70aa74d1b7ebc9c982ccf2ec4968cc0cd55f12af4660c"},
+            {"c5aa8df43f9f837bedb7442f31dcb7b166d38535076f094b85ce3a2e0b4458f7",
+                "fc51cd8e6218a1a38da47ed00230f0580816ed13ba3303ac5deb911548908025"},
+        };
+        for (String[] vector : vectors) {
+            byte[] h = MessageDigest.getInstance("SHA-512").digest(hex(vector[0]));
+            h[0] &= (byte) 0xf8;
+            h[31] &= (byte) 0x7f;
+            h[31] |= (byte) 0x40;
+            BigInteger s = new BigInteger(1, reverse(h, 32));
+
+            ECPoint base = C.toAffine(C.multiplyBase(s));
+            assertArrayEquals(hex(vector[1]), encode(base));
+            assertTrue(base.equals(C.multiply(C.getBasePoint(), s)));
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        EdwardsPoint g = C.toExtended(C.getBasePoint());
+        assertTrue(C.equals(EdwardsPoint.IDENTITY, C.multiply(g, C.getOrder())));
+        assertTrue(C.equals(g, C.multiply(g, C.getOrder().add(BigInteger.ONE))));
+        assertTrue(C.equals(C.negate(g), C.multiply(g, BigInteger.ONE.negate())));
+    }
+
+    @Test
+    public void testTorsionPoint() {
+        // (sqrt(-1), 0) is on the curve, of order 4, outside the subgroup of
+        // order n.
+        BigInteger p = C.getP();
+        ECPoint t = new ECPoint(BigInteger.valueOf(2).modPow(p.subtract(BigInteger.ONE).shiftRight(2), p), BigInteger.ZERO);
+        assertTrue(C.isPointInsideCurve(t));
+        EdwardsPoint torsion = C.toExtended(t);
+        assertTrue(C.equals(EdwardsPoint.IDENTITY, C.multiply(torsion, BigInteger.valueOf(4))));
+        assertFalse(C.equals(EdwardsPoint.IDENTITY, C.multiply(torsion, BigInteger.valueOf(2))));
+
+        // P = G + T is a curve point with n * P = T, not the neutral element,
+        // and 8n * P is the neutral element.
+        EdwardsPoint point = C.add(C.toExtended(C.getBasePoint()), torsion);
+        EdwardsPoint nP = C.multiply(point, C.getOrder());
+        assertFalse(C.equals(EdwardsPoint.IDENTITY, nP));
+        assertTrue(C.equals(C.multiply(torsion, C.getOrder()), nP));
+        assertTrue(C.equals(EdwardsPoint.IDENTITY, C.multiply(point, C.getOrder().multiply(C.getCofactor()))));
+        assertFalse(C.equals(EdwardsPoint.IDENTITY, C.multiplyAdd(BigInteger.ZERO, C.getOrder(), point)));
+    }
+
+    /**
+     * The encoding of RFC 8032: y little-endian, with the low bit of x in
+     * the top bit.
+     */
+    private static byte[] encode(ECPoint point) {
+        byte[] bytes = new byte[32];
+        byte[] y = point.y.toByteArray();
+        for (int i = 0; i < Math.min(y.length, 32); ++i) {
+            bytes[i] = y[y.length - 1 - i];
+        }
+        if (point.x.testBit(0)) {
+            bytes[31] |= (byte) 0x80;
+        }
+        return bytes;
+    }
+
+    private static byte[] reverse(byte[] bytes, int length) {
+        byte[] reversed = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            reversed[i] = bytes[length - 1 - i];
+        }
+        return reversed;
+    }
+
+    private static byte[] hex(String s) {
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}